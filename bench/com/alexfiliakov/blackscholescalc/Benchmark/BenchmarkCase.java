@@ -0,0 +1,27 @@
+package com.alexfiliakov.blackscholescalc.Benchmark;
+
+public abstract class BenchmarkCase {
+	/**
+	 * This class is a single benchmark: setUp() prepares the inputs once, run() is the measured
+	 * operation. run() returns a value derived from its work so the JIT cannot eliminate it.
+	 */
+
+	private final String name;
+	private final long itemsPerRun; // contracts, bars, etc. processed by one call of run()
+	private final long bytesPerRun; // input bytes consumed by one call of run(), 0 if not a parsing benchmark
+
+	protected BenchmarkCase(String name, long itemsPerRun, long bytesPerRun) {
+		this.name = name;
+		this.itemsPerRun = itemsPerRun;
+		this.bytesPerRun = bytesPerRun;
+	}
+
+	public void setUp() throws Exception {
+	}
+
+	public abstract double run() throws Exception;
+
+	public String getName() { return name; }
+	public long getItemsPerRun() { return itemsPerRun; }
+	public long getBytesPerRun() { return bytesPerRun; }
+}
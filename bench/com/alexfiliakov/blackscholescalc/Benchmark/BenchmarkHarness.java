@@ -0,0 +1,116 @@
+package com.alexfiliakov.blackscholescalc.Benchmark;
+
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+public class BenchmarkHarness {
+	/**
+	 * This class times BenchmarkCases: it warms each case up so the JIT has compiled the hot path,
+	 * then runs a number of fixed-length measurement iterations and reports the mean and spread.
+	 *
+	 * Alongside time it reports what a GC profiler would: bytes allocated per operation (from the
+	 * thread allocation counter of the HotSpot ThreadMXBean) and collections/time spent in GC.
+	 */
+
+	private final long warmupMillis;
+	private final long iterationMillis;
+	private final int iterations;
+
+	private final com.sun.management.ThreadMXBean threadBean;
+	private final List<GarbageCollectorMXBean> gcBeans = ManagementFactory.getGarbageCollectorMXBeans();
+
+	// results are folded into this field so the measured work is always observable
+	private volatile double sink;
+
+	public BenchmarkHarness(long warmupMillis, long iterationMillis, int iterations) {
+		this.warmupMillis = warmupMillis;
+		this.iterationMillis = iterationMillis;
+		this.iterations = iterations;
+
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			threadBean = (com.sun.management.ThreadMXBean)bean;
+			threadBean.setThreadAllocatedMemoryEnabled(true);
+		} else {
+			threadBean = null; // allocation rate is not available on this JVM
+		}
+	}
+
+	public static void printHeader(PrintStream out) {
+		out.println(String.format("%-52s %14s %12s %14s %10s %12s %6s %8s",
+				"Benchmark", "ns/op", "+/- ns/op", "items/s", "MB/s", "B/op", "GCs", "GC ms"));
+	}
+
+	public void measure(BenchmarkCase benchmark, PrintStream out) throws Exception {
+		benchmark.setUp();
+
+		// warm up until the JIT has settled on the hot path
+		long warmupEnd = System.nanoTime() + warmupMillis*1000000L;
+		while (System.nanoTime() < warmupEnd) {
+			sink += benchmark.run();
+		}
+
+		long threadId = Thread.currentThread().getId();
+		double[] nanosPerOp = new double[iterations];
+		long totalOps = 0, totalNanos = 0, totalAllocated = 0;
+		long gcCountBefore = gcCount(), gcMillisBefore = gcMillis();
+
+		for (int iteration=0; iteration<iterations; iteration++) {
+			long allocatedBefore = (threadBean == null) ? 0 : threadBean.getThreadAllocatedBytes(threadId);
+			long start = System.nanoTime();
+			long deadline = start + iterationMillis*1000000L;
+			long ops = 0;
+			long now;
+			do {
+				sink += benchmark.run();
+				ops++;
+				now = System.nanoTime();
+			} while (now < deadline);
+			long allocatedAfter = (threadBean == null) ? 0 : threadBean.getThreadAllocatedBytes(threadId);
+
+			nanosPerOp[iteration] = (double)(now - start)/ops;
+			totalOps += ops;
+			totalNanos += now - start;
+			totalAllocated += allocatedAfter - allocatedBefore;
+		}
+
+		double mean = 0;
+		for (double value : nanosPerOp) {
+			mean += value;
+		}
+		mean /= iterations;
+		double variance = 0;
+		for (double value : nanosPerOp) {
+			variance += (value - mean)*(value - mean);
+		}
+		double stdDev = (iterations > 1) ? Math.sqrt(variance/(iterations - 1)) : 0;
+
+		double seconds = totalNanos/1e9;
+		double itemsPerSecond = totalOps*benchmark.getItemsPerRun()/seconds;
+		String megabytesPerSecond = (benchmark.getBytesPerRun() > 0)
+				? String.format("%.1f", totalOps*benchmark.getBytesPerRun()/seconds/(1024*1024)) : "-";
+		String bytesPerOp = (threadBean == null) ? "n/a" : String.format("%.1f", (double)totalAllocated/totalOps);
+
+		out.println(String.format("%-52s %14.1f %12.1f %14.0f %10s %12s %6d %8d",
+				benchmark.getName(), mean, stdDev, itemsPerSecond, megabytesPerSecond, bytesPerOp,
+				gcCount() - gcCountBefore, gcMillis() - gcMillisBefore));
+	}
+
+	private long gcCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean bean : gcBeans) {
+			count += Math.max(bean.getCollectionCount(), 0);
+		}
+		return count;
+	}
+
+	private long gcMillis() {
+		long millis = 0;
+		for (GarbageCollectorMXBean bean : gcBeans) {
+			millis += Math.max(bean.getCollectionTime(), 0);
+		}
+		return millis;
+	}
+}
@@ -0,0 +1,517 @@
+package com.alexfiliakov.blackscholescalc.Benchmark;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Random;
+
+import com.alexfiliakov.blackscholescalc.OptionPriceModel.BlackScholesPricer;
+import com.alexfiliakov.blackscholescalc.Metrics.LatencyHistogram;
+import com.alexfiliakov.blackscholescalc.OptionPriceModel.ChainGreeks;
+import com.alexfiliakov.blackscholescalc.OptionPriceModel.ChainRecordReader;
+import com.alexfiliakov.blackscholescalc.OptionPriceModel.ChainRecordWriter;
+import com.alexfiliakov.blackscholescalc.OptionPriceModel.FiniteDifferencePricer;
+import com.alexfiliakov.blackscholescalc.OptionPriceModel.ImpliedVolatilitySolver;
+import com.alexfiliakov.blackscholescalc.OptionPriceModel.LatticePricer;
+import com.alexfiliakov.blackscholescalc.OptionPriceModel.MonteCarloPricer;
+import com.alexfiliakov.blackscholescalc.OptionPriceModel.OptionPricingEngine;
+import com.alexfiliakov.blackscholescalc.OptionPriceModel.OptionChainTableModel;
+import com.alexfiliakov.blackscholescalc.OptionPriceModel.ScenarioEngine;
+import com.alexfiliakov.blackscholescalc.OptionPriceModel.ScenarioGrid;
+import com.alexfiliakov.blackscholescalc.OptionPriceModel.StandardNormal;
+import com.alexfiliakov.blackscholescalc.OptionPriceModel.VolatilitySurface;
+import com.alexfiliakov.blackscholescalc.StockModel.HistoricBarStore;
+import com.alexfiliakov.blackscholescalc.StockModel.HistoricBars;
+import com.alexfiliakov.blackscholescalc.StockModel.HistoricBarsParser;
+import com.alexfiliakov.blackscholescalc.StockModel.LogReturnIndex;
+import com.alexfiliakov.blackscholescalc.StockModel.RollingCalibration;
+import com.alexfiliakov.blackscholescalc.StockModel.StockGraph;
+import com.alexfiliakov.blackscholescalc.StockModel.StockModel;
+
+public class BenchmarkSuite {
+	/**
+	 * This class runs the benchmark suite: option pricing, model calibration, CSV parsing and chart painting.
+	 * All inputs come from bench/fixtures, so results are comparable between runs and machines.
+	 *
+	 * Usage: BenchmarkSuite [name filter]
+	 *   -Dbench.warmup=<ms>      warmup time per benchmark (default 2000)
+	 *   -Dbench.iteration=<ms>   length of one measurement iteration (default 1000)
+	 *   -Dbench.iterations=<n>   measurement iterations (default 5)
+	 */
+
+	private static final int CHAIN_SIZE = 100000;
+	private static final int MONTE_CARLO_PATHS = 1 << 20;
+	private static final int LADDER_SIZE = 64;
+	private static final int RECORDINGS = 1 << 20;
+	private static final int BOOK_SIZE = 2000;
+
+	public static void main(String[] args) throws Exception {
+		System.setProperty("java.awt.headless", "true"); // the chart is painted off-screen
+		String filter = (args.length > 0) ? args[0] : "";
+
+		BenchmarkHarness harness = new BenchmarkHarness(
+				Long.getLong("bench.warmup", 2000),
+				Long.getLong("bench.iteration", 1000),
+				Integer.getInteger("bench.iterations", 5));
+
+		BenchmarkHarness.printHeader(System.out);
+		for (BenchmarkCase benchmark : createBenchmarks()) {
+			if (benchmark.getName().contains(filter)) {
+				harness.measure(benchmark, System.out);
+			}
+		}
+	}
+
+	private static ArrayList<BenchmarkCase> createBenchmarks() throws Exception {
+		ArrayList<BenchmarkCase> benchmarks = new ArrayList<BenchmarkCase>();
+
+		benchmarks.add(singleOptionPricing());
+		benchmarks.add(chainPricing(StandardNormal.Accuracy.EXACT, false));
+		benchmarks.add(chainPricing(StandardNormal.Accuracy.FAST, false));
+		benchmarks.add(chainPricing(StandardNormal.Accuracy.EXACT, true));
+		benchmarks.add(chainTableSorting());
+		benchmarks.add(chainRecords(false));
+		benchmarks.add(chainRecords(true));
+		benchmarks.add(monteCarlo(MonteCarloPricer.Payoff.EUROPEAN, 1));
+		benchmarks.add(monteCarlo(MonteCarloPricer.Payoff.ASIAN, 52));
+		benchmarks.add(monteCarlo(MonteCarloPricer.Payoff.UP_AND_OUT, 52));
+		benchmarks.add(americanLadder("lattice/BINOMIAL " + LatticePricer.DEFAULT_STEPS + " steps", new LatticePricer(LatticePricer.Lattice.BINOMIAL, LatticePricer.DEFAULT_STEPS)));
+		benchmarks.add(americanLadder("lattice/TRINOMIAL " + LatticePricer.DEFAULT_STEPS + " steps", new LatticePricer(LatticePricer.Lattice.TRINOMIAL, LatticePricer.DEFAULT_STEPS)));
+		benchmarks.add(americanLadder("pde/Crank-Nicolson " + FiniteDifferencePricer.DEFAULT_SPACE_STEPS + "x" + FiniteDifferencePricer.DEFAULT_TIME_STEPS, new FiniteDifferencePricer()));
+		benchmarks.add(latencyRecording());
+		benchmarks.add(scenarioRevaluation(false));
+		benchmarks.add(scenarioRevaluation(true));
+		benchmarks.add(surfaceLookup());
+		benchmarks.add(impliedVolatility(false));
+		benchmarks.add(impliedVolatility(true));
+		for (String fixture : Fixtures.WEEKLY_FIXTURES) {
+			benchmarks.add(calibration(fixture));
+		}
+		benchmarks.add(rollingCalibration(Fixtures.WEEKLY_FIXTURES[Fixtures.WEEKLY_FIXTURES.length-1]));
+		benchmarks.add(termStructure(Fixtures.WEEKLY_FIXTURES[Fixtures.WEEKLY_FIXTURES.length-1]));
+		benchmarks.add(csvParsing(Fixtures.WEEKLY_FIXTURES[Fixtures.WEEKLY_FIXTURES.length-1], false));
+		benchmarks.add(csvParsing(Fixtures.WEEKLY_FIXTURES[Fixtures.WEEKLY_FIXTURES.length-1], true));
+		benchmarks.add(barStoreReading(Fixtures.WEEKLY_FIXTURES[Fixtures.WEEKLY_FIXTURES.length-1]));
+		benchmarks.add(chartPainting(Fixtures.WEEKLY_FIXTURES[0], false));
+		benchmarks.add(chartPainting(Fixtures.WEEKLY_FIXTURES[0], true));
+		benchmarks.add(chartPainting(Fixtures.WEEKLY_FIXTURES[Fixtures.WEEKLY_FIXTURES.length-1], true));
+
+		return benchmarks;
+	}
+
+	// one call and one put through the single-contract API, cycling over varied inputs
+	private static BenchmarkCase singleOptionPricing() {
+		return new BenchmarkCase("price/single call+put", 1, 0) {
+			private final double[] strikes = new double[1024];
+			private final double[] times = new double[1024];
+			private int next;
+
+			public void setUp() {
+				Random random = new Random(1);
+				for (int i=0; i<strikes.length; i++) {
+					strikes[i] = 70 + 60*random.nextDouble();
+					times[i] = 0.02 + 2*random.nextDouble();
+				}
+			}
+
+			public double run() {
+				int i = next++ & (strikes.length-1);
+				return BlackScholesPricer.getCallOptionPrice(100, strikes[i], 0.02, 0.3, times[i])
+						+ BlackScholesPricer.getPutOptionPrice(100, strikes[i], 0.02, 0.3, times[i]);
+			}
+		};
+	}
+
+	// a whole chain of CHAIN_SIZE contracts through the batch API, optionally with Greeks
+	private static BenchmarkCase chainPricing(final StandardNormal.Accuracy accuracy, boolean withGreeks) {
+		final ChainGreeks greeks = withGreeks ? new ChainGreeks(CHAIN_SIZE) : null;
+		return new BenchmarkCase("price/chain " + CHAIN_SIZE + " contracts " + accuracy + (withGreeks ? " +greeks" : ""), CHAIN_SIZE, 0) {
+			private final double[] spot = new double[CHAIN_SIZE], strike = new double[CHAIN_SIZE], rate = new double[CHAIN_SIZE],
+					vol = new double[CHAIN_SIZE], time = new double[CHAIN_SIZE], call = new double[CHAIN_SIZE], put = new double[CHAIN_SIZE];
+
+			public void setUp() {
+				Random random = new Random(2);
+				for (int i=0; i<CHAIN_SIZE; i++) {
+					spot[i] = 100;
+					strike[i] = 50 + 100*random.nextDouble();
+					rate[i] = 0.01 + 0.03*random.nextDouble();
+					vol[i] = 0.1 + 0.5*random.nextDouble();
+					time[i] = 0.02 + 2*random.nextDouble();
+				}
+			}
+
+			public double run() {
+				BlackScholesPricer.priceChain(spot, strike, rate, vol, time, call, put, greeks, 0, CHAIN_SIZE, accuracy);
+				return call[CHAIN_SIZE-1] + put[0];
+			}
+		};
+	}
+
+	// re-sorting a priced chain of CHAIN_SIZE contracts in the table model and formatting one screen of rows
+	private static BenchmarkCase chainTableSorting() {
+		return new BenchmarkCase("table/sort " + CHAIN_SIZE + " contracts + 40 rows", CHAIN_SIZE, 0) {
+			private OptionChainTableModel tableModel;
+			private boolean ascending;
+
+			public void setUp() {
+				Random random = new Random(2);
+				int[] expiration = new int[CHAIN_SIZE];
+				double[] spot = new double[CHAIN_SIZE], strike = new double[CHAIN_SIZE], rate = new double[CHAIN_SIZE],
+						vol = new double[CHAIN_SIZE], time = new double[CHAIN_SIZE], call = new double[CHAIN_SIZE], put = new double[CHAIN_SIZE];
+				for (int i=0; i<CHAIN_SIZE; i++) {
+					time[i] = 0.02 + 2*random.nextDouble();
+					expiration[i] = 17000 + (int)(time[i]*365);
+					spot[i] = 100;
+					strike[i] = 50 + 100*random.nextDouble();
+					rate[i] = 0.02;
+					vol[i] = 0.3;
+				}
+				ChainGreeks greeks = new ChainGreeks(CHAIN_SIZE);
+				BlackScholesPricer.priceChain(spot, strike, rate, vol, time, call, put, greeks);
+				tableModel = new OptionChainTableModel(expiration, strike, call, put, greeks);
+			}
+
+			public double run() {
+				ascending = !ascending;
+				tableModel.sortBy(2, ascending);
+				int length = 0;
+				for (int row=0; row<40; row++) {
+					for (int column=0; column<tableModel.getColumnCount(); column++) {
+						length += ((String)tableModel.getValueAt(row, column)).length();
+					}
+				}
+				return length;
+			}
+		};
+	}
+
+	/*
+	 * Writing a priced chain of CHAIN_SIZE contracts with Greeks as binary records, or mapping the
+	 * written file and reading every record's strike and prices back
+	 */
+	private static BenchmarkCase chainRecords(final boolean reading) {
+		return new BenchmarkCase("records/" + (reading ? "map+read " : "write ") + CHAIN_SIZE + " contracts +greeks", CHAIN_SIZE, 0) {
+			private final int[] expiration = new int[CHAIN_SIZE];
+			private final double[] strike = new double[CHAIN_SIZE], call = new double[CHAIN_SIZE], put = new double[CHAIN_SIZE];
+			private final ChainGreeks greeks = new ChainGreeks(CHAIN_SIZE);
+			private File file;
+
+			public void setUp() throws Exception {
+				Random random = new Random(5);
+				double[] spot = new double[CHAIN_SIZE], rate = new double[CHAIN_SIZE], vol = new double[CHAIN_SIZE], time = new double[CHAIN_SIZE];
+				for (int i=0; i<CHAIN_SIZE; i++) {
+					spot[i] = 100;
+					strike[i] = 50 + 100*random.nextDouble();
+					rate[i] = 0.02;
+					vol[i] = 0.1 + 0.5*random.nextDouble();
+					expiration[i] = 20000 + random.nextInt(730);
+					time[i] = (expiration[i] - 19990)/365.0;
+				}
+				BlackScholesPricer.priceChain(spot, strike, rate, vol, time, call, put, greeks, 0, CHAIN_SIZE, StandardNormal.Accuracy.EXACT);
+
+				file = File.createTempFile("bench-records", ".bin");
+				file.deleteOnExit();
+				write();
+			}
+
+			public double run() throws Exception {
+				if (!reading) {
+					return write();
+				}
+				ChainRecordReader reader = ChainRecordReader.open(file);
+				double sum = 0;
+				for (long i=0; i<reader.size(); i++) {
+					sum += reader.getStrikePrice(i) + reader.getCallPrice(i) + reader.getPutPrice(i);
+				}
+				return sum;
+			}
+
+			private double write() throws Exception {
+				try (ChainRecordWriter writer = new ChainRecordWriter(file, true)) {
+					writer.write(writer.getSymbolId("BENCH"), expiration, strike, call, put, greeks, 0, CHAIN_SIZE);
+					return writer.getRecordCount();
+				}
+			}
+		};
+	}
+
+	// one Monte Carlo price of MONTE_CARLO_PATHS paths (antithetic, with control variate) across the common pool
+	private static BenchmarkCase monteCarlo(final MonteCarloPricer.Payoff payoff, final int steps) {
+		return new BenchmarkCase("montecarlo/" + payoff + " " + steps + " steps " + MONTE_CARLO_PATHS + " paths", MONTE_CARLO_PATHS, 0) {
+			private final MonteCarloPricer pricer = new MonteCarloPricer(MONTE_CARLO_PATHS, steps, 3);
+
+			public double run() {
+				return pricer.price(payoff, true, 100, 105, 130, 0.03, 0.25, 1).price;
+			}
+		};
+	}
+
+	// American prices of a ladder of LADDER_SIZE strikes of one expiry, through an engine
+	private static BenchmarkCase americanLadder(String name, final OptionPricingEngine pricer) {
+		return new BenchmarkCase(name + " ladder of " + LADDER_SIZE, LADDER_SIZE, 0) {
+			private final double[] spot = new double[LADDER_SIZE], strike = new double[LADDER_SIZE], rate = new double[LADDER_SIZE],
+					vol = new double[LADDER_SIZE], time = new double[LADDER_SIZE], call = new double[LADDER_SIZE], put = new double[LADDER_SIZE];
+
+			public void setUp() {
+				for (int i=0; i<LADDER_SIZE; i++) {
+					spot[i] = 100;
+					strike[i] = 70 + 60.0*i/LADDER_SIZE;
+					rate[i] = 0.03;
+					vol[i] = 0.3;
+					time[i] = 0.5;
+				}
+			}
+
+			public double run() {
+				pricer.priceChain(spot, strike, rate, vol, time, call, put, null);
+				return put[LADDER_SIZE/2];
+			}
+		};
+	}
+
+	// recording RECORDINGS latencies into a histogram, the cost metrics add to every measured stage
+	private static BenchmarkCase latencyRecording() {
+		return new BenchmarkCase("metrics/latency histogram recording", RECORDINGS, 0) {
+			private final LatencyHistogram histogram = new LatencyHistogram("bench", "Benchmark recordings");
+
+			public double run() {
+				for (int i=0; i<RECORDINGS; i++) {
+					histogram.record(1000 + 37L*i);
+				}
+				return histogram.getCount();
+			}
+		};
+	}
+
+	/*
+	 * The P&L cube of a book of BOOK_SIZE calls and puts under a 21 x 11 x 5 grid of spot, volatility
+	 * and rate shocks: through the ScenarioEngine, or one single-contract price call per contract and scenario
+	 */
+	private static BenchmarkCase scenarioRevaluation(final boolean engine) {
+		final ScenarioGrid grid = new ScenarioGrid(ScenarioGrid.linear(-0.2, 0.2, 21), ScenarioGrid.linear(-0.1, 0.1, 11), ScenarioGrid.linear(-0.01, 0.01, 5));
+		return new BenchmarkCase("scenario/" + BOOK_SIZE + " contracts x 21x11x5 " + (engine ? "engine" : "per-contract calls"),
+				(long)BOOK_SIZE*grid.getScenarioCount(), 0) {
+			private final double[] spot = new double[BOOK_SIZE], strike = new double[BOOK_SIZE], rate = new double[BOOK_SIZE],
+					vol = new double[BOOK_SIZE], time = new double[BOOK_SIZE], quantity = new double[BOOK_SIZE];
+			private final boolean[] isCall = new boolean[BOOK_SIZE];
+			private final ScenarioEngine scenarioEngine = new ScenarioEngine();
+
+			public void setUp() {
+				Random random = new Random(6);
+				for (int i=0; i<BOOK_SIZE; i++) {
+					spot[i] = 100;
+					strike[i] = 50 + 100*random.nextDouble();
+					rate[i] = 0.01 + 0.03*random.nextDouble();
+					vol[i] = 0.15 + 0.4*random.nextDouble();
+					time[i] = 0.02 + 2*random.nextDouble();
+					quantity[i] = random.nextInt(21) - 10;
+					isCall[i] = random.nextBoolean();
+				}
+			}
+
+			public double run() {
+				if (engine) {
+					return scenarioEngine.revalue(spot, strike, rate, vol, time, isCall, quantity, grid)[0];
+				}
+				double[] cube = new double[grid.getScenarioCount()];
+				for (int i=0; i<BOOK_SIZE; i++) {
+					double today = isCall[i] ? BlackScholesPricer.getCallOptionPrice(spot[i], strike[i], rate[i], vol[i], time[i])
+							: BlackScholesPricer.getPutOptionPrice(spot[i], strike[i], rate[i], vol[i], time[i]);
+					for (int s=0; s<grid.getSpotShockCount(); s++) {
+						for (int v=0; v<grid.getVolatilityShockCount(); v++) {
+							for (int r=0; r<grid.getRateShockCount(); r++) {
+								double shockedSpot = spot[i]*(1 + grid.getSpotShock(s));
+								double shockedVol = vol[i] + grid.getVolatilityShock(v), shockedRate = rate[i] + grid.getRateShock(r);
+								double value = isCall[i] ? BlackScholesPricer.getCallOptionPrice(shockedSpot, strike[i], shockedRate, shockedVol, time[i])
+										: BlackScholesPricer.getPutOptionPrice(shockedSpot, strike[i], shockedRate, shockedVol, time[i]);
+								cube[grid.getScenario(s, v, r)] += quantity[i]*(value - today);
+							}
+						}
+					}
+				}
+				return cube[0];
+			}
+		};
+	}
+
+	// volatilities of a chain of CHAIN_SIZE contracts over 16 expiries, looked up in one batch on a surface of 16 smiles of 15 strikes
+	private static BenchmarkCase surfaceLookup() {
+		return new BenchmarkCase("surface/lookup " + CHAIN_SIZE + " contracts 16x15", CHAIN_SIZE, 0) {
+			private final double[] spot = new double[CHAIN_SIZE], strike = new double[CHAIN_SIZE], rate = new double[CHAIN_SIZE],
+					time = new double[CHAIN_SIZE], vol = new double[CHAIN_SIZE];
+			private VolatilitySurface surface = new VolatilitySurface();
+
+			public void setUp() {
+				for (int expiry=1; expiry<=16; expiry++) {
+					double[] logMoneyness = new double[15], smile = new double[15];
+					for (int i=0; i<15; i++) {
+						logMoneyness[i] = -0.7 + 0.1*i;
+						smile[i] = 0.2 + 0.1*logMoneyness[i]*logMoneyness[i] + 0.01*expiry;
+					}
+					surface = surface.withSlice(expiry/12.0, logMoneyness, smile);
+				}
+
+				// contracts listed expiry by expiry, as in a chain, between and beyond the slices
+				Random random = new Random(7);
+				for (int i=0; i<CHAIN_SIZE; i++) {
+					spot[i] = 100;
+					strike[i] = 60 + 80*random.nextDouble();
+					rate[i] = 0.02;
+					time[i] = (1 + i*16/CHAIN_SIZE)/12.0*1.01;
+				}
+			}
+
+			public double run() {
+				surface.getVolatilities(spot, strike, rate, time, vol);
+				return vol[CHAIN_SIZE-1];
+			}
+		};
+	}
+
+	// inverts a chain of CHAIN_SIZE market prices, on one thread or across the fork-join pool
+	private static BenchmarkCase impliedVolatility(final boolean parallel) {
+		return new BenchmarkCase("implied vol/chain " + CHAIN_SIZE + (parallel ? " parallel" : " sequential"), CHAIN_SIZE, 0) {
+			private final double[] spot = new double[CHAIN_SIZE], strike = new double[CHAIN_SIZE], rate = new double[CHAIN_SIZE],
+					time = new double[CHAIN_SIZE], price = new double[CHAIN_SIZE], vol = new double[CHAIN_SIZE];
+			private final boolean[] isCall = new boolean[CHAIN_SIZE];
+			private final int[] iterations = new int[CHAIN_SIZE], status = new int[CHAIN_SIZE];
+			private final ImpliedVolatilitySolver solver = new ImpliedVolatilitySolver();
+
+			public void setUp() {
+				Random random = new Random(3);
+				double[] call = new double[CHAIN_SIZE], put = new double[CHAIN_SIZE];
+				for (int i=0; i<CHAIN_SIZE; i++) {
+					spot[i] = 100;
+					strike[i] = 60 + 80*random.nextDouble();
+					rate[i] = 0.01 + 0.03*random.nextDouble();
+					vol[i] = 0.1 + 0.5*random.nextDouble();
+					time[i] = 0.05 + 2*random.nextDouble();
+				}
+				BlackScholesPricer.priceChain(spot, strike, rate, vol, time, call, put);
+				for (int i=0; i<CHAIN_SIZE; i++) {
+					isCall[i] = random.nextBoolean();
+					price[i] = isCall[i] ? call[i] : put[i];
+				}
+			}
+
+			public double run() {
+				int failures = parallel
+						? solver.solveChainParallel(price, isCall, spot, strike, rate, time, vol, iterations, status)
+						: solver.solveChain(price, isCall, spot, strike, rate, time, vol, iterations, status);
+				return failures + vol[0];
+			}
+		};
+	}
+
+	// validation, calibration and predictions over every bar of a fixture
+	private static BenchmarkCase calibration(final String fixture) throws Exception {
+		final HistoricBars bars = Fixtures.parseBars(Fixtures.readFixture(fixture));
+		return new BenchmarkCase("calibrate/" + bars.size() + " bars", bars.size(), 0) {
+			public double run() throws Exception {
+				return new StockModel("BENCH", bars, bars.size()).getAnnualVolatility();
+			}
+		};
+	}
+
+	// a 52-week rolling calibration fed one bar at a time, as bars close
+	private static BenchmarkCase rollingCalibration(final String fixture) throws Exception {
+		final HistoricBars bars = Fixtures.parseBars(Fixtures.readFixture(fixture));
+		return new BenchmarkCase("calibrate/rolling 52-week window, per bar", bars.size(), 0) {
+			public double run() throws Exception {
+				RollingCalibration calibration = new RollingCalibration(StockModel.HISTORIC_WEEKS);
+				calibration.addAll(bars);
+				return calibration.getAnnualVolatility();
+			}
+		};
+	}
+
+	// historic vol term structures (the default windows) ending at varying weeks, from a prefix-sum index
+	private static BenchmarkCase termStructure(final String fixture) throws Exception {
+		final LogReturnIndex index = new LogReturnIndex(Fixtures.parseBars(Fixtures.readFixture(fixture)));
+		final int windows = LogReturnIndex.DEFAULT_WINDOWS.length;
+		return new BenchmarkCase("calibrate/term structure, per window", windows, 0) {
+			private final double[] annualMean = new double[windows];
+			private final double[] annualVolatility = new double[windows];
+			private int next;
+
+			public double run() {
+				int lastBar = index.size() - 1 - (next++ & 1023);
+				index.getTermStructure(lastBar, LogReturnIndex.DEFAULT_WINDOWS, annualMean, annualVolatility);
+				return annualVolatility[windows-1];
+			}
+		};
+	}
+
+	// the Yahoo CSV parser over a whole fixture, from memory or streamed through its buffer
+	private static BenchmarkCase csvParsing(final String fixture, final boolean streamed) throws Exception {
+		final byte[] csv = Fixtures.readFixture(fixture);
+		final int rows = Fixtures.parseBars(csv).size();
+		return new BenchmarkCase("parse/" + (streamed ? "stream " : "buffer ") + fixture, rows, csv.length) {
+			public double run() throws Exception {
+				HistoricBars bars = streamed
+						? HistoricBarsParser.parse(new ByteArrayInputStream(csv))
+						: HistoricBarsParser.parse(ByteBuffer.wrap(csv));
+				return bars.size();
+			}
+		};
+	}
+
+	// opening a symbol's HistoricBarStore file and reading its newest year of bars
+	private static BenchmarkCase barStoreReading(final String fixture) throws Exception {
+		final HistoricBars bars = Fixtures.parseBars(Fixtures.readFixture(fixture));
+		return new BenchmarkCase("store/open+window " + bars.size() + " bars", 1, 0) {
+			private HistoricBarStore store;
+
+			public void setUp() throws Exception {
+				File directory = Files.createTempDirectory("bench-store").toFile();
+				directory.deleteOnExit();
+				store = new HistoricBarStore(directory);
+				store.append("BENCH", bars);
+				store.getFile("BENCH").deleteOnExit();
+			}
+
+			public double run() throws Exception {
+				HistoricBars year = store.read("BENCH").window(52);
+				return year.getClose(year.size()-1);
+			}
+		};
+	}
+
+	/*
+	 * Painting the stock chart into an off-screen image: either a plain repaint, which copies the
+	 * cached chart, or a pan by one week across the whole history, which redraws it every time
+	 */
+	private static BenchmarkCase chartPainting(final String fixture, final boolean panning) throws Exception {
+		final HistoricBars bars = Fixtures.parseBars(Fixtures.readFixture(fixture));
+		final StockModel stockModel = new StockModel("BENCH", bars);
+		return new BenchmarkCase("render/StockGraph " + (panning ? "pan whole history " : "repaint ") + fixture, 1, 0) {
+			private BufferedImage image;
+			private Graphics2D g2d;
+			private StockGraph stockGraph;
+			private int offset;
+
+			public void setUp() {
+				image = new BufferedImage(850, 470, BufferedImage.TYPE_INT_RGB);
+				g2d = image.createGraphics();
+				stockGraph = new StockGraph(stockModel, bars);
+				stockGraph.setSize(image.getWidth(), image.getHeight());
+				if (panning) {
+					stockGraph.setVisibleRange(0, bars.size());
+				}
+			}
+
+			public double run() {
+				if (panning) {
+					offset ^= 1;
+					stockGraph.setVisibleRange(offset, bars.size() + offset);
+				}
+				stockGraph.paintComponent(g2d);
+				return image.getRGB(100, 100);
+			}
+		};
+	}
+}
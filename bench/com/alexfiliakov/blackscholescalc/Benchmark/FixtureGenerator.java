@@ -0,0 +1,66 @@
+package com.alexfiliakov.blackscholescalc.Benchmark;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.time.LocalDate;
+import java.util.Locale;
+import java.util.Random;
+
+public class FixtureGenerator {
+	/**
+	 * This class regenerates the weekly fixture CSVs in the Yahoo format (newest bar first).
+	 * Prices follow a mean-reverting lognormal walk around $100 from a fixed seed, and every
+	 * bar starts on a Monday, so the files pass StockModel's validation at any length.
+	 *
+	 * Usage: FixtureGenerator [output directory]
+	 */
+
+	private static final long SEED = 20150629L;
+
+	public static void main(String[] args) throws Exception {
+		File directory = (args.length > 0) ? new File(args[0]) : Fixtures.getFixtureDirectory();
+		directory.mkdirs();
+
+		int[] sizes = {52, 520, 5200, 50000};
+		for (int i=0; i<sizes.length; i++) {
+			writeWeeklyFixture(new File(directory, Fixtures.WEEKLY_FIXTURES[i]), sizes[i]);
+		}
+	}
+
+	private static void writeWeeklyFixture(File file, int weeks) throws Exception {
+		Random random = new Random(SEED);
+
+		// simulate oldest to newest, then write newest first like Yahoo does
+		double[] open = new double[weeks], high = new double[weeks], low = new double[weeks], close = new double[weeks];
+		long[] volume = new long[weeks];
+		double logPrice = Math.log(100);
+		double weeklyVolatility = 0.3/Math.sqrt(52);
+		for (int week=0; week<weeks; week++) {
+			double prevClose = Math.exp(logPrice);
+			logPrice += 0.01*(Math.log(100) - logPrice) + weeklyVolatility*random.nextGaussian();
+			open[week] = prevClose*Math.exp(0.005*random.nextGaussian());
+			close[week] = Math.exp(logPrice);
+			high[week] = Math.max(open[week], close[week])*Math.exp(0.01*Math.abs(random.nextGaussian()));
+			low[week] = Math.min(open[week], close[week])*Math.exp(-0.01*Math.abs(random.nextGaussian()));
+			volume[week] = 1000000 + random.nextInt(9000000);
+		}
+
+		// the newest bar starts on Monday, June 29, 2015; dates are ISO (proleptic Gregorian) all the way back
+		LocalDate date = LocalDate.of(2015, 6, 29);
+
+		Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "US-ASCII"));
+		try {
+			out.write("Date,Open,High,Low,Close,Volume,Adj Close\n");
+			for (int week=weeks-1; week>=0; week--) {
+				out.write(String.format(Locale.US, "%s,%.2f,%.2f,%.2f,%.2f,%d,%.2f\n",
+						date, open[week], high[week], low[week], close[week], volume[week], close[week]));
+				date = date.minusWeeks(1);
+			}
+		} finally {
+			out.close();
+		}
+	}
+}
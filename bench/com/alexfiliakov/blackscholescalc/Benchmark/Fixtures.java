@@ -0,0 +1,49 @@
+package com.alexfiliakov.blackscholescalc.Benchmark;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import com.alexfiliakov.blackscholescalc.StockModel.HistoricBars;
+import com.alexfiliakov.blackscholescalc.StockModel.HistoricBarsParser;
+
+public class Fixtures {
+	/**
+	 * This class loads the checked-in fixture files under bench/fixtures, so benchmarks never touch the network.
+	 * The directory can be overridden with -Dbench.fixtures=<path>.
+	 */
+
+	public static final String[] WEEKLY_FIXTURES = {"weekly_52.csv", "weekly_520.csv", "weekly_5200.csv", "weekly_50000.csv"};
+
+	private Fixtures() {
+	}
+
+	public static File getFixtureDirectory() {
+		return new File(System.getProperty("bench.fixtures", "bench/fixtures"));
+	}
+
+	public static byte[] readFixture(String name) throws IOException {
+		File file = new File(getFixtureDirectory(), name);
+		byte[] content = new byte[(int)file.length()];
+		FileInputStream in = new FileInputStream(file);
+		try {
+			int offset = 0;
+			while (offset < content.length) {
+				int read = in.read(content, offset, content.length - offset);
+				if (read < 0) {
+					throw new IOException("Unexpected end of fixture " + file);
+				}
+				offset += read;
+			}
+		} finally {
+			in.close();
+		}
+		return content;
+	}
+
+	// parses every bar of a fixture
+	public static HistoricBars parseBars(byte[] csv) throws Exception {
+		return HistoricBarsParser.parse(ByteBuffer.wrap(csv));
+	}
+}
@@ -3,12 +3,17 @@ package com.alexfiliakov.blackscholescalc;
 import java.awt.Dimension;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.File;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import javax.swing.table.TableModel;
 
+import com.alexfiliakov.blackscholescalc.MarketData.MarketDataProviders;
 import com.alexfiliakov.blackscholescalc.OptionPriceModel.OptionPriceTableModel;
+import com.alexfiliakov.blackscholescalc.Portfolio.PortfolioCommand;
+import com.alexfiliakov.blackscholescalc.Portfolio.PositionsCommand;
+import com.alexfiliakov.blackscholescalc.Server.PricingServer;
 import com.alexfiliakov.blackscholescalc.StockModel.StockGraph;
 import com.alexfiliakov.blackscholescalc.StockModel.StockModel;
 
@@ -20,8 +25,30 @@ public class BlackScholesCalculator {
 	private static StockGraph stockGraph; // graphs the stock model
 	private static OptionPriceTableModel optionPriceTableModel; // table of option prices
 	private static String stockSymbol = null; // contains the current stock ticker symbol
+	private static ModelRunWorker currentRun; // the run whose results will be shown (used on the event thread only)
 
-	public static void main(String[] args) {
+	public static void main(String[] args) throws Exception {
+		// headless portfolio mode: model every symbol in a file, optionally writing the priced chains
+		if ((args.length == 2 || args.length == 3) && args[0].equals("--portfolio")) {
+			File chainFile = (args.length == 3) ? new File(args[2]) : null;
+			int failures = PortfolioCommand.run(new File(args[1]), chainFile, System.out);
+			System.exit(failures == 0 ? 0 : 1);
+		}
+		
+		// headless positions mode: price every position in a file
+		if (args.length == 3 && args[0].equals("--positions")) {
+			long failures = PositionsCommand.run(new File(args[1]), new File(args[2]), System.out);
+			System.exit(failures == 0 ? 0 : 1);
+		}
+		
+		// headless server mode: price and model over HTTP
+		if (args.length >= 1 && args[0].equals("--serve")) {
+			int port = (args.length > 1) ? Integer.parseInt(args[1]) : PricingServer.DEFAULT_PORT;
+			PricingServer pricingServer = new PricingServer(port).start();
+			System.out.println("Pricing server listening on port " + pricingServer.getPort());
+			return;
+		}
+		
 		// initializes GUI
 		
 		final JFrame frame = new JFrame("Black-Scholes Calculator");
@@ -62,37 +89,65 @@ public class BlackScholesCalculator {
 		radGroup.add(radShowStockChart);
 		radGroup.add(radShowOptionPrices);
 		
+		// shows the stage of the current run
+		final JProgressBar runProgress = new JProgressBar(0, ModelRunWorker.Stage.values().length);
+		runProgress.setPreferredSize(new Dimension(80,16));
+		runProgress.setVisible(false);
+		
 		// button to retrieve stock data and run models
+		// the run happens in the background, so the window stays responsive; a new run replaces the one in flight
 		final JButton btnRunModel = new JButton("Run Model");
 		btnRunModel.addActionListener(new ActionListener(){
 			public void actionPerformed(ActionEvent ae) {
-				// stock symbols must contain only letters
-				// nonexistent symbols won't retrieve any data
-				try {
-					lblerrorMessage.setText("");
-					splitPane.setBottomComponent(null);
-					
-					stockSymbol = fldTickerInput.getText();
-					if (!stockSymbol.matches("[a-zA-Z]+")) {
-						throw new Exception ("input must contain letters");
+				if (currentRun != null) {
+					currentRun.cancel(true);
+				}
+				
+				currentRun = new ModelRunWorker(fldTickerInput.getText(), MarketDataProviders.getDefault(), new ModelRunListener() {
+					public void onStage(ModelRunWorker.Stage stage) {
+						lblerrorMessage.setText(stage.getDescription() + "...");
+						runProgress.setValue(stage.ordinal());
 					}
 					
-					// set up the stock model and visual graph
-					stockModel = new StockModel(stockSymbol);
-					stockGraph = new StockGraph(stockModel);
-					
-					// set up the option model and visual table
-					optionPriceTableModel = new OptionPriceTableModel(stockModel);
-					optionsTable.setModel(optionPriceTableModel.getTableModel());
-					OptionPriceTableModel.formatTable(optionsTable);
+					public void onResult(ModelRunWorker.ModelRun result) {
+						runProgress.setVisible(false);
+						lblerrorMessage.setText("");
+						
+						// set up the visual graph and table
+						stockSymbol = result.stockSymbol;
+						stockModel = result.stockModel;
+						stockGraph = new StockGraph(stockModel, result.historicBars);
+						optionPriceTableModel = result.optionPriceTableModel;
+						optionsTable.setModel(optionPriceTableModel.getTableModel());
+						OptionPriceTableModel.formatTable(optionsTable);
+						
+						radShowStockChart.setEnabled(true);
+						radShowOptionPrices.setEnabled(true);
+						if (radShowStockChart.isSelected()) {
+							radShowStockChart.doClick();
+						} else {
+							radShowOptionPrices.doClick();
+						}
+					}
 					
-					radShowStockChart.setEnabled(true);
-					radShowOptionPrices.setEnabled(true);
-					radShowOptionPrices.doClick();
-				} catch (Exception e) {
-					lblerrorMessage.setText("Error: " + e.getMessage());
-				}
-				frame.setVisible(true);
+					public void onFailure(Exception failure) {
+						runProgress.setVisible(false);
+						splitPane.setBottomComponent(null);
+						lblerrorMessage.setText("Error: " + failure.getMessage());
+					}
+				});
+				
+				lblerrorMessage.setText("");
+				runProgress.setValue(0);
+				runProgress.setVisible(true);
+				currentRun.execute();
+			}
+		});
+		
+		// Enter in the ticker field runs the model too
+		fldTickerInput.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent ae) {
+				btnRunModel.doClick();
 			}
 		});
 		
@@ -101,6 +156,7 @@ public class BlackScholesCalculator {
 		inputPanel.add(lblActionLabel);
 		inputPanel.add(fldTickerInput);
 		inputPanel.add(btnRunModel);
+		inputPanel.add(runProgress);
 		inputPanel.add(lblerrorMessage);
 		inputPanel.add(new JSeparator(SwingConstants.VERTICAL));
 		inputPanel.add(radShowStockChart);
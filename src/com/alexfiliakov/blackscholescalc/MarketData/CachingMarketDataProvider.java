@@ -0,0 +1,161 @@
+package com.alexfiliakov.blackscholescalc.MarketData;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.alexfiliakov.blackscholescalc.StockModel.HistoricBars;
+
+public class CachingMarketDataProvider implements MarketDataProvider {
+	/**
+	 * This class caches another MarketDataProvider. Each kind of data has its own lifetime:
+	 *   spot prices      a few seconds
+	 *   risk-free rate   a few minutes
+	 *   historic bars    until the next weekly close (Friday 4pm New York time)
+	 *
+	 * The cache holds futures rather than values, so concurrent requests for the same key share one
+	 * in-flight load instead of each fetching it. Failed loads are dropped so the next request retries.
+	 * The number of entries is bounded; the least recently used entry is evicted first.
+	 */
+
+	public static final long DEFAULT_SPOT_TTL_MILLIS = TimeUnit.SECONDS.toMillis(15);
+	public static final long DEFAULT_RATE_TTL_MILLIS = TimeUnit.MINUTES.toMillis(10);
+	public static final int DEFAULT_MAX_ENTRIES = 10000;
+
+	private static final ZoneId EXCHANGE_ZONE = ZoneId.of("America/New_York");
+	private static final LocalTime EXCHANGE_CLOSE = LocalTime.of(16, 0);
+
+	private static final String HISTORY_KEY = "H:", SPOT_KEY = "S:", RATE_KEY = "R:";
+
+	private final MarketDataProvider delegate;
+	private final long spotTtlMillis, rateTtlMillis;
+	private final int maxEntries;
+
+	// access-ordered, so iteration starts at the least recently used entry
+	private final LinkedHashMap<String, CacheEntry> entries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true);
+
+	private final AtomicLong hits = new AtomicLong(), misses = new AtomicLong(), evictions = new AtomicLong();
+
+	public CachingMarketDataProvider(MarketDataProvider delegate) {
+		this(delegate, DEFAULT_SPOT_TTL_MILLIS, DEFAULT_RATE_TTL_MILLIS, DEFAULT_MAX_ENTRIES);
+	}
+
+	public CachingMarketDataProvider(MarketDataProvider delegate, long spotTtlMillis, long rateTtlMillis, int maxEntries) {
+		this.delegate = delegate;
+		this.spotTtlMillis = spotTtlMillis;
+		this.rateTtlMillis = rateTtlMillis;
+		this.maxEntries = maxEntries;
+	}
+
+	public CompletableFuture<HistoricBars> getHistoricData(String stockSymbol) {
+		// bars are read-only, so every caller can share the cached instance
+		return lookup(HISTORY_KEY + stockSymbol);
+	}
+
+	public CompletableFuture<Double> getSpotPrice(String stockSymbol) {
+		return lookup(SPOT_KEY + stockSymbol);
+	}
+
+	public CompletableFuture<Double> getRiskFreeRate() {
+		return lookup(RATE_KEY);
+	}
+
+	public long getHitCount() { return hits.get(); }
+	public long getMissCount() { return misses.get(); }
+	public long getEvictionCount() { return evictions.get(); }
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> CompletableFuture<T> lookup(String key) {
+		long now = System.currentTimeMillis();
+		CompletableFuture<T> future;
+		synchronized (this) {
+			CacheEntry entry = entries.get(key);
+			if (entry != null && now < entry.expiresAt) {
+				hits.incrementAndGet();
+				return (CompletableFuture<T>)entry.value;
+			}
+			misses.incrementAndGet();
+			future = (CompletableFuture<T>)load(key);
+			entries.put(key, new CacheEntry(future, expiry(key, now)));
+			evictOverflow();
+		}
+
+		// a failed load must not be served from the cache
+		final CompletableFuture<T> loaded = future;
+		loaded.whenComplete((value, failure) -> {
+			if (failure != null) {
+				synchronized (CachingMarketDataProvider.this) {
+					CacheEntry entry = entries.get(key);
+					if (entry != null && entry.value == loaded) {
+						entries.remove(key);
+					}
+				}
+			}
+		});
+		return loaded;
+	}
+
+	private CompletableFuture<?> load(String key) {
+		if (key.startsWith(HISTORY_KEY)) {
+			return delegate.getHistoricData(key.substring(HISTORY_KEY.length()));
+		} else if (key.startsWith(SPOT_KEY)) {
+			return delegate.getSpotPrice(key.substring(SPOT_KEY.length()));
+		}
+		return delegate.getRiskFreeRate();
+	}
+
+	private long expiry(String key, long now) {
+		if (key.startsWith(HISTORY_KEY)) {
+			return nextWeeklyClose(now);
+		} else if (key.startsWith(SPOT_KEY)) {
+			return now + spotTtlMillis;
+		}
+		return now + rateTtlMillis;
+	}
+
+	// weekly bars only change when the week closes, on Friday at 4pm New York time
+	static long nextWeeklyClose(long now) {
+		ZonedDateTime time = Instant.ofEpochMilli(now).atZone(EXCHANGE_ZONE);
+		ZonedDateTime close = time.with(TemporalAdjusters.nextOrSame(DayOfWeek.FRIDAY)).with(EXCHANGE_CLOSE);
+		if (!close.isAfter(time)) {
+			close = close.plusWeeks(1);
+		}
+		return close.toInstant().toEpochMilli();
+	}
+
+	private void evictOverflow() {
+		Iterator<Map.Entry<String, CacheEntry>> iterator = entries.entrySet().iterator();
+		while (entries.size() > maxEntries && iterator.hasNext()) {
+			iterator.next();
+			iterator.remove();
+			evictions.incrementAndGet();
+		}
+	}
+
+	private static class CacheEntry {
+		final CompletableFuture<?> value;
+		final long expiresAt;
+
+		CacheEntry(CompletableFuture<?> value, long expiresAt) {
+			this.value = value;
+			this.expiresAt = expiresAt;
+		}
+	}
+}
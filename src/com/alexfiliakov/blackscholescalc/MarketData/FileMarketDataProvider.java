@@ -0,0 +1,77 @@
+package com.alexfiliakov.blackscholescalc.MarketData;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import com.alexfiliakov.blackscholescalc.StockModel.HistoricBars;
+import com.alexfiliakov.blackscholescalc.StockModel.HistoricBarsParser;
+
+public class FileMarketDataProvider implements MarketDataProvider {
+	/**
+	 * This class serves market data from a local directory, for working offline:
+	 *   <directory>/<SYMBOL>.csv   weekly bars in the Yahoo CSV format (newest first)
+	 *   <directory>/quotes.csv     one "SYMBOL,price" line per symbol, including ^TNX for the risk-free rate
+	 */
+
+	public static final String QUOTES_FILE = "quotes.csv";
+
+	private final File directory;
+	private final Executor executor;
+
+	public FileMarketDataProvider(File directory) {
+		this(directory, ForkJoinPool.commonPool());
+	}
+
+	public FileMarketDataProvider(File directory, Executor executor) {
+		this.directory = directory;
+		this.executor = executor;
+	}
+
+	public CompletableFuture<HistoricBars> getHistoricData(final String stockSymbol) {
+		return CompletableFuture.supplyAsync(() -> {
+			File file = new File(directory, stockSymbol + ".csv");
+			try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+				return HistoricBarsParser.parse(channel);
+			} catch (java.io.IOException e) {
+				throw new CompletionException(new Exception("Problem retrieving stock data"));
+			} catch (Exception e) {
+				throw new CompletionException(e);
+			}
+		}, executor);
+	}
+
+	public CompletableFuture<Double> getSpotPrice(final String stockSymbol) {
+		return CompletableFuture.supplyAsync(() -> {
+			Double quote = readQuote(directory, stockSymbol);
+			if (quote == null) {
+				throw new CompletionException(new Exception("Problem retrieving stock data"));
+			}
+			return quote;
+		}, executor);
+	}
+
+	// looks a symbol up in the directory's quotes file, null if it is not there
+	static Double readQuote(File directory, String stockSymbol) {
+		File file = new File(directory, QUOTES_FILE);
+		try (BufferedReader br = Files.newBufferedReader(file.toPath(), StandardCharsets.US_ASCII)) {
+			String line;
+			while ((line = br.readLine()) != null) {
+				int comma = line.indexOf(',');
+				if (comma > 0 && line.substring(0, comma).trim().equalsIgnoreCase(stockSymbol)) {
+					return Double.valueOf(line.substring(comma + 1).trim());
+				}
+			}
+		} catch (Exception e) {
+			// missing or unreadable quotes file: treat as an unknown symbol
+		}
+		return null;
+	}
+}
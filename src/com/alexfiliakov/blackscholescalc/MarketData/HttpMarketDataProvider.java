@@ -0,0 +1,97 @@
+package com.alexfiliakov.blackscholescalc.MarketData;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import com.alexfiliakov.blackscholescalc.StockModel.HistoricBars;
+import com.alexfiliakov.blackscholescalc.StockModel.HistoricBarsParser;
+
+public class HttpMarketDataProvider implements MarketDataProvider {
+	/**
+	 * This class fetches market data over HTTP from a service with the (retired) Yahoo CSV API:
+	 *   <historyUrl>?s=<symbol>&g=w&ignore=.csv   weekly bars: Date,Open,High,Low,Close,Volume,Adj Close
+	 *   <quoteUrl>?s=<symbol>&f=l1                a single cell with the last trade price
+	 *
+	 * All requests go through one HttpClient, so connections are kept alive and reused
+	 * across symbols and runs, and requests are sent without blocking the caller.
+	 */
+
+	// Yahoo Finance endpoints, offline since 2017; point the provider at a replacement service
+	public static final String YAHOO_HISTORY_URL = "http://ichart.yahoo.com/table.csv";
+	public static final String YAHOO_QUOTE_URL = "http://finance.yahoo.com/d/quotes.csv";
+
+	private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+	private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+	private final String historyUrl;
+	private final String quoteUrl;
+	private final HttpClient httpClient;
+
+	public HttpMarketDataProvider() {
+		this(YAHOO_HISTORY_URL, YAHOO_QUOTE_URL);
+	}
+
+	public HttpMarketDataProvider(String historyUrl, String quoteUrl) {
+		this.historyUrl = historyUrl;
+		this.quoteUrl = quoteUrl;
+		this.httpClient = HttpClient.newBuilder()
+				.connectTimeout(CONNECT_TIMEOUT)
+				.followRedirects(HttpClient.Redirect.NORMAL)
+				.build();
+	}
+
+	// provider for a service that serves both endpoints under one base URL (e.g. StubMarketDataServer)
+	public static HttpMarketDataProvider forBaseUrl(String baseUrl) {
+		return new HttpMarketDataProvider(baseUrl + "/table.csv", baseUrl + "/d/quotes.csv");
+	}
+
+	public CompletableFuture<HistoricBars> getHistoricData(String stockSymbol) {
+		// g is the interval to use (w for weeks); the symbol must be valid, otherwise the service answers 404
+		HttpRequest request = newRequest(historyUrl + "?s=" + encode(stockSymbol) + "&g=w&ignore=.csv");
+		return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream())
+				.thenApply(response -> {
+					try (InputStream body = response.body()) {
+						checkStatus(response.statusCode());
+						return HistoricBarsParser.parse(body);
+					} catch (Exception e) {
+						throw new CompletionException(e);
+					}
+				});
+	}
+
+	public CompletableFuture<Double> getSpotPrice(String stockSymbol) {
+		// l1 indicates the Last Trade price
+		HttpRequest request = newRequest(quoteUrl + "?s=" + encode(stockSymbol) + "&f=l1");
+		return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.US_ASCII))
+				.thenApply(response -> {
+					try {
+						checkStatus(response.statusCode());
+						return Double.parseDouble(response.body().trim());
+					} catch (Exception e) {
+						throw new CompletionException(e);
+					}
+				});
+	}
+
+	private static HttpRequest newRequest(String url) {
+		return HttpRequest.newBuilder(URI.create(url)).timeout(REQUEST_TIMEOUT).GET().build();
+	}
+
+	private static void checkStatus(int statusCode) throws Exception {
+		if (statusCode != 200) {
+			throw new Exception("Problem retrieving stock data");
+		}
+	}
+
+	private static String encode(String stockSymbol) {
+		return URLEncoder.encode(stockSymbol, StandardCharsets.UTF_8); // ^TNX must be escaped
+	}
+}
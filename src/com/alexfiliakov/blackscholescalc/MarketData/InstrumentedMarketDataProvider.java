@@ -0,0 +1,41 @@
+package com.alexfiliakov.blackscholescalc.MarketData;
+
+import java.util.concurrent.CompletableFuture;
+
+import com.alexfiliakov.blackscholescalc.Metrics.LatencyHistogram;
+import com.alexfiliakov.blackscholescalc.Metrics.Metrics;
+import com.alexfiliakov.blackscholescalc.StockModel.HistoricBars;
+
+public class InstrumentedMarketDataProvider implements MarketDataProvider {
+	/**
+	 * This class times every fetch of another MarketDataProvider, from the request to the completion of
+	 * its future, into the fetch histograms of Metrics, and counts the fetches that fail.
+	 */
+
+	private final MarketDataProvider delegate;
+
+	public InstrumentedMarketDataProvider(MarketDataProvider delegate) {
+		this.delegate = delegate;
+	}
+
+	public CompletableFuture<HistoricBars> getHistoricData(String stockSymbol) {
+		return timed(Metrics.HISTORY_FETCH, Metrics.start(), delegate.getHistoricData(stockSymbol));
+	}
+
+	public CompletableFuture<Double> getSpotPrice(String stockSymbol) {
+		return timed(Metrics.SPOT_FETCH, Metrics.start(), delegate.getSpotPrice(stockSymbol));
+	}
+
+	public CompletableFuture<Double> getRiskFreeRate() {
+		return timed(Metrics.RATE_FETCH, Metrics.start(), delegate.getRiskFreeRate());
+	}
+
+	private static <T> CompletableFuture<T> timed(final LatencyHistogram histogram, final long started, CompletableFuture<T> fetch) {
+		return fetch.whenComplete((value, failure) -> {
+			histogram.recordSince(started);
+			if (failure != null) {
+				Metrics.FETCH_FAILURES.increment();
+			}
+		});
+	}
+}
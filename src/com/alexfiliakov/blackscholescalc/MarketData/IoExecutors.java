@@ -0,0 +1,52 @@
+package com.alexfiliakov.blackscholescalc.MarketData;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public final class IoExecutors {
+	/**
+	 * This class creates executors for blocking I/O work (fetching and waiting on market data).
+	 * On Java 21 and later every task gets its own virtual thread, so thousands of waiting fetches
+	 * cost almost nothing. Older runtimes fall back to a cached pool of daemon platform threads;
+	 * callers should bound their concurrency in that case.
+	 */
+
+	private IoExecutors() {
+	}
+
+	public static boolean isVirtualThreadsAvailable() {
+		return findVirtualThreadFactory() != null;
+	}
+
+	public static ExecutorService newIoExecutor(final String threadNamePrefix) {
+		Method factory = findVirtualThreadFactory();
+		if (factory != null) {
+			try {
+				return (ExecutorService)factory.invoke(null);
+			} catch (Exception e) {
+				// fall through to platform threads
+			}
+		}
+		return Executors.newCachedThreadPool(new ThreadFactory() {
+			private final AtomicInteger threadCount = new AtomicInteger();
+
+			public Thread newThread(Runnable task) {
+				Thread thread = new Thread(task, threadNamePrefix + "-" + threadCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	// Executors.newVirtualThreadPerTaskExecutor(), looked up reflectively so the code still runs before Java 21
+	private static Method findVirtualThreadFactory() {
+		try {
+			return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+}
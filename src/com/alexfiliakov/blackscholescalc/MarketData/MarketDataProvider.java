@@ -0,0 +1,33 @@
+package com.alexfiliakov.blackscholescalc.MarketData;
+
+import java.util.concurrent.CompletableFuture;
+
+import com.alexfiliakov.blackscholescalc.StockModel.HistoricBars;
+
+public interface MarketDataProvider {
+	/**
+	 * This interface supplies the market data the models are built from. Every method is
+	 * asynchronous, so a caller can start the history, spot and rate fetches together and
+	 * wait only as long as the slowest one. Failures complete the future exceptionally.
+	 */
+
+	// the 10-yr treasury yield is quoted under this symbol
+	public static final String TREASURY_SYMBOL = "^TNX";
+
+	// historical risk premium subtracted from the treasury yield to approximate the risk-free rate
+	public static final double RISK_PREMIUM = 1.;
+
+	// the full history of weekly bars, oldest first (chronological, whatever order the source reports them in); bars are read-only
+	public CompletableFuture<HistoricBars> getHistoricData(String stockSymbol);
+
+	// last trade price
+	public CompletableFuture<Double> getSpotPrice(String stockSymbol);
+
+	/*
+	 * Risk-free rate in percent. Partial solution is: take current 10-yr treasury rate, subtract 1% historical risk premium
+	 * 	Ref: http://som.yale.edu/~spiegel/mgt541/Lectures/EstimatingCAPMInputs.ppt
+	 */
+	public default CompletableFuture<Double> getRiskFreeRate() {
+		return getSpotPrice(TREASURY_SYMBOL).thenApply(tenYearTNotePrice -> tenYearTNotePrice - RISK_PREMIUM);
+	}
+}
@@ -0,0 +1,96 @@
+package com.alexfiliakov.blackscholescalc.MarketData;
+
+import java.io.File;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import com.alexfiliakov.blackscholescalc.Metrics.Metrics;
+import com.alexfiliakov.blackscholescalc.StockModel.HistoricBarStore;
+
+public final class MarketDataProviders {
+	/**
+	 * This class holds the application's default MarketDataProvider and helpers for waiting on its futures.
+	 * The default is picked from system properties:
+	 *   -Dmarketdata.dir=<directory>   serve data from local files (FileMarketDataProvider)
+	 *   -Dmarketdata.url=<base url>    fetch over HTTP from a Yahoo-compatible service at that base URL
+	 * and otherwise uses the original Yahoo endpoints. With -Dmarketdata.store=<directory> historic bars
+	 * are kept in a HistoricBarStore there between runs. The default provider is wrapped in a
+	 * CachingMarketDataProvider unless -Dmarketdata.cache=false. Fetches from the source are timed
+	 * by an InstrumentedMarketDataProvider unless metrics are off.
+	 */
+
+	private static volatile MarketDataProvider defaultProvider;
+
+	private MarketDataProviders() {
+	}
+
+	public static MarketDataProvider getDefault() {
+		MarketDataProvider provider = defaultProvider;
+		if (provider == null) {
+			synchronized (MarketDataProviders.class) {
+				if (defaultProvider == null) {
+					defaultProvider = createFromSystemProperties();
+				}
+				provider = defaultProvider;
+			}
+		}
+		return provider;
+	}
+
+	public static void setDefault(MarketDataProvider provider) {
+		defaultProvider = provider;
+	}
+
+	private static MarketDataProvider createFromSystemProperties() {
+		MarketDataProvider provider = createSourceFromSystemProperties();
+		if (Metrics.ENABLED) {
+			provider = new InstrumentedMarketDataProvider(provider);
+		}
+		String storeDirectory = System.getProperty("marketdata.store");
+		if (storeDirectory != null) {
+			provider = new StoreMarketDataProvider(provider, new HistoricBarStore(new File(storeDirectory)));
+		}
+		if (Boolean.parseBoolean(System.getProperty("marketdata.cache", "true"))) {
+			provider = new CachingMarketDataProvider(provider);
+		}
+		return provider;
+	}
+
+	private static MarketDataProvider createSourceFromSystemProperties() {
+		String directory = System.getProperty("marketdata.dir");
+		if (directory != null) {
+			return new FileMarketDataProvider(new File(directory));
+		}
+		String baseUrl = System.getProperty("marketdata.url");
+		if (baseUrl != null) {
+			return HttpMarketDataProvider.forBaseUrl(baseUrl);
+		}
+		return new HttpMarketDataProvider();
+	}
+
+	// waits for a fetch, rethrowing its failure the way the synchronous code used to throw it
+	public static <T> T await(Future<T> future) throws Exception {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			throw unwrap(e.getCause());
+		} catch (CancellationException e) {
+			throw new Exception("Data retrieval was cancelled");
+		}
+	}
+
+	private static Exception unwrap(Throwable cause) {
+		while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+			cause = cause.getCause();
+		}
+		if (cause instanceof java.io.IOException) {
+			return new Exception("Problem retrieving stock data");
+		}
+		if (cause instanceof Exception) {
+			return (Exception)cause;
+		}
+		return new Exception(cause);
+	}
+}
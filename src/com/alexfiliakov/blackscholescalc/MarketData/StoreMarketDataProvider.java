@@ -0,0 +1,82 @@
+package com.alexfiliakov.blackscholescalc.MarketData;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.alexfiliakov.blackscholescalc.Metrics.Metrics;
+import com.alexfiliakov.blackscholescalc.StockModel.HistoricBarStore;
+import com.alexfiliakov.blackscholescalc.StockModel.HistoricBars;
+
+public class StoreMarketDataProvider implements MarketDataProvider {
+	/**
+	 * This class keeps the historic bars of another MarketDataProvider in a HistoricBarStore, so they
+	 * persist between runs. A symbol whose stored bars already include the last closed week is
+	 * served from its mapped file without fetching. Otherwise the history is fetched, and its closed
+	 * weeks are appended to the store (the current, still open week is never stored).
+	 * Spot prices and the risk-free rate always come from the other provider.
+	 *
+	 * A failed append does not fail the fetch, whose bars are still good: it is counted in
+	 * Metrics.STORE_FAILURES, and the first one is reported on standard error.
+	 */
+
+	private static final ZoneId EXCHANGE_ZONE = ZoneId.of("America/New_York");
+
+	private final MarketDataProvider delegate;
+	private final HistoricBarStore store;
+	private final AtomicBoolean storeFailureReported = new AtomicBoolean();
+
+	public StoreMarketDataProvider(MarketDataProvider delegate, HistoricBarStore store) {
+		this.delegate = delegate;
+		this.store = store;
+	}
+
+	public CompletableFuture<HistoricBars> getHistoricData(final String stockSymbol) {
+		final int lastClosedWeek = lastClosedWeekStart(System.currentTimeMillis());
+		try {
+			HistoricBars stored = store.read(stockSymbol);
+			if (stored != null && stored.size() > 0
+					&& HistoricBars.weekStart(stored.getEpochDay(stored.size()-1)) >= lastClosedWeek) {
+				return CompletableFuture.completedFuture(stored);
+			}
+		} catch (Exception e) {
+			CompletableFuture<HistoricBars> failed = new CompletableFuture<HistoricBars>();
+			failed.completeExceptionally(e);
+			return failed;
+		}
+
+		return delegate.getHistoricData(stockSymbol).thenApply(bars -> {
+			int closed = bars.size();
+			while (closed > 0 && HistoricBars.weekStart(bars.getEpochDay(closed-1)) > lastClosedWeek) {
+				closed--;
+			}
+			try {
+				store.append(stockSymbol, bars.range(0, closed));
+			} catch (Exception e) {
+				// the fetched bars are still good; they will be stored on a later fetch
+				Metrics.STORE_FAILURES.increment();
+				if (storeFailureReported.compareAndSet(false, true)) {
+					System.err.println("Historic bars could not be stored (further failures are only counted): " + e);
+				}
+			}
+			return bars;
+		});
+	}
+
+	public CompletableFuture<Double> getSpotPrice(String stockSymbol) {
+		return delegate.getSpotPrice(stockSymbol);
+	}
+
+	public CompletableFuture<Double> getRiskFreeRate() {
+		return delegate.getRiskFreeRate();
+	}
+
+	// Monday of the latest week whose Friday close has passed
+	static int lastClosedWeekStart(long now) {
+		long nextClose = CachingMarketDataProvider.nextWeeklyClose(now);
+		LocalDate lastCloseFriday = Instant.ofEpochMilli(nextClose).atZone(EXCHANGE_ZONE).toLocalDate().minusWeeks(1);
+		return (int)lastCloseFriday.minusDays(4).toEpochDay();
+	}
+}
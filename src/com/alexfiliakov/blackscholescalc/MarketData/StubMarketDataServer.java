@@ -0,0 +1,107 @@
+package com.alexfiliakov.blackscholescalc.MarketData;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class StubMarketDataServer {
+	/**
+	 * This class is an in-process HTTP server that answers the same requests as the Yahoo CSV API,
+	 * using the files of a FileMarketDataProvider directory. It lets HttpMarketDataProvider be
+	 * exercised end to end without network access:
+	 *
+	 *   StubMarketDataServer server = new StubMarketDataServer(directory, 0).start();
+	 *   MarketDataProvider provider = HttpMarketDataProvider.forBaseUrl(server.getBaseUrl());
+	 *
+	 * It can also run standalone: StubMarketDataServer <directory> [port]
+	 */
+
+	private final File directory;
+	private final HttpServer server;
+
+	// port 0 picks a free port
+	public StubMarketDataServer(File directory, int port) throws IOException {
+		this.directory = directory;
+		this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		server.createContext("/table.csv", new HistoryHandler());
+		server.createContext("/d/quotes.csv", new QuoteHandler());
+	}
+
+	public StubMarketDataServer start() {
+		server.start();
+		return this;
+	}
+
+	public void stop() {
+		server.stop(0);
+	}
+
+	public String getBaseUrl() {
+		return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1) {
+			System.err.println("Usage: StubMarketDataServer <directory> [port]");
+			System.exit(1);
+		}
+		int port = (args.length > 1) ? Integer.parseInt(args[1]) : 8080;
+		StubMarketDataServer stub = new StubMarketDataServer(new File(args[0]), port).start();
+		System.out.println("Serving " + args[0] + " at " + stub.getBaseUrl());
+	}
+
+	// serves <directory>/<SYMBOL>.csv
+	private class HistoryHandler implements HttpHandler {
+		public void handle(HttpExchange exchange) throws IOException {
+			String stockSymbol = getSymbol(exchange);
+			File file = new File(directory, stockSymbol + ".csv");
+			if (stockSymbol.isEmpty() || !file.isFile()) {
+				respond(exchange, 404, "Not Found");
+				return;
+			}
+			respond(exchange, 200, new String(Files.readAllBytes(file.toPath()), StandardCharsets.US_ASCII));
+		}
+	}
+
+	// serves the symbol's line of <directory>/quotes.csv as a single cell
+	private class QuoteHandler implements HttpHandler {
+		public void handle(HttpExchange exchange) throws IOException {
+			Double quote = FileMarketDataProvider.readQuote(directory, getSymbol(exchange));
+			if (quote == null) {
+				respond(exchange, 404, "Not Found");
+				return;
+			}
+			respond(exchange, 200, quote + "\n");
+		}
+	}
+
+	private static String getSymbol(HttpExchange exchange) {
+		String query = exchange.getRequestURI().getRawQuery();
+		if (query != null) {
+			for (String parameter : query.split("&")) {
+				if (parameter.startsWith("s=")) {
+					return URLDecoder.decode(parameter.substring(2), StandardCharsets.UTF_8);
+				}
+			}
+		}
+		return "";
+	}
+
+	private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.US_ASCII);
+		exchange.getResponseHeaders().set("Content-Type", "text/csv");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+}
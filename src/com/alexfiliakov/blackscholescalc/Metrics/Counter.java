@@ -0,0 +1,38 @@
+package com.alexfiliakov.blackscholescalc.Metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class Counter implements CounterMBean {
+	/**
+	 * This class counts events. It is a LongAdder, so threads counting at once do not contend on one value.
+	 */
+
+	private final String name, description;
+	private final LongAdder count = new LongAdder();
+
+	public Counter(String name, String description) {
+		this.name = name;
+		this.description = description;
+	}
+
+	public String getName() { return name; }
+	public String getDescription() { return description; }
+
+	public void increment() {
+		if (Metrics.ENABLED) {
+			count.increment();
+		}
+	}
+
+	public void add(long events) {
+		if (Metrics.ENABLED) {
+			count.add(events);
+		}
+	}
+
+	public long getCount() { return count.sum(); }
+
+	public void reset() {
+		count.reset();
+	}
+}
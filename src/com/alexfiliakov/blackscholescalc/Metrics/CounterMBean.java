@@ -0,0 +1,11 @@
+package com.alexfiliakov.blackscholescalc.Metrics;
+
+public interface CounterMBean {
+	/**
+	 * This interface is the JMX view of a Counter
+	 */
+
+	public String getDescription();
+	public long getCount();
+	public void reset();
+}
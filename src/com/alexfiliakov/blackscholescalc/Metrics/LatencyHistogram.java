@@ -0,0 +1,119 @@
+package com.alexfiliakov.blackscholescalc.Metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class LatencyHistogram implements LatencyHistogramMBean {
+	/**
+	 * This class records latencies in nanoseconds into log-linear buckets, as HdrHistogram does: values
+	 * below 128 get a bucket each, and above that every power of two is split into 64 buckets, so any
+	 * value is known to within 1/64 (about 1.6%) from 1ns up to an hour in under 2,500 buckets.
+	 *
+	 * Recording is lock-free and allocation-free: a bucket index from the value's leading zeros and one
+	 * atomic increment, plus the count, sum and max. Readers scan the buckets while recording goes on,
+	 * so a percentile read under load may miss the values recorded during the scan.
+	 */
+
+	private static final int SUB_BUCKET_BITS = 7;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS, HALF_SUB_BUCKETS = SUB_BUCKETS/2;
+	private static final long MAX_TRACKABLE_NANOS = 3_600_000_000_000L; // longer values are counted as an hour
+
+	private final String name, description;
+
+	private final AtomicLongArray bucketCounts = new AtomicLongArray(bucketIndex(MAX_TRACKABLE_NANOS) + 1);
+	private final AtomicLong count = new AtomicLong(), sum = new AtomicLong(), max = new AtomicLong();
+
+	public LatencyHistogram(String name, String description) {
+		this.name = name;
+		this.description = description;
+	}
+
+	public String getName() { return name; }
+	public String getDescription() { return description; }
+
+	// records the time since start, a value from Metrics.start(); does nothing when metrics are off
+	public void recordSince(long start) {
+		if (Metrics.ENABLED) {
+			record(System.nanoTime() - start);
+		}
+	}
+
+	public void record(long nanos) {
+		if (!Metrics.ENABLED) {
+			return;
+		}
+		nanos = Math.max(0, Math.min(nanos, MAX_TRACKABLE_NANOS));
+		bucketCounts.incrementAndGet(bucketIndex(nanos));
+		count.incrementAndGet();
+		sum.addAndGet(nanos);
+		long currentMax;
+		while (nanos > (currentMax = max.get()) && !max.compareAndSet(currentMax, nanos)) {
+			// lost a race with another recorder; try again against its max
+		}
+	}
+
+	public long getCount() { return count.get(); }
+	public long getMaxNanos() { return max.get(); }
+
+	public double getMeanNanos() {
+		long n = count.get();
+		return (n == 0) ? 0 : ((double)sum.get())/n;
+	}
+
+	// the smallest recorded value that percentile percent of values are at or below (to bucket precision)
+	public long getValueAtPercentile(double percentile) {
+		long total = 0;
+		for (int i=0; i<bucketCounts.length(); i++) {
+			total += bucketCounts.get(i);
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long)Math.ceil(percentile/100*total));
+		long seen = 0;
+		for (int i=0; i<bucketCounts.length(); i++) {
+			seen += bucketCounts.get(i);
+			if (seen >= rank) {
+				return Math.min(bucketHighestValue(i), max.get());
+			}
+		}
+		return max.get();
+	}
+
+	public void reset() {
+		for (int i=0; i<bucketCounts.length(); i++) {
+			bucketCounts.set(i, 0);
+		}
+		count.set(0);
+		sum.set(0);
+		max.set(0);
+	}
+
+	// MBean attributes, in microseconds
+
+	public double getMeanMicros() { return getMeanNanos()/1e3; }
+	public double getP50Micros() { return getValueAtPercentile(50)/1e3; }
+	public double getP90Micros() { return getValueAtPercentile(90)/1e3; }
+	public double getP99Micros() { return getValueAtPercentile(99)/1e3; }
+	public double getP999Micros() { return getValueAtPercentile(99.9)/1e3; }
+	public double getMaxMicros() { return getMaxNanos()/1e3; }
+
+	// helper methods
+
+	private static int bucketIndex(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int)value;
+		}
+		int shift = (63 - Long.numberOfLeadingZeros(value)) - (SUB_BUCKET_BITS - 1);
+		return shift*HALF_SUB_BUCKETS + (int)(value >>> shift);
+	}
+
+	private static long bucketHighestValue(int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		int shift = index/HALF_SUB_BUCKETS - 1;
+		long lowest = ((long)(index - shift*HALF_SUB_BUCKETS)) << shift;
+		return lowest + (1L << shift) - 1;
+	}
+}
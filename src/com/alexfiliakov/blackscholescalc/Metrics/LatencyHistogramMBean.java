@@ -0,0 +1,17 @@
+package com.alexfiliakov.blackscholescalc.Metrics;
+
+public interface LatencyHistogramMBean {
+	/**
+	 * This interface is the JMX view of a LatencyHistogram, with latencies in microseconds
+	 */
+
+	public String getDescription();
+	public long getCount();
+	public double getMeanMicros();
+	public double getP50Micros();
+	public double getP90Micros();
+	public double getP99Micros();
+	public double getP999Micros();
+	public double getMaxMicros();
+	public void reset();
+}
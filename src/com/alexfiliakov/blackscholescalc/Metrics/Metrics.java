@@ -0,0 +1,121 @@
+package com.alexfiliakov.blackscholescalc.Metrics;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+public final class Metrics {
+	/**
+	 * This class holds the application's latency histograms and counters. Code being measured takes
+	 * a start time and records the time since it when done:
+	 *
+	 *   long started = Metrics.start();
+	 *   ...
+	 *   Metrics.CALIBRATION.recordSince(started);
+	 *
+	 * Every metric is registered as an MBean under com.alexfiliakov.blackscholescalc (type=Latency or
+	 * type=Counter), so jconsole or any JMX client can read it while the application runs. With
+	 * -Dmetrics.dump=<seconds> a text table of all of them is printed to standard error that often.
+	 *
+	 * -Dmetrics.enabled=false switches the whole layer off. ENABLED is a static final, so the JIT treats
+	 * it as a constant and drops the instrumented branches: no clock reads, no counting, no MBeans.
+	 */
+
+	public static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("metrics.enabled", "true"));
+
+	public static final String JMX_DOMAIN = "com.alexfiliakov.blackscholescalc";
+
+	// data fetches from the market data source (cache hits are not fetches)
+	public static final LatencyHistogram HISTORY_FETCH = new LatencyHistogram("fetch.history", "Fetching a symbol's weekly bars");
+	public static final LatencyHistogram SPOT_FETCH = new LatencyHistogram("fetch.spot", "Fetching a spot price");
+	public static final LatencyHistogram RATE_FETCH = new LatencyHistogram("fetch.rate", "Fetching the risk-free rate");
+
+	// model stages
+	public static final LatencyHistogram CALIBRATION = new LatencyHistogram("model.calibrate", "Validating and calibrating a StockModel");
+	public static final LatencyHistogram PREDICTION = new LatencyHistogram("model.predict", "Computing a StockModel's weekly predictions");
+	public static final LatencyHistogram CHAIN_PRICING = new LatencyHistogram("chain.price", "Pricing a symbol's option chain");
+	public static final LatencyHistogram BATCH_PRICING = new LatencyHistogram("batch.price", "Pricing a server batch or a positions chunk");
+	public static final LatencyHistogram SCENARIO_REVALUATION = new LatencyHistogram("scenario.revalue", "Revaluing a book under a scenario grid");
+
+	public static final Counter CONTRACTS_PRICED = new Counter("contracts.priced", "Contracts priced");
+	public static final Counter FETCH_FAILURES = new Counter("fetch.failures", "Market data fetches that failed");
+	public static final Counter VALIDATION_REJECTS = new Counter("validation.rejects", "Histories rejected as unfit to model");
+	public static final Counter STORE_FAILURES = new Counter("store.failures", "Fetched histories that could not be stored");
+
+	private static final LatencyHistogram[] HISTOGRAMS = {HISTORY_FETCH, SPOT_FETCH, RATE_FETCH, CALIBRATION, PREDICTION, CHAIN_PRICING, BATCH_PRICING, SCENARIO_REVALUATION};
+	private static final Counter[] COUNTERS = {CONTRACTS_PRICED, FETCH_FAILURES, VALIDATION_REJECTS, STORE_FAILURES};
+
+	private static final DateTimeFormatter DUMP_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+	static {
+		if (ENABLED) {
+			registerMBeans();
+			long dumpSeconds = Long.getLong("metrics.dump", 0);
+			if (dumpSeconds > 0) {
+				startDumping(System.err, dumpSeconds);
+			}
+		}
+	}
+
+	private Metrics() {
+	}
+
+	// a start time for recordSince (0, without reading the clock, when metrics are off)
+	public static long start() {
+		return ENABLED ? System.nanoTime() : 0;
+	}
+
+	public static LatencyHistogram[] getHistograms() { return HISTOGRAMS.clone(); }
+	public static Counter[] getCounters() { return COUNTERS.clone(); }
+
+	// prints every metric as a table, latencies in microseconds
+	public static void dump(PrintStream out) {
+		StringBuilder text = new StringBuilder();
+		text.append("metrics at ").append(LocalDateTime.now().format(DUMP_TIME_FORMAT)).append('\n');
+		text.append(String.format(Locale.ROOT, "%-20s %10s %12s %12s %12s %12s %12s %12s%n",
+				"latency (us)", "count", "mean", "p50", "p90", "p99", "p99.9", "max"));
+		for (LatencyHistogram histogram : HISTOGRAMS) {
+			text.append(String.format(Locale.ROOT, "%-20s %10d %12.1f %12.1f %12.1f %12.1f %12.1f %12.1f%n",
+					histogram.getName(), histogram.getCount(), histogram.getMeanMicros(), histogram.getP50Micros(),
+					histogram.getP90Micros(), histogram.getP99Micros(), histogram.getP999Micros(), histogram.getMaxMicros()));
+		}
+		for (Counter counter : COUNTERS) {
+			text.append(String.format(Locale.ROOT, "%-20s %10d%n", counter.getName(), counter.getCount()));
+		}
+		out.print(text);
+	}
+
+	// helper methods
+
+	private static void registerMBeans() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			for (LatencyHistogram histogram : HISTOGRAMS) {
+				server.registerMBean(histogram, new ObjectName(JMX_DOMAIN + ":type=Latency,name=" + histogram.getName()));
+			}
+			for (Counter counter : COUNTERS) {
+				server.registerMBean(counter, new ObjectName(JMX_DOMAIN + ":type=Counter,name=" + counter.getName()));
+			}
+		} catch (Exception e) {
+			// metrics still record, they are just not visible over JMX
+			System.err.println("Metrics are not available over JMX: " + e.getMessage());
+		}
+	}
+
+	private static void startDumping(final PrintStream out, long periodSeconds) {
+		ScheduledExecutorService dumper = Executors.newSingleThreadScheduledExecutor(task -> {
+			Thread thread = new Thread(task, "metrics-dump");
+			thread.setDaemon(true);
+			return thread;
+		});
+		dumper.scheduleAtFixedRate(() -> dump(out), periodSeconds, periodSeconds, TimeUnit.SECONDS);
+	}
+}
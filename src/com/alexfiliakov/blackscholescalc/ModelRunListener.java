@@ -0,0 +1,14 @@
+package com.alexfiliakov.blackscholescalc;
+
+public interface ModelRunListener {
+	/**
+	 * This interface follows a ModelRunWorker. Every call arrives on the Swing event thread,
+	 * so implementations may update components directly. A cancelled run makes no further calls.
+	 */
+
+	public void onStage(ModelRunWorker.Stage stage);
+
+	public void onResult(ModelRunWorker.ModelRun result);
+
+	public void onFailure(Exception failure);
+}
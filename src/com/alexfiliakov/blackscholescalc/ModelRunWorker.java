@@ -0,0 +1,124 @@
+package com.alexfiliakov.blackscholescalc;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import javax.swing.SwingWorker;
+
+import com.alexfiliakov.blackscholescalc.MarketData.MarketDataProvider;
+import com.alexfiliakov.blackscholescalc.MarketData.MarketDataProviders;
+import com.alexfiliakov.blackscholescalc.OptionPriceModel.OptionPriceTableModel;
+import com.alexfiliakov.blackscholescalc.StockModel.HistoricBars;
+import com.alexfiliakov.blackscholescalc.StockModel.StockModel;
+
+public class ModelRunWorker extends SwingWorker<ModelRunWorker.ModelRun, ModelRunWorker.Stage> {
+	/**
+	 * This class runs the model for one symbol off the Swing event thread: fetch the market data,
+	 * validate and calibrate the stock model, price the option chain. The listener hears about each
+	 * stage as it starts and then gets the result, all on the event thread; rendering the result
+	 * is the last stage and is left to the listener, since Swing components belong to the event thread.
+	 *
+	 * Cancelling a run (e.g. because a newer one replaces it) interrupts its waits and stops it at the
+	 * next stage; nothing more is reported. Fetches already sent are left to complete, so a cache
+	 * keeps their data for the next run.
+	 */
+
+	public enum Stage {
+		FETCH("Fetching market data"),
+		CALIBRATE("Validating and calibrating"), // one pass since the calibration checks the weeks as it goes
+		PRICE("Pricing options"),
+		RENDER("Rendering");
+
+		private final String description;
+
+		private Stage(String description) {
+			this.description = description;
+		}
+
+		public String getDescription() { return description; }
+	}
+
+	// the models built for the symbol, with the market data they were built from (the whole fetched history, for the graph)
+	public static class ModelRun {
+		public final String stockSymbol;
+		public final HistoricBars historicBars;
+		public final double spotPrice, riskFreeRate;
+		public final StockModel stockModel;
+		public final OptionPriceTableModel optionPriceTableModel;
+
+		ModelRun(String stockSymbol, HistoricBars historicBars, double spotPrice, double riskFreeRate, StockModel stockModel,
+				OptionPriceTableModel optionPriceTableModel) {
+			this.stockSymbol = stockSymbol;
+			this.historicBars = historicBars;
+			this.spotPrice = spotPrice;
+			this.riskFreeRate = riskFreeRate;
+			this.stockModel = stockModel;
+			this.optionPriceTableModel = optionPriceTableModel;
+		}
+	}
+
+	private final String stockSymbol;
+	private final MarketDataProvider marketData;
+	private final ModelRunListener listener;
+
+	public ModelRunWorker(String stockSymbol, MarketDataProvider marketData, ModelRunListener listener) {
+		this.stockSymbol = stockSymbol;
+		this.marketData = marketData;
+		this.listener = listener;
+	}
+
+	protected ModelRun doInBackground() throws Exception {
+		// stock symbols must contain only letters
+		// nonexistent symbols won't retrieve any data
+		if (stockSymbol == null || !stockSymbol.matches("[a-zA-Z]+")) {
+			throw new Exception ("input must contain letters");
+		}
+
+		// start all market data fetches at once, so we only wait for the slowest one
+		enterStage(Stage.FETCH);
+		CompletableFuture<HistoricBars> historicData = marketData.getHistoricData(stockSymbol);
+		CompletableFuture<Double> spotPrice = marketData.getSpotPrice(stockSymbol);
+		CompletableFuture<Double> riskFreeRate = marketData.getRiskFreeRate();
+		HistoricBars historicBars = MarketDataProviders.await(historicData);
+		double spot = MarketDataProviders.await(spotPrice);
+		double rate = MarketDataProviders.await(riskFreeRate);
+
+		enterStage(Stage.CALIBRATE);
+		StockModel stockModel = new StockModel(stockSymbol, historicBars);
+
+		enterStage(Stage.PRICE);
+		OptionPriceTableModel optionPriceTableModel = new OptionPriceTableModel(stockModel, spot, rate);
+
+		return new ModelRun(stockSymbol, historicBars, spot, rate, stockModel, optionPriceTableModel);
+	}
+
+	private void enterStage(Stage stage) throws InterruptedException {
+		if (isCancelled()) {
+			throw new InterruptedException();
+		}
+		publish(stage);
+	}
+
+	protected void process(List<Stage> stages) {
+		if (!isCancelled()) {
+			listener.onStage(stages.get(stages.size()-1));
+		}
+	}
+
+	protected void done() {
+		if (isCancelled()) {
+			return;
+		}
+		try {
+			ModelRun result = get();
+			listener.onStage(Stage.RENDER);
+			listener.onResult(result);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			listener.onFailure((cause instanceof Exception) ? (Exception)cause : new Exception(cause));
+		} catch (InterruptedException e) {
+			// done() runs once the work has finished, so get() does not wait
+		}
+	}
+}
@@ -0,0 +1,122 @@
+package com.alexfiliakov.blackscholescalc.OptionPriceModel;
+
+public final class BlackScholesPricer {
+	/**
+	 * This class prices European options with the Black-Scholes formula over whole chains at once.
+	 * Contracts are passed as primitive columns (one array per input) and prices are written into
+	 * caller-supplied output arrays, so a chain of any size is priced without allocating anything.
+	 *
+	 * N(x) comes from the StandardNormal kernel; EXACT accuracy is used unless the caller asks for FAST.
+	 *
+	 * All inputs are in years: the rate is the continuously compounded force of interest,
+	 * the volatility is annual, and the time to expiration is in years.
+	 */
+
+	private BlackScholesPricer() {
+	}
+
+	// prices every contract in the columns
+	public static void priceChain(double[] spotPrice, double[] strikePrice, double[] riskFreeForce, double[] annualVolatility, double[] timeInYears,
+			double[] callPriceOut, double[] putPriceOut) {
+		priceChain(spotPrice, strikePrice, riskFreeForce, annualVolatility, timeInYears, callPriceOut, putPriceOut, 0, strikePrice.length, StandardNormal.Accuracy.EXACT);
+	}
+
+	public static void priceChain(double[] spotPrice, double[] strikePrice, double[] riskFreeForce, double[] annualVolatility, double[] timeInYears,
+			double[] callPriceOut, double[] putPriceOut, int from, int to) {
+		priceChain(spotPrice, strikePrice, riskFreeForce, annualVolatility, timeInYears, callPriceOut, putPriceOut, null, from, to, StandardNormal.Accuracy.EXACT);
+	}
+
+	public static void priceChain(double[] spotPrice, double[] strikePrice, double[] riskFreeForce, double[] annualVolatility, double[] timeInYears,
+			double[] callPriceOut, double[] putPriceOut, int from, int to, StandardNormal.Accuracy accuracy) {
+		priceChain(spotPrice, strikePrice, riskFreeForce, annualVolatility, timeInYears, callPriceOut, putPriceOut, null, from, to, accuracy);
+	}
+
+	// prices every contract in the columns together with its Greeks
+	public static void priceChain(double[] spotPrice, double[] strikePrice, double[] riskFreeForce, double[] annualVolatility, double[] timeInYears,
+			double[] callPriceOut, double[] putPriceOut, ChainGreeks greeksOut) {
+		priceChain(spotPrice, strikePrice, riskFreeForce, annualVolatility, timeInYears, callPriceOut, putPriceOut, greeksOut, 0, strikePrice.length, StandardNormal.Accuracy.EXACT);
+	}
+
+	/*
+	 * Prices contracts [from, to) of the columns. Calls and puts share d1, d2, the discount
+	 * factor and sqrt(T); the put comes from Put-Call Parity so it costs no extra CDF evaluations.
+	 * Either output array may be null if only one side of the chain is needed.
+	 *
+	 * If greeksOut is not null the closed-form Greeks are written to it in the same pass. They reuse
+	 * d1, d2, N(d1), N(d2) and n(d1), so the only extra work per contract is one PDF evaluation.
+	 */
+	public static void priceChain(double[] spotPrice, double[] strikePrice, double[] riskFreeForce, double[] annualVolatility, double[] timeInYears,
+			double[] callPriceOut, double[] putPriceOut, ChainGreeks greeksOut, int from, int to, StandardNormal.Accuracy accuracy) {
+		boolean fast = (accuracy == StandardNormal.Accuracy.FAST);
+		for (int i=from; i<to; i++) {
+			double spot = spotPrice[i];
+			double strike = strikePrice[i];
+			double force = riskFreeForce[i];
+			double volatility = annualVolatility[i];
+			double time = timeInYears[i];
+
+			double discountFactor = Math.exp(-force*time);
+			double discountedStrike = strike*discountFactor;
+			double sqrtTime = Math.sqrt(time);
+			double volSqrtTime = volatility*sqrtTime;
+
+			double callOptionPrice, Nd1, Nd2, nd1;
+			if (volSqrtTime > 0) {
+				double d1 = (Math.log(spot/strike) + (force + volatility*volatility/2)*time) / volSqrtTime;
+				double d2 = d1 - volSqrtTime;
+				Nd1 = fast ? StandardNormal.cdfFast(d1) : StandardNormal.cdf(d1);
+				Nd2 = fast ? StandardNormal.cdfFast(d2) : StandardNormal.cdf(d2);
+				nd1 = (greeksOut != null) ? StandardNormal.pdf(d1) : 0;
+				callOptionPrice = Nd1*spot - Nd2*discountedStrike;
+			} else {
+				// expired or riskless underlying: the option is worth its discounted intrinsic value
+				Nd1 = Nd2 = (spot > discountedStrike) ? 1 : 0;
+				nd1 = 0;
+				callOptionPrice = Math.max(spot - discountedStrike, 0);
+			}
+
+			if (greeksOut != null) {
+				double callTheta = (volSqrtTime > 0 ? -spot*nd1*volatility/(2*sqrtTime) : 0) - force*discountedStrike*Nd2;
+				double callRho = time*discountedStrike*Nd2;
+				greeksOut.callDelta[i] = Nd1;
+				greeksOut.putDelta[i] = Nd1 - 1;
+				greeksOut.gamma[i] = (volSqrtTime > 0) ? nd1/(spot*volSqrtTime) : 0;
+				greeksOut.vega[i] = spot*nd1*sqrtTime;
+				greeksOut.putGamma[i] = greeksOut.gamma[i];
+				greeksOut.putVega[i] = greeksOut.vega[i];
+				greeksOut.callTheta[i] = callTheta;
+				greeksOut.putTheta[i] = callTheta + force*discountedStrike;
+				greeksOut.callRho[i] = callRho;
+				greeksOut.putRho[i] = callRho - time*discountedStrike;
+			}
+
+			if (callPriceOut != null) {
+				callPriceOut[i] = callOptionPrice;
+			}
+			if (putPriceOut != null) {
+				putPriceOut[i] = callOptionPrice - spot + discountedStrike;
+			}
+		}
+	}
+
+	// Black-Scholes Call Options formula for a single contract
+	public static double getCallOptionPrice(double spotPrice, double strikePrice, double riskFreeForce, double annualVolatility, double timeInYears) {
+		double discountedStrike = strikePrice*Math.exp(-riskFreeForce*timeInYears);
+		double volSqrtTime = annualVolatility*Math.sqrt(timeInYears);
+		if (!(volSqrtTime > 0)) {
+			return Math.max(spotPrice - discountedStrike, 0);
+		}
+
+		double d1 = (Math.log(spotPrice/strikePrice) + (riskFreeForce + annualVolatility*annualVolatility/2)*timeInYears) / volSqrtTime;
+		double d2 = d1 - volSqrtTime;
+
+		return StandardNormal.cdf(d1)*spotPrice - StandardNormal.cdf(d2)*discountedStrike;
+	}
+
+	// use Put-Call Parity to get the Put option from the corresponding Call option
+	public static double getPutOptionPrice(double spotPrice, double strikePrice, double riskFreeForce, double annualVolatility, double timeInYears) {
+		double callOptionPrice = getCallOptionPrice(spotPrice, strikePrice, riskFreeForce, annualVolatility, timeInYears);
+
+		return callOptionPrice - spotPrice + strikePrice*Math.exp(-riskFreeForce*timeInYears);
+	}
+}
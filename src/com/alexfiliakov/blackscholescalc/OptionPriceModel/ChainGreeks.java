@@ -0,0 +1,33 @@
+package com.alexfiliakov.blackscholescalc.OptionPriceModel;
+
+public class ChainGreeks {
+	/**
+	 * This class holds the sensitivities of an option chain as primitive columns, indexed the same
+	 * way as the chain's input columns. gamma and vega are the call's, putGamma and putVega the put's:
+	 * they are equal under Black-Scholes, but not for an American put priced on a lattice or grid.
+	 *
+	 * Units follow the pricer's inputs: vega is per 1.00 of annual volatility, theta is per year
+	 * and rho is per 1.00 of the risk-free force of interest.
+	 */
+
+	public final double[] callDelta, putDelta;
+	public final double[] gamma, vega;
+	public final double[] putGamma, putVega;
+	public final double[] callTheta, putTheta;
+	public final double[] callRho, putRho;
+
+	public ChainGreeks(int size) {
+		callDelta = new double[size];
+		putDelta = new double[size];
+		gamma = new double[size];
+		vega = new double[size];
+		putGamma = new double[size];
+		putVega = new double[size];
+		callTheta = new double[size];
+		putTheta = new double[size];
+		callRho = new double[size];
+		putRho = new double[size];
+	}
+
+	public int size() { return gamma.length; }
+}
@@ -0,0 +1,69 @@
+package com.alexfiliakov.blackscholescalc.OptionPriceModel;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+
+final class ChainRecordFormat {
+	/**
+	 * This class describes the binary file of priced option chains written by ChainRecordWriter and read by
+	 * ChainRecordReader. All values are little-endian, so the records can also be mapped as an array of
+	 * structs by programs in other languages.
+	 *
+	 *   header        64 bytes:
+	 *                   0  magic "OPTC" (int)
+	 *                   4  version (int)
+	 *                   8  flags (int): 1 if the records hold Greeks
+	 *                  12  record size in bytes (int)
+	 *                  16  record count (long)
+	 *                  24  symbol table offset (long)
+	 *                  32  symbol count (int), then reserved
+	 *   records       record count fixed-width records, from offset 64:
+	 *                   0  symbol id (int, an index into the symbol table)
+	 *                   4  expiration (int, days since 1970-01-01)
+	 *                   8  strike, call price, put price (doubles)
+	 *                  32  with Greeks: call delta, put delta, call gamma, call vega, call theta, put theta, call rho, put rho,
+	 *                      put gamma, put vega (doubles)
+	 *   symbol table  symbol count entries of a length (short) and that many ASCII bytes
+	 *
+	 * Records are 32 bytes, or 112 with Greeks, so every double is 8-byte aligned. The header is written last,
+	 * when the writer is closed: until then the record count is 0 and a reader sees an empty file.
+	 */
+
+	static final int MAGIC = 0x4354504F; // "OPTC" when read little-endian
+	static final int VERSION = 2; // 2 added the put's gamma and vega
+	static final int HEADER_SIZE = 64;
+
+	static final int FLAGS_OFFSET = 8, RECORD_SIZE_OFFSET = 12, COUNT_OFFSET = 16, SYMBOL_TABLE_OFFSET = 24, SYMBOL_COUNT_OFFSET = 32;
+	static final int FLAG_GREEKS = 1;
+
+	// field offsets within a record
+	static final int SYMBOL_ID = 0, EXPIRATION_DAY = 4, STRIKE = 8, CALL_PRICE = 16, PUT_PRICE = 24;
+	static final int CALL_DELTA = 32, PUT_DELTA = 40, GAMMA = 48, VEGA = 56, CALL_THETA = 64, PUT_THETA = 72, CALL_RHO = 80, PUT_RHO = 88;
+	static final int PUT_GAMMA = 96, PUT_VEGA = 104;
+
+	static final int RECORD_SIZE = 32, RECORD_SIZE_WITH_GREEKS = 112;
+
+	private ChainRecordFormat() {
+	}
+
+	static int recordSize(boolean withGreeks) {
+		return withGreeks ? RECORD_SIZE_WITH_GREEKS : RECORD_SIZE;
+	}
+
+	// checks a header read from a file
+	static void checkHeader(ByteBuffer header, long fileSize, File file) throws Exception {
+		if (fileSize < HEADER_SIZE || header.getInt(0) != MAGIC) {
+			throw new Exception("Not an option chain file: " + file);
+		}
+		if (header.getInt(4) != VERSION) {
+			throw new Exception("Unsupported option chain file version " + header.getInt(4) + ": " + file);
+		}
+		boolean withGreeks = (header.getInt(FLAGS_OFFSET) & FLAG_GREEKS) != 0;
+		long count = header.getLong(COUNT_OFFSET);
+		long symbolTableOffset = header.getLong(SYMBOL_TABLE_OFFSET);
+		if (header.getInt(RECORD_SIZE_OFFSET) != recordSize(withGreeks) || count < 0 || header.getInt(SYMBOL_COUNT_OFFSET) < 0
+				|| (count > 0 && symbolTableOffset != HEADER_SIZE + count*recordSize(withGreeks)) || symbolTableOffset > fileSize) {
+			throw new Exception("Option chain file is damaged: " + file);
+		}
+	}
+}
@@ -0,0 +1,131 @@
+package com.alexfiliakov.blackscholescalc.OptionPriceModel;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+import static com.alexfiliakov.blackscholescalc.OptionPriceModel.ChainRecordFormat.*;
+
+public class ChainRecordReader {
+	/**
+	 * This class reads a file written by ChainRecordWriter (see ChainRecordFormat) by mapping it into
+	 * memory. Opening it reads only the header and the symbol table; every getter is an absolute read
+	 * from the mapping, so going through millions of records allocates nothing and parses nothing.
+	 *
+	 * A mapping is limited to 2 GB, so the records are mapped in segments of a power of two records
+	 * each, and finding a record's segment is a shift. The mappings stay valid after the file is closed
+	 * and are released with this reader.
+	 */
+
+	private static final int SEGMENT_BYTES = 1 << 30;
+
+	private final long recordCount;
+	private final boolean withGreeks;
+	private final int recordSize;
+	private final int segmentShift; // a segment holds 1 << segmentShift records
+	private final ByteBuffer[] segments;
+	private final String[] symbols;
+
+	private ChainRecordReader(long recordCount, boolean withGreeks, int recordSize, int segmentShift, ByteBuffer[] segments, String[] symbols) {
+		this.recordCount = recordCount;
+		this.withGreeks = withGreeks;
+		this.recordSize = recordSize;
+		this.segmentShift = segmentShift;
+		this.segments = segments;
+		this.symbols = symbols;
+	}
+
+	public static ChainRecordReader open(File file) throws Exception {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long fileSize = channel.size();
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+			}
+			ChainRecordFormat.checkHeader(header, fileSize, file);
+
+			boolean withGreeks = (header.getInt(FLAGS_OFFSET) & FLAG_GREEKS) != 0;
+			int recordSize = header.getInt(RECORD_SIZE_OFFSET);
+			long recordCount = header.getLong(COUNT_OFFSET);
+			long symbolTableOffset = header.getLong(SYMBOL_TABLE_OFFSET);
+			int symbolCount = header.getInt(SYMBOL_COUNT_OFFSET);
+
+			int segmentShift = 31 - Integer.numberOfLeadingZeros(SEGMENT_BYTES / recordSize);
+			int segmentRecords = 1 << segmentShift;
+			ByteBuffer[] segments = new ByteBuffer[(int)((recordCount + segmentRecords - 1) / segmentRecords)];
+			for (int segment=0; segment < segments.length; segment++) {
+				long first = (long)segment*segmentRecords;
+				long records = Math.min(segmentRecords, recordCount - first);
+				MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + first*recordSize, records*recordSize);
+				segments[segment] = mapped.order(ByteOrder.LITTLE_ENDIAN);
+			}
+
+			return new ChainRecordReader(recordCount, withGreeks, recordSize, segmentShift, segments,
+					readSymbols(channel, symbolTableOffset, symbolCount, file));
+		}
+	}
+
+	public long size() { return recordCount; }
+	public boolean hasGreeks() { return withGreeks; }
+	public int getSymbolCount() { return symbols.length; }
+	public String getSymbol(int symbolId) { return symbols[symbolId]; }
+
+	public int getSymbolId(long record) { return segment(record).getInt(offset(record) + SYMBOL_ID); }
+	public String getStockSymbol(long record) { return symbols[getSymbolId(record)]; }
+	public int getExpirationDay(long record) { return segment(record).getInt(offset(record) + EXPIRATION_DAY); }
+	public double getStrikePrice(long record) { return segment(record).getDouble(offset(record) + STRIKE); }
+	public double getCallPrice(long record) { return segment(record).getDouble(offset(record) + CALL_PRICE); }
+	public double getPutPrice(long record) { return segment(record).getDouble(offset(record) + PUT_PRICE); }
+
+	// Greeks, NaN in a file without them
+	public double getCallDelta(long record) { return greek(record, CALL_DELTA); }
+	public double getPutDelta(long record) { return greek(record, PUT_DELTA); }
+	public double getCallGamma(long record) { return greek(record, GAMMA); }
+	public double getPutGamma(long record) { return greek(record, PUT_GAMMA); }
+	public double getCallVega(long record) { return greek(record, VEGA); }
+	public double getPutVega(long record) { return greek(record, PUT_VEGA); }
+	public double getCallTheta(long record) { return greek(record, CALL_THETA); }
+	public double getPutTheta(long record) { return greek(record, PUT_THETA); }
+	public double getCallRho(long record) { return greek(record, CALL_RHO); }
+	public double getPutRho(long record) { return greek(record, PUT_RHO); }
+
+	// helper methods
+
+	private ByteBuffer segment(long record) {
+		if (record < 0 || record >= recordCount) {
+			throw new IndexOutOfBoundsException("Record " + record + " of " + recordCount);
+		}
+		return segments[(int)(record >>> segmentShift)];
+	}
+
+	private int offset(long record) {
+		return ((int)record & ((1 << segmentShift) - 1)) * recordSize;
+	}
+
+	private double greek(long record, int field) {
+		ByteBuffer segment = segment(record);
+		return withGreeks ? segment.getDouble(offset(record) + field) : Double.NaN;
+	}
+
+	private static String[] readSymbols(FileChannel channel, long symbolTableOffset, int symbolCount, File file) throws Exception {
+		String[] symbols = new String[symbolCount];
+		if (symbolCount == 0) {
+			return symbols;
+		}
+		ByteBuffer table = channel.map(FileChannel.MapMode.READ_ONLY, symbolTableOffset, channel.size() - symbolTableOffset);
+		table.order(ByteOrder.LITTLE_ENDIAN);
+		try {
+			for (int symbolId=0; symbolId < symbolCount; symbolId++) {
+				byte[] bytes = new byte[table.getShort()];
+				table.get(bytes);
+				symbols[symbolId] = new String(bytes, StandardCharsets.US_ASCII);
+			}
+		} catch (RuntimeException e) {
+			throw new Exception("Option chain file is damaged: " + file);
+		}
+		return symbols;
+	}
+}
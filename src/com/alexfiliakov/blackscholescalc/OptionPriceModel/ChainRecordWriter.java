@@ -0,0 +1,181 @@
+package com.alexfiliakov.blackscholescalc.OptionPriceModel;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.alexfiliakov.blackscholescalc.OptionPriceModel.ChainRecordFormat.*;
+
+public class ChainRecordWriter implements AutoCloseable {
+	/**
+	 * This class writes priced option chains as fixed-width binary records (see ChainRecordFormat), to be
+	 * read back by ChainRecordReader or mapped by another process without any parsing.
+	 *
+	 * Records are put straight from the pricing columns into a direct buffer, which goes to the file
+	 * channel whenever it fills up: there are no per-row objects and no text formatting. Symbols are
+	 * stored once, in a table at the end of the file, and each record refers to its symbol by index.
+	 *
+	 * Writes are synchronized, so chains priced on several threads can go to the same file.
+	 */
+
+	private static final int BUFFER_RECORDS = 8192;
+
+	private final File file;
+	private final FileChannel channel;
+	private final boolean withGreeks;
+	private final int recordSize;
+	private final ByteBuffer buffer;
+
+	private final Map<String, Integer> symbolIds = new HashMap<String, Integer>();
+	private final List<String> symbols = new ArrayList<String>();
+	private long recordCount;
+	private boolean closed;
+
+	// creates (or truncates) the file; withGreeks adds the ten Greeks to every record
+	public ChainRecordWriter(File file, boolean withGreeks) throws IOException {
+		this.file = file;
+		this.withGreeks = withGreeks;
+		this.recordSize = recordSize(withGreeks);
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.WRITE, StandardOpenOption.READ);
+		this.buffer = ByteBuffer.allocateDirect(BUFFER_RECORDS*recordSize).order(ByteOrder.LITTLE_ENDIAN);
+
+		// an empty header until close, so a reader never sees records that are not all written
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		putHeader(header, 0, 0, 0);
+		try {
+			channel.write(header, 0);
+			channel.position(HEADER_SIZE);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	public File getFile() { return file; }
+	public boolean hasGreeks() { return withGreeks; }
+	public synchronized long getRecordCount() { return recordCount; }
+
+	// the id records of this symbol are written with, adding it to the symbol table if new
+	public synchronized int getSymbolId(String stockSymbol) {
+		Integer symbolId = symbolIds.get(stockSymbol);
+		if (symbolId == null) {
+			if (stockSymbol.length() > Short.MAX_VALUE) {
+				throw new IllegalArgumentException("Symbol is too long for an option chain file: " + stockSymbol);
+			}
+			symbolId = symbols.size();
+			symbolIds.put(stockSymbol, symbolId);
+			symbols.add(stockSymbol);
+		}
+		return symbolId;
+	}
+
+	// writes every contract of a priced chain, in chain order
+	public void write(String stockSymbol, OptionPriceTableModel optionPriceTableModel) throws IOException {
+		OptionChainTableModel tableModel = optionPriceTableModel.getTableModel();
+		int size = tableModel.getChainSize();
+		int[] expirationDays = new int[size];
+		double[] strikePrices = new double[size];
+		for (int chainRow=0; chainRow < size; chainRow++) {
+			expirationDays[chainRow] = tableModel.getExpirationDay(chainRow);
+			strikePrices[chainRow] = tableModel.getStrikePrice(chainRow);
+		}
+		write(getSymbolId(stockSymbol), expirationDays, strikePrices, optionPriceTableModel.getCallOptionPrices(),
+				optionPriceTableModel.getPutOptionPrices(), optionPriceTableModel.getGreeks(), 0, size);
+	}
+
+	/*
+	 * Writes entries [from, to) of pricing columns as records of one symbol. greeks may be null, in which
+	 * case a file with Greeks gets NaN for them.
+	 */
+	public synchronized void write(int symbolId, int[] expirationDays, double[] strikePrices, double[] callPrices, double[] putPrices,
+			ChainGreeks greeks, int from, int to) throws IOException {
+		if (closed) {
+			throw new IllegalStateException("Option chain file is closed: " + file);
+		}
+		if (symbolId < 0 || symbolId >= symbols.size()) {
+			throw new IllegalArgumentException("Unknown symbol id " + symbolId + " for " + file);
+		}
+		for (int i=from; i < to; i++) {
+			if (buffer.remaining() < recordSize) {
+				flush();
+			}
+			int record = buffer.position();
+			buffer.putInt(record + SYMBOL_ID, symbolId);
+			buffer.putInt(record + EXPIRATION_DAY, expirationDays[i]);
+			buffer.putDouble(record + STRIKE, strikePrices[i]);
+			buffer.putDouble(record + CALL_PRICE, callPrices[i]);
+			buffer.putDouble(record + PUT_PRICE, putPrices[i]);
+			if (withGreeks) {
+				buffer.putDouble(record + CALL_DELTA, greeks != null ? greeks.callDelta[i] : Double.NaN);
+				buffer.putDouble(record + PUT_DELTA, greeks != null ? greeks.putDelta[i] : Double.NaN);
+				buffer.putDouble(record + GAMMA, greeks != null ? greeks.gamma[i] : Double.NaN);
+				buffer.putDouble(record + VEGA, greeks != null ? greeks.vega[i] : Double.NaN);
+				buffer.putDouble(record + CALL_THETA, greeks != null ? greeks.callTheta[i] : Double.NaN);
+				buffer.putDouble(record + PUT_THETA, greeks != null ? greeks.putTheta[i] : Double.NaN);
+				buffer.putDouble(record + CALL_RHO, greeks != null ? greeks.callRho[i] : Double.NaN);
+				buffer.putDouble(record + PUT_RHO, greeks != null ? greeks.putRho[i] : Double.NaN);
+				buffer.putDouble(record + PUT_GAMMA, greeks != null ? greeks.putGamma[i] : Double.NaN);
+				buffer.putDouble(record + PUT_VEGA, greeks != null ? greeks.putVega[i] : Double.NaN);
+			}
+			buffer.position(record + recordSize);
+		}
+		recordCount += to - from;
+	}
+
+	// writes the symbol table, then the header that makes the records visible
+	public synchronized void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			flush();
+			long symbolTableOffset = HEADER_SIZE + recordCount*recordSize;
+			for (String stockSymbol : symbols) {
+				byte[] bytes = stockSymbol.getBytes(StandardCharsets.US_ASCII);
+				if (buffer.remaining() < 2 + bytes.length) {
+					flush();
+				}
+				buffer.putShort((short)bytes.length).put(bytes);
+			}
+			flush();
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			putHeader(header, recordCount, symbolTableOffset, symbols.size());
+			channel.force(false);
+			channel.write(header, 0);
+			channel.force(false);
+		} finally {
+			channel.close();
+		}
+	}
+
+	// helper methods
+
+	private void flush() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	private void putHeader(ByteBuffer header, long count, long symbolTableOffset, int symbolCount) {
+		header.putInt(0, MAGIC);
+		header.putInt(4, VERSION);
+		header.putInt(FLAGS_OFFSET, withGreeks ? FLAG_GREEKS : 0);
+		header.putInt(RECORD_SIZE_OFFSET, recordSize);
+		header.putLong(COUNT_OFFSET, count);
+		header.putLong(SYMBOL_TABLE_OFFSET, symbolTableOffset);
+		header.putInt(SYMBOL_COUNT_OFFSET, symbolCount);
+	}
+}
@@ -0,0 +1,331 @@
+package com.alexfiliakov.blackscholescalc.OptionPriceModel;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class FiniteDifferencePricer implements OptionPricingEngine {
+	/**
+	 * This class prices American puts by solving the Black-Scholes PDE with finite differences, one solve
+	 * per expiry for all of its strikes. Without dividends prices are homogeneous in spot and strike,
+	 * P(S, K) = K*p(S/K), so the PDE is solved once for a unit strike over moneyness x = S/K, and every
+	 * strike's price is read off that one solution at its own moneyness.
+	 *
+	 * The moneyness grid is non-uniform: a sinh map packs nodes around x = 1, where the payoff has its kink,
+	 * and spreads them out towards 0 and the far boundary. Time steps are Crank-Nicolson, except that the
+	 * first two are each replaced by two fully implicit half steps (Rannacher), which damps the oscillations
+	 * Crank-Nicolson makes at the kink. Time steps grow from expiry backwards (quadratically), so the steps are
+	 * shortest where the solution changes fastest. Every step solves a tridiagonal system with the Thomas algorithm on
+	 * arrays allocated once per thread. Early exercise is enforced with the penalty method: nodes where the
+	 * put would be worth less than exercising get a large penalty on the diagonal, and the step is solved
+	 * again until the set of such nodes stops changing (usually 2 or 3 solves).
+	 *
+	 * Contracts share a solve when they are next to each other in the columns and have the same time, rate
+	 * and volatility, as OptionPriceTableModel lays out its chain; different expiries are solved in parallel.
+	 * As in LatticePricer, calls keep their Black-Scholes values (never exercised early without dividends
+	 * while rates are not negative), put delta, gamma and theta come from the solution, vega and rho from
+	 * solves with bumped inputs, written to the put's own gamma and vega columns.
+	 */
+
+	public static final int DEFAULT_SPACE_STEPS = 300, DEFAULT_TIME_STEPS = 100;
+
+	private static final double PENALTY = 1e8;
+	private static final int MAX_PENALTY_ITERATIONS = 20;
+	private static final int RANNACHER_STEPS = 2;
+	private static final double VOLATILITY_BUMP = 1e-3, FORCE_BUMP = 1e-4;
+
+	private final int spaceSteps, timeSteps;
+	private final ForkJoinPool pool;
+	private final ThreadLocal<Workspace> workspaces = ThreadLocal.withInitial(Workspace::new); // each pool thread's solve arrays
+
+	public FiniteDifferencePricer() {
+		this(DEFAULT_SPACE_STEPS, DEFAULT_TIME_STEPS, ForkJoinPool.commonPool());
+	}
+
+	public FiniteDifferencePricer(int spaceSteps, int timeSteps, ForkJoinPool pool) {
+		if (spaceSteps < 10 || timeSteps < 2*RANNACHER_STEPS) {
+			throw new IllegalArgumentException("Grid too small: " + spaceSteps + " space steps, " + timeSteps + " time steps");
+		}
+		this.spaceSteps = spaceSteps;
+		this.timeSteps = timeSteps;
+		this.pool = pool;
+	}
+
+	// prices the whole chain, solving its expiries across the cores of the pool
+	public void priceChain(double[] spotPrice, double[] strikePrice, double[] riskFreeForce, double[] annualVolatility, double[] timeInYears,
+			double[] callPriceOut, double[] putPriceOut, ChainGreeks greeksOut) {
+		// European values first; puts are then replaced with their American values
+		BlackScholesPricer.priceChain(spotPrice, strikePrice, riskFreeForce, annualVolatility, timeInYears, callPriceOut, putPriceOut, greeksOut);
+
+		// runs of neighbouring contracts that share one solve
+		int[] runStarts = new int[strikePrice.length + 1];
+		int runCount = 0;
+		for (int i=0; i<strikePrice.length; i++) {
+			if (i == 0 || timeInYears[i] != timeInYears[i-1] || riskFreeForce[i] != riskFreeForce[i-1] || annualVolatility[i] != annualVolatility[i-1]) {
+				runStarts[runCount++] = i;
+			}
+		}
+		runStarts[runCount] = strikePrice.length;
+		pool.invoke(new RunTask(new Chain(spotPrice, strikePrice, riskFreeForce, annualVolatility, timeInYears, callPriceOut, putPriceOut, greeksOut),
+				runStarts, 0, runCount));
+	}
+
+	// the columns of a chain being priced
+	private static final class Chain {
+		final double[] spotPrice, strikePrice, riskFreeForce, annualVolatility, timeInYears, callPriceOut, putPriceOut;
+		final ChainGreeks greeksOut;
+
+		Chain(double[] spotPrice, double[] strikePrice, double[] riskFreeForce, double[] annualVolatility, double[] timeInYears,
+				double[] callPriceOut, double[] putPriceOut, ChainGreeks greeksOut) {
+			this.spotPrice = spotPrice;
+			this.strikePrice = strikePrice;
+			this.riskFreeForce = riskFreeForce;
+			this.annualVolatility = annualVolatility;
+			this.timeInYears = timeInYears;
+			this.callPriceOut = callPriceOut;
+			this.putPriceOut = putPriceOut;
+			this.greeksOut = greeksOut;
+		}
+	}
+
+	// prices contracts [from, to), which share time, rate and volatility, using the workspace's arrays
+	private void priceRun(Chain chain, int from, int to, Workspace workspace) {
+		double force = chain.riskFreeForce[from], volatility = chain.annualVolatility[from], time = chain.timeInYears[from];
+		if (!(volatility*Math.sqrt(time) > 0) || chain.putPriceOut == null) {
+			for (int i=from; i<to && chain.putPriceOut != null; i++) {
+				chain.putPriceOut[i] = Math.max(chain.putPriceOut[i], chain.strikePrice[i] - chain.spotPrice[i]);
+			}
+			return;
+		}
+
+		// the grid must reach past every contract's moneyness
+		double maxMoneyness = maxMoneyness(chain, from, to);
+		if (Double.isNaN(maxMoneyness)) {
+			return; // no contract of the run fits on a grid
+		}
+
+		workspace.solve(force, volatility, time, maxMoneyness);
+		for (int i=from; i<to; i++) {
+			double strike = chain.strikePrice[i];
+			double moneyness = chain.spotPrice[i]/strike;
+			if (!onGrid(moneyness)) {
+				continue; // keeps its Black-Scholes values
+			}
+			chain.putPriceOut[i] = strike*workspace.interpolate(workspace.values, moneyness, 0);
+			if (chain.greeksOut != null) {
+				chain.greeksOut.putDelta[i] = workspace.interpolate(workspace.values, moneyness, 1);
+				chain.greeksOut.putGamma[i] = workspace.interpolate(workspace.values, moneyness, 2)/strike;
+				chain.greeksOut.putTheta[i] = -strike*(workspace.interpolate(workspace.values, moneyness, 0)
+						- workspace.interpolate(workspace.previousValues, moneyness, 0))/workspace.lastStep;
+			}
+		}
+
+		if (chain.greeksOut != null) {
+			double volatilityBump = Math.min(VOLATILITY_BUMP, volatility/2);
+			bumpedDifference(chain, from, to, workspace, force, volatility + volatilityBump, force, volatility - volatilityBump, 2*volatilityBump, chain.greeksOut.putVega);
+			bumpedDifference(chain, from, to, workspace, force + FORCE_BUMP, volatility, force - FORCE_BUMP, volatility, 2*FORCE_BUMP, chain.greeksOut.putRho);
+		}
+	}
+
+	// central difference of the put prices between two bumped solves, written to out
+	private void bumpedDifference(Chain chain, int from, int to, Workspace workspace, double upForce, double upVolatility,
+			double downForce, double downVolatility, double width, double[] out) {
+		double time = chain.timeInYears[from];
+		double maxMoneyness = maxMoneyness(chain, from, to);
+		workspace.solve(upForce, upVolatility, time, maxMoneyness);
+		for (int i=from; i<to; i++) {
+			if (onGrid(chain.spotPrice[i]/chain.strikePrice[i])) {
+				out[i] = chain.strikePrice[i]*workspace.interpolate(workspace.values, chain.spotPrice[i]/chain.strikePrice[i], 0);
+			}
+		}
+		workspace.solve(downForce, downVolatility, time, maxMoneyness);
+		for (int i=from; i<to; i++) {
+			if (!onGrid(chain.spotPrice[i]/chain.strikePrice[i])) {
+				continue;
+			}
+			out[i] = (out[i] - chain.strikePrice[i]*workspace.interpolate(workspace.values, chain.spotPrice[i]/chain.strikePrice[i], 0))/width;
+		}
+	}
+
+	// the largest moneyness of the run's contracts (at least 1), or NaN if none of them fits on a grid
+	private static double maxMoneyness(Chain chain, int from, int to) {
+		double maxMoneyness = Double.NaN;
+		for (int i=from; i<to; i++) {
+			double moneyness = chain.spotPrice[i]/chain.strikePrice[i];
+			if (onGrid(moneyness)) {
+				maxMoneyness = Double.isNaN(maxMoneyness) ? Math.max(1, moneyness) : Math.max(maxMoneyness, moneyness);
+			}
+		}
+		return maxMoneyness;
+	}
+
+	// a zero, negative or NaN strike (or spot) has no place on the moneyness grid; such contracts keep their Black-Scholes values
+	private static boolean onGrid(double moneyness) {
+		return moneyness > 0 && moneyness < Double.POSITIVE_INFINITY;
+	}
+
+	// the unit-strike put on one grid, with every array the solve needs allocated once
+	private final class Workspace {
+		final double[] grid = new double[spaceSteps + 1];
+		final double[] lower = new double[spaceSteps + 1], diagonal = new double[spaceSteps + 1], upper = new double[spaceSteps + 1];
+		final double[] payoff = new double[spaceSteps + 1], values = new double[spaceSteps + 1], previousValues = new double[spaceSteps + 1];
+		final double[] rhs = new double[spaceSteps + 1], penalty = new double[spaceSteps + 1];
+		final double[] thomasUpper = new double[spaceSteps + 1], thomasRhs = new double[spaceSteps + 1];
+		double lastStep;
+
+		// solves the unit-strike American put from expiration back to time to expiration time
+		void solve(double force, double volatility, double time, double maxMoneyness) {
+			buildGrid(volatility*Math.sqrt(time), maxMoneyness);
+
+			// the PDE operator at each interior node: lower*V[i-1] + diagonal*V[i] + upper*V[i+1]
+			for (int i=1; i<spaceSteps; i++) {
+				double x = grid[i], below = x - grid[i-1], above = grid[i+1] - x;
+				double diffusion = volatility*volatility*x*x, drift = force*x;
+				lower[i] = (diffusion - drift*above)/(below*(below + above));
+				upper[i] = (diffusion + drift*below)/(above*(below + above));
+				diagonal[i] = -diffusion/(below*above) + drift*(above - below)/(below*above) - force;
+			}
+			for (int i=0; i<=spaceSteps; i++) {
+				payoff[i] = Math.max(1 - grid[i], 0);
+				values[i] = payoff[i];
+			}
+
+			// steps grow with the time to expiration (tau_n = time*(n/N)^2): the exercise boundary moves fastest near expiration
+			double step = 0;
+			for (int n=0; n<timeSteps; n++) {
+				if (n == timeSteps-1) {
+					System.arraycopy(values, 0, previousValues, 0, values.length);
+				}
+				step = time*((double)(2*n + 1))/((double)timeSteps*timeSteps);
+				if (n < RANNACHER_STEPS) {
+					timeStep(1, step/2);
+					timeStep(1, step/2);
+				} else {
+					timeStep(0.5, step);
+				}
+			}
+			lastStep = step;
+		}
+
+		// sinh grid from 0 to past maxMoneyness, densest around 1
+		private void buildGrid(double volSqrtTime, double maxMoneyness) {
+			double upperEnd = Math.max(1.5*maxMoneyness, Math.exp(6*volSqrtTime));
+			double concentration = Math.max(volSqrtTime/3, 1e-3);
+			double first = asinh(-1/concentration), last = asinh((upperEnd - 1)/concentration);
+
+			// stretch the far end a little so that x = 1, the payoff's kink, falls exactly on a node
+			int strikeNode = Math.max((int)(spaceSteps*first/(first - last)), 1);
+			last = first*(1 - (double)spaceSteps/strikeNode);
+			for (int i=0; i<=spaceSteps; i++) {
+				grid[i] = 1 + concentration*Math.sinh(first + (last - first)*i/spaceSteps);
+			}
+			grid[0] = 0;
+			grid[strikeNode] = 1;
+		}
+
+		// one theta-scheme step (theta 1 is implicit, 0.5 Crank-Nicolson) with early exercise enforced by penalty
+		private void timeStep(double theta, double dt) {
+			double explicit = (1 - theta)*dt, implicit = theta*dt;
+			for (int i=1; i<spaceSteps; i++) {
+				rhs[i] = values[i] + explicit*(lower[i]*values[i-1] + diagonal[i]*values[i] + upper[i]*values[i+1]);
+			}
+			// boundaries: exercise at x = 0 (worth the whole unit strike), worthless far above the strike
+			values[0] = 1;
+			values[spaceSteps] = 0;
+			rhs[1] += implicit*lower[1]*values[0];
+
+			for (int i=1; i<spaceSteps; i++) {
+				penalty[i] = (values[i] < payoff[i]) ? PENALTY : 0;
+			}
+			for (int iteration=0; iteration<MAX_PENALTY_ITERATIONS; iteration++) {
+				thomas(implicit);
+				boolean changed = false;
+				for (int i=1; i<spaceSteps; i++) {
+					double newPenalty = (values[i] < payoff[i]) ? PENALTY : 0;
+					if (newPenalty != penalty[i]) {
+						penalty[i] = newPenalty;
+						changed = true;
+					}
+				}
+				if (!changed) {
+					break;
+				}
+			}
+		}
+
+		// solves (1 - implicit*operator + penalty) V = rhs + penalty*payoff for the interior nodes (Thomas algorithm)
+		private void thomas(double implicit) {
+			double previousUpper = 0, previousRhs = 0;
+			for (int i=1; i<spaceSteps; i++) {
+				double a = -implicit*lower[i], b = 1 - implicit*diagonal[i] + penalty[i], c = -implicit*upper[i];
+				double d = rhs[i] + penalty[i]*payoff[i];
+				double pivot = b - a*previousUpper;
+				previousUpper = (i < spaceSteps-1) ? c/pivot : 0;
+				previousRhs = (d - a*previousRhs)/pivot;
+				thomasUpper[i] = previousUpper;
+				thomasRhs[i] = previousRhs;
+			}
+			values[spaceSteps-1] = thomasRhs[spaceSteps-1];
+			for (int i=spaceSteps-2; i>=1; i--) {
+				values[i] = thomasRhs[i] - thomasUpper[i]*values[i+1];
+			}
+		}
+
+		/*
+		 * Value (derivative 0), first or second derivative at x of the quadratic through the three grid
+		 * nodes nearest to x.
+		 */
+		double interpolate(double[] nodeValues, double x, int derivative) {
+			int below = Arrays.binarySearch(grid, x);
+			if (below < 0) {
+				below = -below - 2;
+			}
+			below = Math.min(Math.max(below, 0), spaceSteps-1);
+			int nearest = (x - grid[below] < grid[below+1] - x) ? below : below + 1;
+			int center = Math.min(Math.max(nearest, 1), spaceSteps-1);
+			double x0 = grid[center-1], x1 = grid[center], x2 = grid[center+1];
+			double y0 = nodeValues[center-1], y1 = nodeValues[center], y2 = nodeValues[center+1];
+			double l0 = (x0 - x1)*(x0 - x2), l1 = (x1 - x0)*(x1 - x2), l2 = (x2 - x0)*(x2 - x1);
+			switch (derivative) {
+			case 0:
+				return y0*(x - x1)*(x - x2)/l0 + y1*(x - x0)*(x - x2)/l1 + y2*(x - x0)*(x - x1)/l2;
+			case 1:
+				return y0*(2*x - x1 - x2)/l0 + y1*(2*x - x0 - x2)/l1 + y2*(2*x - x0 - x1)/l2;
+			default:
+				return 2*(y0/l0 + y1/l1 + y2/l2);
+			}
+		}
+	}
+
+	private static double asinh(double x) {
+		return Math.copySign(Math.log(Math.abs(x) + Math.sqrt(x*x + 1)), x);
+	}
+
+	// solves runs [from, to) of runStarts with the workspace of the thread running the leaf
+	private class RunTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final Chain chain;
+		private final int[] runStarts;
+		private final int from, to;
+
+		RunTask(Chain chain, int[] runStarts, int from, int to) {
+			this.chain = chain;
+			this.runStarts = runStarts;
+			this.from = from;
+			this.to = to;
+		}
+
+		protected void compute() {
+			if (to - from <= 1) {
+				Workspace workspace = workspaces.get();
+				for (int run=from; run<to; run++) {
+					priceRun(chain, runStarts[run], runStarts[run+1], workspace);
+				}
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new RunTask(chain, runStarts, from, middle), new RunTask(chain, runStarts, middle, to));
+		}
+	}
+}
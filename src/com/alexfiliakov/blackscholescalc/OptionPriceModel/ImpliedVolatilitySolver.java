@@ -0,0 +1,204 @@
+package com.alexfiliakov.blackscholescalc.OptionPriceModel;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+public class ImpliedVolatilitySolver {
+	/**
+	 * This class inverts the Black-Scholes formula: given market prices for a chain, it solves
+	 * for the annual volatility of every contract. Like BlackScholesPricer it works on primitive
+	 * columns and writes its results into caller-supplied arrays.
+	 *
+	 * Each contract starts from the Corrado-Miller rational approximation and is refined with
+	 * Halley iterations on the log of the price. The root is kept inside a bracket that every iteration narrows; any step
+	 * that leaves the bracket falls back to bisection, so the solver cannot diverge.
+	 * Contracts are always solved on their out-of-the-money side (converted with Put-Call Parity),
+	 * where the price is most sensitive to volatility.
+	 */
+
+	// per-contract outcome written to statusOut
+	public static final int SOLVED = 0;
+	public static final int BELOW_INTRINSIC = 1; // price at or under the no-arbitrage lower bound
+	public static final int ABOVE_UPPER_BOUND = 2; // price at or over the spot (call) or discounted strike (put)
+	public static final int NOT_CONVERGED = 3;
+	public static final int INVALID_INPUT = 4;
+
+	private static final double MAX_VOLATILITY = 20; // upper end of the initial bracket (2000% annual)
+	private static final int PARALLEL_THRESHOLD = 4096; // contracts per fork-join leaf task
+
+	private final double tolerance; // convergence tolerance on volatility
+	private final int maxIterations;
+
+	public ImpliedVolatilitySolver() {
+		this(1e-10, 50);
+	}
+
+	public ImpliedVolatilitySolver(double tolerance, int maxIterations) {
+		this.tolerance = tolerance;
+		this.maxIterations = maxIterations;
+	}
+
+	/*
+	 * Solves contracts [from, to) on the calling thread and returns the number that were not SOLVED.
+	 * Unsolved contracts get a NaN volatility; iterationsOut may be null.
+	 */
+	public int solveChain(double[] marketPrice, boolean[] isCall, double[] spotPrice, double[] strikePrice, double[] riskFreeForce, double[] timeInYears,
+			double[] volatilityOut, int[] iterationsOut, int[] statusOut, int from, int to) {
+		int failures = 0;
+		for (int i=from; i<to; i++) {
+			int status = solve(i, marketPrice[i], isCall[i], spotPrice[i], strikePrice[i], riskFreeForce[i], timeInYears[i], volatilityOut, iterationsOut);
+			statusOut[i] = status;
+			if (status != SOLVED) {
+				failures++;
+			}
+		}
+		return failures;
+	}
+
+	public int solveChain(double[] marketPrice, boolean[] isCall, double[] spotPrice, double[] strikePrice, double[] riskFreeForce, double[] timeInYears,
+			double[] volatilityOut, int[] iterationsOut, int[] statusOut) {
+		return solveChain(marketPrice, isCall, spotPrice, strikePrice, riskFreeForce, timeInYears, volatilityOut, iterationsOut, statusOut, 0, marketPrice.length);
+	}
+
+	// solves the whole chain across the cores of the common fork-join pool
+	public int solveChainParallel(double[] marketPrice, boolean[] isCall, double[] spotPrice, double[] strikePrice, double[] riskFreeForce, double[] timeInYears,
+			double[] volatilityOut, int[] iterationsOut, int[] statusOut) {
+		return solveChainParallel(marketPrice, isCall, spotPrice, strikePrice, riskFreeForce, timeInYears, volatilityOut, iterationsOut, statusOut, ForkJoinPool.commonPool());
+	}
+
+	public int solveChainParallel(double[] marketPrice, boolean[] isCall, double[] spotPrice, double[] strikePrice, double[] riskFreeForce, double[] timeInYears,
+			double[] volatilityOut, int[] iterationsOut, int[] statusOut, ForkJoinPool pool) {
+		return pool.invoke(new ChainTask(marketPrice, isCall, spotPrice, strikePrice, riskFreeForce, timeInYears,
+				volatilityOut, iterationsOut, statusOut, 0, marketPrice.length));
+	}
+
+	// solves one contract, writing its volatility (and iteration count) at index i
+	private int solve(int i, double price, boolean call, double spot, double strike, double force, double time, double[] volatilityOut, int[] iterationsOut) {
+		volatilityOut[i] = Double.NaN;
+		if (iterationsOut != null) {
+			iterationsOut[i] = 0;
+		}
+		if (!(spot > 0 && strike > 0 && time > 0) || Double.isNaN(price) || Double.isNaN(force)) {
+			return INVALID_INPUT;
+		}
+
+		double discountedStrike = strike*Math.exp(-force*time);
+		double sqrtTime = Math.sqrt(time);
+		double logMoneyness = Math.log(spot/discountedStrike);
+
+		// arbitrage bounds of the quoted side
+		double intrinsic = call ? Math.max(spot - discountedStrike, 0) : Math.max(discountedStrike - spot, 0);
+		double upperBound = call ? spot : discountedStrike;
+		if (price >= upperBound) {
+			return ABOVE_UPPER_BOUND;
+		}
+		if (price <= intrinsic) {
+			return BELOW_INTRINSIC;
+		}
+
+		// switch to the out-of-the-money side with Put-Call Parity; its price is pure time value
+		boolean solveCall = (logMoneyness < 0);
+		double target = price;
+		if (call != solveCall) {
+			target = call ? price - spot + discountedStrike : price + spot - discountedStrike;
+		}
+		if (!(target > 0)) {
+			return BELOW_INTRINSIC; // parity conversion lost the time value to rounding
+		}
+
+		// Corrado-Miller initial guess (for the call price), falling back to Brenner-Subrahmanyam
+		double callPrice = solveCall ? target : target + spot - discountedStrike;
+		double halfGap = (spot - discountedStrike)/2;
+		double root = (callPrice - halfGap)*(callPrice - halfGap) - 4*halfGap*halfGap/Math.PI;
+		double volatility = (root > 0)
+				? Math.sqrt(2*Math.PI)/(spot + discountedStrike)*(callPrice - halfGap + Math.sqrt(root))/sqrtTime
+				: Math.sqrt(2*Math.PI/time)*target/spot;
+		double low = 0, high = MAX_VOLATILITY;
+		if (!(volatility > 1e-4 && volatility < high)) {
+			volatility = Math.min(Math.max(volatility, 1e-4), high/2);
+		}
+
+		for (int iteration=1; iteration<=maxIterations; iteration++) {
+			double volSqrtTime = volatility*sqrtTime;
+			double d1 = logMoneyness/volSqrtTime + volSqrtTime/2;
+			double d2 = d1 - volSqrtTime;
+			double model = solveCall
+					? spot*StandardNormal.cdf(d1) - discountedStrike*StandardNormal.cdf(d2)
+					: discountedStrike*StandardNormal.cdf(-d2) - spot*StandardNormal.cdf(-d1);
+			double difference = model - target;
+			double vega = spot*StandardNormal.pdf(d1)*sqrtTime;
+
+			// price is increasing in volatility, so the sign of the difference narrows the bracket
+			if (difference > 0) {
+				high = volatility;
+			} else {
+				low = volatility;
+			}
+
+			// Halley step on log(price), which stays well-behaved for far out-of-the-money contracts
+			// whose price is exponentially small in the volatility
+			double next;
+			if (vega > 1e-300 && model > 0) {
+				double newtonStep = Math.log(model/target)*model/vega;
+				double curvature = d1*d2/volatility - vega/model; // g''/g' of g = log(price)
+				double denominator = 1 - 0.5*newtonStep*curvature;
+				next = volatility - ((denominator > 0.5) ? newtonStep/denominator : newtonStep); // fall back to Newton if the correction is unstable
+			} else {
+				next = Double.NaN;
+			}
+			if (next >= low && next <= high && Math.abs(next - volatility) <= tolerance*Math.max(1, volatility)) {
+				volatilityOut[i] = next;
+				if (iterationsOut != null) {
+					iterationsOut[i] = iteration;
+				}
+				return SOLVED;
+			}
+			if (!(next > low && next < high)) {
+				next = (low + high)/2; // safeguard: bisect the bracket
+			}
+			volatility = next;
+		}
+
+		if (iterationsOut != null) {
+			iterationsOut[i] = maxIterations;
+		}
+		return NOT_CONVERGED;
+	}
+
+	// splits the chain into ranges until they are small enough to solve sequentially
+	private class ChainTask extends RecursiveTask<Integer> {
+		private static final long serialVersionUID = 1L;
+
+		private final double[] marketPrice, spotPrice, strikePrice, riskFreeForce, timeInYears, volatilityOut;
+		private final boolean[] isCall;
+		private final int[] iterationsOut, statusOut;
+		private final int from, to;
+
+		ChainTask(double[] marketPrice, boolean[] isCall, double[] spotPrice, double[] strikePrice, double[] riskFreeForce, double[] timeInYears,
+				double[] volatilityOut, int[] iterationsOut, int[] statusOut, int from, int to) {
+			this.marketPrice = marketPrice;
+			this.isCall = isCall;
+			this.spotPrice = spotPrice;
+			this.strikePrice = strikePrice;
+			this.riskFreeForce = riskFreeForce;
+			this.timeInYears = timeInYears;
+			this.volatilityOut = volatilityOut;
+			this.iterationsOut = iterationsOut;
+			this.statusOut = statusOut;
+			this.from = from;
+			this.to = to;
+		}
+
+		protected Integer compute() {
+			if (to - from <= PARALLEL_THRESHOLD) {
+				return solveChain(marketPrice, isCall, spotPrice, strikePrice, riskFreeForce, timeInYears, volatilityOut, iterationsOut, statusOut, from, to);
+			}
+			int middle = (from + to) >>> 1;
+			ChainTask left = new ChainTask(marketPrice, isCall, spotPrice, strikePrice, riskFreeForce, timeInYears, volatilityOut, iterationsOut, statusOut, from, middle);
+			ChainTask right = new ChainTask(marketPrice, isCall, spotPrice, strikePrice, riskFreeForce, timeInYears, volatilityOut, iterationsOut, statusOut, middle, to);
+			left.fork();
+			int rightFailures = right.compute();
+			return left.join() + rightFailures;
+		}
+	}
+}
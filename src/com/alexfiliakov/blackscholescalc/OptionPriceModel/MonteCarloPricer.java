@@ -0,0 +1,294 @@
+package com.alexfiliakov.blackscholescalc.OptionPriceModel;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import com.alexfiliakov.blackscholescalc.StockModel.StockModel;
+
+public class MonteCarloPricer {
+	/**
+	 * This class prices path-dependent options by simulating the lognormal stock model: geometric
+	 * Brownian motion observed at steps equally spaced dates up to expiration. Payoffs:
+	 *   EUROPEAN                 - max(S(T) - K, 0) for a call, max(K - S(T), 0) for a put
+	 *   ASIAN                    - the same on the arithmetic average of the observed prices
+	 *   UP/DOWN_AND_OUT/IN       - European payoff, knocked out (or in) when an observed price reaches the barrier
+	 *   LOOKBACK                 - floating strike: S(T) - minimum for a call, maximum - S(T) for a put
+	 * Barriers and extremes are monitored on the observation dates (and the spot), not continuously.
+	 *
+	 * Paths keep running statistics only (last, extremes, sums), never arrays, and results are streamed
+	 * into mean and co-moment accumulators. Variance is reduced two ways:
+	 *   antithetic pairs   - every path is simulated together with its mirror image (shocks negated)
+	 *   control variate    - a payoff with a closed-form expectation is simulated alongside: the geometric
+	 *                        average option for ASIAN, the European option for barriers, and S(T) otherwise
+	 *
+	 * The paths are split into fixed blocks, each with its own SplittableRandom split from the seed in block
+	 * order, and blocks are combined in a fixed tree. Results are therefore identical whatever the number of
+	 * threads that ran them.
+	 */
+
+	public enum Payoff { EUROPEAN, ASIAN, UP_AND_OUT, UP_AND_IN, DOWN_AND_OUT, DOWN_AND_IN, LOOKBACK }
+
+	private static final int BLOCK_SAMPLES = 4096; // samples (antithetic pairs or single paths) per fork-join leaf task
+
+	private final long paths;
+	private final int steps;
+	private final long seed;
+	private final boolean antithetic, controlVariate;
+	private final ForkJoinPool pool;
+
+	public MonteCarloPricer(long paths, int steps, long seed) {
+		this(paths, steps, seed, true, true, ForkJoinPool.commonPool());
+	}
+
+	public MonteCarloPricer(long paths, int steps, long seed, boolean antithetic, boolean controlVariate, ForkJoinPool pool) {
+		if (paths < 4 || steps < 1) {
+			throw new IllegalArgumentException("Need at least 4 paths and 1 step, got " + paths + " paths and " + steps + " steps");
+		}
+		this.paths = paths;
+		this.steps = steps;
+		this.seed = seed;
+		this.antithetic = antithetic;
+		this.controlVariate = controlVariate;
+		this.pool = pool;
+	}
+
+	/*
+	 * Risk-neutral price of one contract. The barrier is ignored unless the payoff has one, and the
+	 * strike is ignored for LOOKBACK. Units as in BlackScholesPricer.
+	 */
+	public MonteCarloResult price(Payoff payoff, boolean isCall, double spotPrice, double strikePrice, double barrier,
+			double riskFreeForce, double annualVolatility, double timeInYears) {
+		double logDrift = riskFreeForce - annualVolatility*annualVolatility/2;
+		return simulate(payoff, isCall, spotPrice, strikePrice, barrier, logDrift, annualVolatility, timeInYears, Math.exp(-riskFreeForce*timeInYears));
+	}
+
+	// risk-neutral price with the volatility calibrated by the stock model
+	public MonteCarloResult price(StockModel stockModel, Payoff payoff, boolean isCall, double spotPrice, double strikePrice, double barrier,
+			double riskFreeForce, double timeInYears) {
+		return price(payoff, isCall, spotPrice, strikePrice, barrier, riskFreeForce, stockModel.getAnnualVolatility(), timeInYears);
+	}
+
+	// expected payoff at expiration (not discounted) under the stock model's historic drift and volatility
+	public MonteCarloResult expectedPayoff(StockModel stockModel, Payoff payoff, boolean isCall, double spotPrice, double strikePrice, double barrier,
+			double timeInYears) {
+		// the model's annual mean is the mean log return, which is the log drift of the simulated paths
+		return simulate(payoff, isCall, spotPrice, strikePrice, barrier, stockModel.getAnnualMean(), stockModel.getAnnualVolatility(), timeInYears, 1);
+	}
+
+	private MonteCarloResult simulate(Payoff payoff, boolean isCall, double spotPrice, double strikePrice, double barrier,
+			double logDrift, double annualVolatility, double timeInYears, double discountFactor) {
+		if (!(spotPrice > 0) || !(timeInYears > 0) || !(annualVolatility >= 0) || (hasBarrier(payoff) && !(barrier > 0))) {
+			throw new IllegalArgumentException("Invalid contract: spot " + spotPrice + ", volatility " + annualVolatility
+					+ ", time " + timeInYears + ", barrier " + barrier);
+		}
+		Simulation simulation = new Simulation(payoff, isCall, spotPrice, strikePrice, barrier, logDrift, annualVolatility, timeInYears);
+		Moments moments = pool.invoke(new BlockTask(simulation, 0, simulation.randoms.length));
+
+		double price = moments.meanY, variance = moments.m2Y, coefficient = 0;
+		if (controlVariate && moments.m2C > 0) {
+			coefficient = moments.cYC/moments.m2C;
+			price -= coefficient*(moments.meanC - simulation.controlExpectation);
+			variance -= coefficient*moments.cYC;
+		}
+		double standardError = Math.sqrt(Math.max(variance, 0)/(moments.n - 1)/moments.n);
+		return new MonteCarloResult(discountFactor*price, discountFactor*standardError, antithetic ? 2*moments.n : moments.n, coefficient);
+	}
+
+	private static boolean hasBarrier(Payoff payoff) {
+		return payoff == Payoff.UP_AND_OUT || payoff == Payoff.UP_AND_IN || payoff == Payoff.DOWN_AND_OUT || payoff == Payoff.DOWN_AND_IN;
+	}
+
+	// one pricing run: the contract, the step constants and the random stream of every block
+	private final class Simulation {
+		final Payoff payoff;
+		final boolean isCall, averaging, extremes;
+		final double logSpot, strike, logBarrier, stepDrift, stepVolatility;
+		final double controlExpectation;
+		final long samples;
+		final SplittableRandom[] randoms;
+
+		Simulation(Payoff payoff, boolean isCall, double spotPrice, double strikePrice, double barrier,
+				double logDrift, double annualVolatility, double timeInYears) {
+			this.payoff = payoff;
+			this.isCall = isCall;
+			this.averaging = (payoff == Payoff.ASIAN);
+			this.extremes = (payoff == Payoff.LOOKBACK) || hasBarrier(payoff);
+			this.logSpot = Math.log(spotPrice);
+			this.strike = strikePrice;
+			this.logBarrier = hasBarrier(payoff) ? Math.log(barrier) : 0;
+			this.stepDrift = logDrift*timeInYears/steps;
+			this.stepVolatility = annualVolatility*Math.sqrt(timeInYears/steps);
+
+			// log S(T) is normal with mean logSpot + logDrift*T and variance sigma^2*T
+			double variance = annualVolatility*annualVolatility*timeInYears;
+			if (averaging) {
+				// the log of the geometric average of the n observations, likewise normal
+				double n = steps;
+				controlExpectation = lognormalOption(isCall, logSpot + logDrift*timeInYears*(n+1)/(2*n), variance*(n+1)*(2*n+1)/(6*n*n), strikePrice);
+			} else if (hasBarrier(payoff)) {
+				controlExpectation = lognormalOption(isCall, logSpot + logDrift*timeInYears, variance, strikePrice);
+			} else {
+				controlExpectation = Math.exp(logSpot + logDrift*timeInYears + variance/2);
+			}
+
+			samples = antithetic ? (paths + 1)/2 : paths;
+			int blocks = (int)((samples + BLOCK_SAMPLES - 1)/BLOCK_SAMPLES);
+			SplittableRandom root = new SplittableRandom(seed);
+			randoms = new SplittableRandom[blocks];
+			for (int i=0; i<blocks; i++) {
+				randoms[i] = root.split();
+			}
+		}
+
+		Moments simulateBlock(int block) {
+			SplittableRandom random = randoms[block];
+			int blockSamples = (int)Math.min(BLOCK_SAMPLES, samples - (long)block*BLOCK_SAMPLES);
+			Moments moments = new Moments();
+			double spareNormal = 0;
+			boolean hasSpare = false;
+
+			for (int s=0; s<blockSamples; s++) {
+				double logA = logSpot, maxA = logSpot, minA = logSpot, sumA = 0, sumLogA = 0;
+				double logB = logSpot, maxB = logSpot, minB = logSpot, sumB = 0, sumLogB = 0;
+				for (int k=0; k<steps; k++) {
+					// standard normal shocks, two at a time (Marsaglia's polar method)
+					double z;
+					if (hasSpare) {
+						z = spareNormal;
+						hasSpare = false;
+					} else {
+						double u, v, r;
+						do {
+							u = 2*random.nextDouble() - 1;
+							v = 2*random.nextDouble() - 1;
+							r = u*u + v*v;
+						} while (r >= 1 || r == 0);
+						double scale = Math.sqrt(-2*Math.log(r)/r);
+						z = u*scale;
+						spareNormal = v*scale;
+						hasSpare = true;
+					}
+
+					double shock = stepVolatility*z;
+					logA += stepDrift + shock;
+					logB += stepDrift - shock; // the antithetic path, unused without antithetic sampling
+					if (averaging) {
+						sumA += Math.exp(logA);
+						sumLogA += logA;
+						if (antithetic) {
+							sumB += Math.exp(logB);
+							sumLogB += logB;
+						}
+					}
+					if (extremes) {
+						maxA = Math.max(maxA, logA);
+						minA = Math.min(minA, logA);
+						maxB = Math.max(maxB, logB);
+						minB = Math.min(minB, logB);
+					}
+				}
+
+				double y = payoff(logA, maxA, minA, sumA);
+				double c = controlVariate ? control(logA, sumLogA) : 0;
+				if (antithetic) {
+					y = (y + payoff(logB, maxB, minB, sumB))/2;
+					c = controlVariate ? (c + control(logB, sumLogB))/2 : 0;
+				}
+				moments.add(y, c);
+			}
+			return moments;
+		}
+
+		private double payoff(double logLast, double logMax, double logMin, double sum) {
+			switch (payoff) {
+			case EUROPEAN: return vanilla(isCall, Math.exp(logLast), strike);
+			case ASIAN: return vanilla(isCall, sum/steps, strike);
+			case UP_AND_OUT: return (logMax >= logBarrier) ? 0 : vanilla(isCall, Math.exp(logLast), strike);
+			case UP_AND_IN: return (logMax >= logBarrier) ? vanilla(isCall, Math.exp(logLast), strike) : 0;
+			case DOWN_AND_OUT: return (logMin <= logBarrier) ? 0 : vanilla(isCall, Math.exp(logLast), strike);
+			case DOWN_AND_IN: return (logMin <= logBarrier) ? vanilla(isCall, Math.exp(logLast), strike) : 0;
+			default: return isCall ? Math.exp(logLast) - Math.exp(logMin) : Math.exp(logMax) - Math.exp(logLast);
+			}
+		}
+
+		private double control(double logLast, double sumLog) {
+			if (averaging) {
+				return vanilla(isCall, Math.exp(sumLog/steps), strike);
+			}
+			return hasBarrier(payoff) ? vanilla(isCall, Math.exp(logLast), strike) : Math.exp(logLast);
+		}
+	}
+
+	private static double vanilla(boolean isCall, double price, double strike) {
+		return Math.max(isCall ? price - strike : strike - price, 0);
+	}
+
+	// expected call or put payoff on a lognormal price whose log has the given mean and variance
+	private static double lognormalOption(boolean isCall, double logMean, double logVariance, double strike) {
+		if (!(logVariance > 0)) {
+			return vanilla(isCall, Math.exp(logMean), strike);
+		}
+		double forward = Math.exp(logMean + logVariance/2);
+		double deviation = Math.sqrt(logVariance);
+		double d1 = (logMean + logVariance - Math.log(strike))/deviation;
+		double d2 = d1 - deviation;
+		return isCall ? forward*StandardNormal.cdf(d1) - strike*StandardNormal.cdf(d2)
+				: strike*StandardNormal.cdf(-d2) - forward*StandardNormal.cdf(-d1);
+	}
+
+	// running means and (co-)moments of the payoff Y and the control C (Welford, combined with Chan's formulas)
+	private static final class Moments {
+		long n;
+		double meanY, meanC, m2Y, m2C, cYC;
+
+		void add(double y, double c) {
+			n++;
+			double deltaY = y - meanY, deltaC = c - meanC;
+			meanY += deltaY/n;
+			meanC += deltaC/n;
+			m2Y += deltaY*(y - meanY);
+			m2C += deltaC*(c - meanC);
+			cYC += deltaY*(c - meanC);
+		}
+
+		Moments combine(Moments other) {
+			long total = n + other.n;
+			double deltaY = other.meanY - meanY, deltaC = other.meanC - meanC;
+			double weight = (double)n*other.n/total;
+			meanY += deltaY*other.n/total;
+			meanC += deltaC*other.n/total;
+			m2Y += other.m2Y + deltaY*deltaY*weight;
+			m2C += other.m2C + deltaC*deltaC*weight;
+			cYC += other.cYC + deltaY*deltaC*weight;
+			n = total;
+			return this;
+		}
+	}
+
+	// simulates blocks [from, to), always splitting at the same points so the sums add up in the same order
+	private static final class BlockTask extends RecursiveTask<Moments> {
+		private static final long serialVersionUID = 1L;
+
+		private final Simulation simulation;
+		private final int from, to;
+
+		BlockTask(Simulation simulation, int from, int to) {
+			this.simulation = simulation;
+			this.from = from;
+			this.to = to;
+		}
+
+		protected Moments compute() {
+			if (to - from == 1) {
+				return simulation.simulateBlock(from);
+			}
+			int middle = (from + to) >>> 1;
+			BlockTask left = new BlockTask(simulation, from, middle);
+			BlockTask right = new BlockTask(simulation, middle, to);
+			left.fork();
+			Moments rightMoments = right.compute();
+			return left.join().combine(rightMoments);
+		}
+	}
+}
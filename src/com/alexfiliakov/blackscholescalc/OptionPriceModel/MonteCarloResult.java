@@ -0,0 +1,24 @@
+package com.alexfiliakov.blackscholescalc.OptionPriceModel;
+
+public class MonteCarloResult {
+	/**
+	 * This class holds a Monte Carlo estimate with its standard error and 95% confidence interval bounds
+	 */
+
+	public final double price, standardError, lowerBound, upperBound;
+	public final long paths;
+	public final double controlCoefficient; // weight of the control variate, 0 when none was used
+
+	public MonteCarloResult(double price, double standardError, long paths, double controlCoefficient) {
+		this.price = price;
+		this.standardError = standardError;
+		this.lowerBound = price - 1.96*standardError;
+		this.upperBound = price + 1.96*standardError;
+		this.paths = paths;
+		this.controlCoefficient = controlCoefficient;
+	}
+
+	public String toString() {
+		return price + " +/- " + 1.96*standardError + " (" + paths + " paths)";
+	}
+}
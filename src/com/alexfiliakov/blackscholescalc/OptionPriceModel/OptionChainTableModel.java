@@ -0,0 +1,201 @@
+package com.alexfiliakov.blackscholescalc.OptionPriceModel;
+
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.function.IntPredicate;
+
+import javax.swing.JTable;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.JTableHeader;
+
+public class OptionChainTableModel extends AbstractTableModel {
+	/**
+	 * This class shows an option chain in a JTable straight from its primitive columns: expiration
+	 * (as an epoch day), strike, call and put prices and ChainGreeks. Cells are formatted only when
+	 * the table asks for them, which is for the rows on screen, so a chain of any size costs its
+	 * arrays plus one int per row.
+	 *
+	 * Sorting and filtering work on the primitive values and rearrange a permutation of row indices;
+	 * the chain's arrays are never copied or reordered. Use this model's own sorting rather than a
+	 * TableRowSorter, which would format every cell to compare them.
+	 */
+
+	private static final long serialVersionUID = 1L;
+
+	public static final String[] COLUMN_NAMES = {"Expiration", "Strike", "Call Price", "Put Price",
+			"Call Delta", "Put Delta", "Call Gamma", "Put Gamma", "Call Vega", "Put Vega", "Call Theta", "Put Theta", "Call Rho", "Put Rho"};
+
+	private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("MM/dd/yyyy");
+
+	private final int[] expirationDays;
+	private final double[] strikePrices, callOptionPrices, putOptionPrices;
+	private final ChainGreeks greeks;
+
+	// formats are not thread-safe; the table reads cells on the event thread only
+	private final DecimalFormat strikeFormat = createFormat(2);
+	private final DecimalFormat priceFormat = createFormat(4);
+
+	// chain rows in display order, after filtering and sorting
+	private int[] viewToChain;
+	private int viewRowCount;
+
+	private IntPredicate filter;
+	private int sortColumn = -1;
+	private boolean sortAscending = true;
+
+	// columns are indexed by chain row and are not copied, so they must not change while shown
+	public OptionChainTableModel(int[] expirationDays, double[] strikePrices, double[] callOptionPrices, double[] putOptionPrices, ChainGreeks greeks) {
+		this.expirationDays = expirationDays;
+		this.strikePrices = strikePrices;
+		this.callOptionPrices = callOptionPrices;
+		this.putOptionPrices = putOptionPrices;
+		this.greeks = greeks;
+		this.viewToChain = new int[strikePrices.length];
+		updateView();
+	}
+
+	public int getRowCount() { return viewRowCount; }
+	public int getColumnCount() { return COLUMN_NAMES.length; }
+	public String getColumnName(int column) { return COLUMN_NAMES[column]; }
+	public Class<?> getColumnClass(int column) { return String.class; }
+
+	public Object getValueAt(int row, int column) {
+		int chainRow = viewToChain[row];
+		switch (column) {
+		case 0:
+			return DATE_FORMAT.format(LocalDate.ofEpochDay(expirationDays[chainRow]));
+		case 1:
+			return strikeFormat.format(strikePrices[chainRow]) + " ";
+		default:
+			return priceFormat.format(getNumber(chainRow, column)) + " ";
+		}
+	}
+
+	// the unformatted value of a cell, by chain row (the expiration as an epoch day)
+	public double getNumber(int chainRow, int column) {
+		switch (column) {
+		case 0: return expirationDays[chainRow];
+		case 1: return strikePrices[chainRow];
+		case 2: return callOptionPrices[chainRow];
+		case 3: return putOptionPrices[chainRow];
+		case 4: return greeks.callDelta[chainRow];
+		case 5: return greeks.putDelta[chainRow];
+		case 6: return greeks.gamma[chainRow];
+		case 7: return greeks.putGamma[chainRow];
+		case 8: return greeks.vega[chainRow];
+		case 9: return greeks.putVega[chainRow];
+		case 10: return greeks.callTheta[chainRow];
+		case 11: return greeks.putTheta[chainRow];
+		case 12: return greeks.callRho[chainRow];
+		case 13: return greeks.putRho[chainRow];
+		default: throw new IndexOutOfBoundsException("Column " + column + " of " + COLUMN_NAMES.length);
+		}
+	}
+
+	public int getChainRow(int row) { return viewToChain[row]; }
+	public int getChainSize() { return strikePrices.length; }
+	public int getExpirationDay(int chainRow) { return expirationDays[chainRow]; }
+	public double getStrikePrice(int chainRow) { return strikePrices[chainRow]; }
+
+	// shows only the chain rows the filter accepts (null shows all), e.g. row -> getStrikePrice(row) > 100
+	public void setFilter(IntPredicate filter) {
+		this.filter = filter;
+		updateView();
+	}
+
+	// sorts rows by a column's values, ties kept in chain order; column -1 restores chain order
+	public void sortBy(int column, boolean ascending) {
+		if (column < -1 || column >= COLUMN_NAMES.length) {
+			throw new IndexOutOfBoundsException("Column " + column + " of " + COLUMN_NAMES.length);
+		}
+		sortColumn = column;
+		sortAscending = ascending;
+		updateView();
+	}
+
+	public int getSortColumn() { return sortColumn; }
+	public boolean isSortAscending() { return sortAscending; }
+
+	private void updateView() {
+		viewRowCount = 0;
+		for (int chainRow=0; chainRow<strikePrices.length; chainRow++) {
+			if (filter == null || filter.test(chainRow)) {
+				viewToChain[viewRowCount++] = chainRow;
+			}
+		}
+
+		if (sortColumn >= 0 && viewRowCount > 1) {
+			double[] keys = new double[strikePrices.length];
+			for (int i=0; i<viewRowCount; i++) {
+				int chainRow = viewToChain[i];
+				keys[chainRow] = sortAscending ? getNumber(chainRow, sortColumn) : -getNumber(chainRow, sortColumn);
+			}
+			mergeSort(viewToChain, new int[viewRowCount], 0, viewRowCount, keys);
+		}
+		fireTableDataChanged();
+	}
+
+	// stable sort of rows[from, to) by their keys, using scratch of the same length
+	private static void mergeSort(int[] rows, int[] scratch, int from, int to, double[] keys) {
+		if (to - from < 16) {
+			for (int i=from+1; i<to; i++) {
+				int row = rows[i];
+				int j = i;
+				while (j > from && Double.compare(keys[rows[j-1]], keys[row]) > 0) {
+					rows[j] = rows[j-1];
+					j--;
+				}
+				rows[j] = row;
+			}
+			return;
+		}
+		int middle = (from + to) >>> 1;
+		mergeSort(rows, scratch, from, middle, keys);
+		mergeSort(rows, scratch, middle, to, keys);
+		if (Double.compare(keys[rows[middle-1]], keys[rows[middle]]) <= 0) {
+			return; // already in order
+		}
+		System.arraycopy(rows, from, scratch, from, to - from);
+		int left = from, right = middle;
+		for (int i=from; i<to; i++) {
+			if (right >= to || (left < middle && Double.compare(keys[scratch[left]], keys[scratch[right]]) <= 0)) {
+				rows[i] = scratch[left++];
+			} else {
+				rows[i] = scratch[right++];
+			}
+		}
+	}
+
+	/*
+	 * Sorts the table's OptionChainTableModel by the clicked column, reversing on a second click.
+	 * Installs once per table; the model is looked up on each click, so it may be replaced.
+	 */
+	public static void installHeaderSorting(final JTable table) {
+		final JTableHeader header = table.getTableHeader();
+		if (header.getClientProperty(OptionChainTableModel.class) != null) {
+			return;
+		}
+		header.putClientProperty(OptionChainTableModel.class, Boolean.TRUE);
+		header.addMouseListener(new MouseAdapter() {
+			public void mouseClicked(MouseEvent e) {
+				int column = table.convertColumnIndexToModel(header.columnAtPoint(e.getPoint()));
+				if (column >= 0 && table.getModel() instanceof OptionChainTableModel) {
+					OptionChainTableModel model = (OptionChainTableModel)table.getModel();
+					model.sortBy(column, model.getSortColumn() != column || !model.isSortAscending());
+				}
+			}
+		});
+	}
+
+	private static DecimalFormat createFormat(int fractionDigits) {
+		DecimalFormat format = new DecimalFormat();
+		format.setRoundingMode(RoundingMode.HALF_EVEN);
+		format.setMaximumFractionDigits(fractionDigits);
+		format.setMinimumFractionDigits(fractionDigits);
+		return format;
+	}
+}
@@ -1,45 +1,19 @@
 package com.alexfiliakov.blackscholescalc.OptionPriceModel;
 
-import javafx.scene.control.TableColumn;
-
-import javax.management.monitor.Monitor;
 import javax.swing.JLabel;
 import javax.swing.JTable;
 import javax.swing.SwingConstants;
-import javax.swing.UIManager;
-import javax.swing.border.CompoundBorder;
-import javax.swing.border.EmptyBorder;
 import javax.swing.table.DefaultTableCellRenderer;
-import javax.swing.table.DefaultTableModel;
 import javax.swing.table.TableCellRenderer;
-import javax.swing.table.TableModel;
-
-import org.apache.commons.math3.distribution.NormalDistribution;
 
+import com.alexfiliakov.blackscholescalc.MarketData.MarketDataProviders;
+import com.alexfiliakov.blackscholescalc.Metrics.Metrics;
 import com.alexfiliakov.blackscholescalc.StockModel.StockModel;
-import com.sun.xml.internal.ws.api.Component;
 
-import sun.net.www.content.text.plain;
-import sun.swing.table.DefaultTableCellHeaderRenderer;
-import sun.util.spi.CalendarProvider;
-
-import java.awt.Color;
 import java.awt.Font;
-import java.awt.Insets;
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.MalformedURLException;
-import java.net.URL;
-import java.net.URLConnection;
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
-import java.util.Calendar;
-import java.util.Date;
-import java.util.Locale;
-import java.util.StringTokenizer;
-import java.math.RoundingMode;
-import java.text.DecimalFormat;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.concurrent.Future;
 
 
 public class OptionPriceTableModel {
@@ -47,21 +21,46 @@ public class OptionPriceTableModel {
 	 * This class generates the table of option prices for the underlying stock
 	 */
 	
-	final private static String[] COLUMN_NAMES = {"Expiration", "Strike", "Call Price", "Put Price"};
-	final private static int TRADING_DAYS_IN_YEAR = 252;
+	// -Dpricing.volatility=history prices each expiry with the historic volatility of a matching window
+	private static final boolean HISTORIC_TERM_STRUCTURE = "history".equals(System.getProperty("pricing.volatility", "flat"));
+	
+	private OptionChainTableModel tableModel; //holds option prices
 	
-	private TableModel tableModel; //holds option prices
+	// prices and Greeks of the chain, one entry per table row
+	private double[] callOptionPrices, putOptionPrices;
+	private ChainGreeks greeks;
 	
-	// creates the price table data
+	// creates the price table data, fetching the spot price and risk-free rate concurrently
 	public OptionPriceTableModel(StockModel stockModel) throws Exception {
+		this(stockModel, MarketDataProviders.getDefault().getSpotPrice(stockModel.getStockSymbol()), MarketDataProviders.getDefault().getRiskFreeRate());
+	}
+	
+	private OptionPriceTableModel(StockModel stockModel, Future<Double> spotPrice, Future<Double> riskFreeRate) throws Exception {
+		this(stockModel, MarketDataProviders.await(spotPrice), MarketDataProviders.await(riskFreeRate));
+	}
+	
+	// creates the price table data from an already retrieved spot price and risk-free rate (in percent)
+	public OptionPriceTableModel(StockModel stockModel, double spotPrice, double riskFreeRate) throws Exception {
+		this(stockModel, spotPrice, riskFreeRate, OptionPricingEngines.getDefault());
+	}
+	
+	// as above, pricing the chain with the given engine (e.g. a LatticePricer for American options)
+	public OptionPriceTableModel(StockModel stockModel, double spotPrice, double riskFreeRate, OptionPricingEngine pricingEngine) throws Exception {
+		this(stockModel, spotPrice, riskFreeRate, pricingEngine,
+				HISTORIC_TERM_STRUCTURE ? VolatilitySurface.fromHistory(stockModel.getHistoricBars()) : null);
+	}
+	
+	// as above, looking up each contract's volatility on a surface (the model's flat volatility if it is null)
+	public OptionPriceTableModel(StockModel stockModel, double spotPrice, double riskFreeRate, OptionPricingEngine pricingEngine,
+			VolatilitySurface volatilitySurface) throws Exception {
 		// Black-Scholes is calculated in years, make sure all units are in years!
-		double riskFreeRate = getRiskFreeRate();
 		double riskFreeForce = Math.log(1+riskFreeRate/100);
-		double spotPrice = getSpotPrice(stockModel.getStockSymbol()); // get asset price (last close price)
 		double annualVolatility = stockModel.getAnnualVolatility();
 		
-		Calendar[] expirationDays = getExpirationDays(); // list of expiration days to calculate
-		SimpleDateFormat sdf = new SimpleDateFormat("MM/dd/yyyy");
+		// expirations and times to them come from the trading calendar (business days, holidays excluded)
+		TradingCalendar tradingCalendar = TradingCalendar.getDefault();
+		int today = (int)LocalDate.now().toEpochDay();  //todo: before 4pm EST, closing is still today
+		int[] expirationDays = getExpirationDays(tradingCalendar, today); // list of expiration days to calculate
 		
 		// calculate option prices at Strike Prices based on weekly SD deviation in returns
 		double[] strikePricesArr = new double [7];
@@ -69,209 +68,75 @@ public class OptionPriceTableModel {
 			strikePricesArr[i+3] = spotPrice * Math.exp(i*annualVolatility/Math.sqrt(52));
 		}
 		
-		String[][] rowData = new String[expirationDays.length * strikePricesArr.length][COLUMN_NAMES.length];
-
+		// lay the chain out as primitive columns so it can be priced in a single pass
+		int rowCount = expirationDays.length * strikePricesArr.length;
+		double[] spotPrices = new double[rowCount];
+		double[] strikePrices = new double[rowCount];
+		double[] riskFreeForces = new double[rowCount];
+		double[] annualVolatilities = new double[rowCount];
+		double[] businessYearsToDates = new double[rowCount];
+		int[] expirationEpochDays = new int[rowCount];
+		callOptionPrices = new double[rowCount];
+		putOptionPrices = new double[rowCount];
+		greeks = new ChainGreeks(rowCount);
+		
 		for (int expDayIndex=0; expDayIndex < expirationDays.length; expDayIndex++) {
+			double businessYearsToDate = tradingCalendar.getYearFraction(today, expirationDays[expDayIndex]);
 			for (int strikePriceIndex=0; strikePriceIndex < strikePricesArr.length; strikePriceIndex++) {
-				int rowDataIndex = expDayIndex*strikePricesArr.length + strikePriceIndex; // index of the data row (getting multiple Strike Prices for each Expiration Day)
-				rowData[rowDataIndex][0] = sdf.format(expirationDays[expDayIndex].getTime());
-
-				// set to format numbers to 2 decimals for strike prices
-			    DecimalFormat format = new DecimalFormat();
-			    format.setRoundingMode(RoundingMode.HALF_EVEN);
-			    format.setMaximumFractionDigits(2);
-			    format.setMinimumFractionDigits(2);
-				
-				rowData[rowDataIndex][1] = format.format(strikePricesArr[strikePriceIndex]) + " ";
-				
-				// set 4 decimals for option prices
-			    format.setMaximumFractionDigits(4);
-			    format.setMinimumFractionDigits(4);
-			    
-			    double businessYearsToDate = ((double)businessDaysToDate(expirationDays[expDayIndex]))/TRADING_DAYS_IN_YEAR;
-			    double callOptionPrice, putOptionPrice;
-			    callOptionPrice = getCallOptionPrice(spotPrice, strikePricesArr[strikePriceIndex], riskFreeForce, annualVolatility, businessYearsToDate);
-			    putOptionPrice = getPutOptionPrice(spotPrice, strikePricesArr[strikePriceIndex], riskFreeForce, annualVolatility, businessYearsToDate);
-			    
-				rowData[rowDataIndex][2] = format.format(callOptionPrice) + " ";
-				rowData[rowDataIndex][3] = format.format(putOptionPrice) + " ";
+				int rowDataIndex = expDayIndex*strikePricesArr.length + strikePriceIndex;
+				spotPrices[rowDataIndex] = spotPrice;
+				strikePrices[rowDataIndex] = strikePricesArr[strikePriceIndex];
+				riskFreeForces[rowDataIndex] = riskFreeForce;
+				annualVolatilities[rowDataIndex] = annualVolatility;
+				businessYearsToDates[rowDataIndex] = businessYearsToDate;
+				expirationEpochDays[rowDataIndex] = expirationDays[expDayIndex];
 			}
 		}
 		
-		tableModel = new DefaultTableModel(rowData, COLUMN_NAMES);
+		if (volatilitySurface != null) {
+			volatilitySurface.getVolatilities(spotPrices, strikePrices, riskFreeForces, businessYearsToDates, annualVolatilities);
+		}
+		
+		long started = Metrics.start();
+		pricingEngine.priceChain(spotPrices, strikePrices, riskFreeForces, annualVolatilities, businessYearsToDates, callOptionPrices, putOptionPrices, greeks);
+		Metrics.CHAIN_PRICING.recordSince(started);
+		Metrics.CONTRACTS_PRICED.add(rowCount);
+		
+		// cells are formatted lazily by the table model, for the rows on screen only
+		tableModel = new OptionChainTableModel(expirationEpochDays, strikePrices, callOptionPrices, putOptionPrices, greeks);
 	}
 	
-	public TableModel getTableModel() {
+	public OptionChainTableModel getTableModel() {
 		return tableModel;
 	}
 	
+	public double[] getCallOptionPrices() { return callOptionPrices; }
+	public double[] getPutOptionPrices() { return putOptionPrices; }
+	public ChainGreeks getGreeks() { return greeks; }
+	
     /*
      * 
      *    Helper Methods
      * 
      */
 	
-    /*
-     * This method gets the last trade price (spot price) using Yahoo API
-     * https://greenido.wordpress.com/2009/12/22/yahoo-finance-hidden-api/
-     */
-    private double getSpotPrice (String stockSymbol) throws Exception {
-    	double spotPrice;
-		URL url = null;
-		URLConnection urlConn = null;
-		InputStreamReader inStream = null;
-		BufferedReader br = null;
-
-		/*
-		 * This returns a CSV file with a single cell indicating the current price
-		 */
-		try {
-			url = new URL("http://finance.yahoo.com/d/quotes.csv?s="
-					+ stockSymbol
-					+ "&f=l1"); // l1 indicates the Last Trade price
-			urlConn = url.openConnection();
-			inStream = new InputStreamReader(urlConn.getInputStream());
-			br = new BufferedReader(inStream);
-
-			spotPrice = Double.parseDouble(br.readLine());
-		} catch (MalformedURLException e) {
-			throw new Exception("Problem retrieving stock data");
-		} catch (IOException e) {
-			throw new Exception("Problem retrieving stock data");
-		} catch (Exception e) {
-			throw e;
-		} finally {
-			if (inStream != null)
-				inStream.close();
-			if (br != null)
-				br.close();
-		}
-		
-		return spotPrice;
-    }
-    
-    /*
-     * This method gets the risk-free rate using the 10-yr treasury rate
-   	 * 	Partial solution is: take current 10-yr treasury rate, subtract 1% historical risk premium
-     * 	Ref: http://www.google.com/url?sa=t&rct=j&q=&esrc=s&source=web&cd=1&cad=rja&uact=8&ved=0CCEQFjAA&url=http%3A%2F%2Fsom.yale.edu%2F~spiegel%2Fmgt541%2FLectures%2FEstimatingCAPMInputs.ppt&ei=AvSRVYS4MImt-AHd7LjgBg&usg=AFQjCNFSKQUQmq8wGdCUfXUgX8YYyPX6mQ&sig2=11oTNuIAtqBSYVRk7iktqQ&bvm=bv.96783405,d.cWw
-     */
-    private double getRiskFreeRate() throws Exception {
-    	double tenYearTNotePrice = getSpotPrice("^TNX"); // get the 10-yr T-Note Price
-    	return tenYearTNotePrice - 1.;
-    }
-    
-    private Calendar[] getExpirationDays() {
-    	ArrayList<Calendar> expirationDaysList = new ArrayList<Calendar>();
-    	
-    	Calendar today = Calendar.getInstance();
-    	today.setFirstDayOfWeek(Calendar.MONDAY);
-    	// need to get today's close day (weekend = Friday, otherwise previous day)
-    	
-    	Calendar todayClosingDay = (Calendar)today.clone();  //todo: before 4pm EST, closing is still today
-    	
-    	Calendar expirationDayToAdd = (Calendar)todayClosingDay.clone();
-    	switch(todayClosingDay.get(Calendar.DAY_OF_WEEK)) {
-    	case Calendar.MONDAY:
-    		expirationDayToAdd.add(Calendar.DATE, 4);
-    		break;
-    	case Calendar.TUESDAY:
-    		expirationDayToAdd.add(Calendar.DATE, 3);
-    		break;
-    	case Calendar.WEDNESDAY:
-    		expirationDayToAdd.add(Calendar.DATE, 2);
-    		break;
-    	case Calendar.THURSDAY:
-    		expirationDayToAdd.add(Calendar.DATE, 1);
-    		break;
-    	case Calendar.FRIDAY:
-    		expirationDayToAdd.add(Calendar.DATE, 7);
-    		break;
-    	case Calendar.SATURDAY:
-    		expirationDayToAdd.add(Calendar.DATE, 6);
-    		break;
-    	case Calendar.SUNDAY:
-    		expirationDayToAdd.add(Calendar.DATE, 5);
-    		break;
-    	}
-    	
-    	// add 8 weeks
-    	expirationDaysList.add((Calendar)expirationDayToAdd.clone());
-    	
-    	for (int i=0; i<7; i++) {
-	    	expirationDayToAdd.add(Calendar.DATE, 7);
-	    	expirationDaysList.add((Calendar)expirationDayToAdd.clone());
-    	}
-    	
-    	// add 8 quarters (13-week periods)
-    	expirationDayToAdd.add(Calendar.DATE,(52/4-8)*7);
-    	expirationDaysList.add((Calendar)expirationDayToAdd.clone());
-    	
-    	for (int i=0; i<7; i++) {
-	    	expirationDayToAdd.add(Calendar.DATE, 52/4*7);
-	    	expirationDaysList.add((Calendar)expirationDayToAdd.clone());
-    	}
-    	
-    	Calendar[] expirationDaysArr = new Calendar[expirationDaysList.size()];
-    	expirationDaysArr = expirationDaysList.toArray(expirationDaysArr);
+    private int[] getExpirationDays(TradingCalendar tradingCalendar, int today) {
+    	// 8 weekly expirations, then 8 quarterly ones after the last weekly
+    	int[] weeklies = tradingCalendar.getWeeklyExpirations(today, 8);
+    	int[] quarterlies = tradingCalendar.getQuarterlyExpirations(weeklies[weeklies.length-1], 8);
     	
+    	int[] expirationDaysArr = Arrays.copyOf(weeklies, weeklies.length + quarterlies.length);
+    	System.arraycopy(quarterlies, 0, expirationDaysArr, weeklies.length, quarterlies.length);
     	return expirationDaysArr;
     }
     
-    private int businessDaysToDate(Calendar date) {
-    	// calculates business days until close of the date (excluding today)
-    	
-    	//TODO: account for holidays (or use TRADING_DAYS_IN_A_YEAR as approx)
-    	
-    	int businessDayCount = 0;
-    	
-    	Calendar today = Calendar.getInstance();
-    	while (date.getTimeInMillis()-today.getTimeInMillis() > 0) {
-    		today.add(Calendar.DATE, 1);
-    		switch (today.get(Calendar.DAY_OF_WEEK)) {
-    		case Calendar.SATURDAY:
-    		case Calendar.SUNDAY:
-    			break;
-			default:
-    			businessDayCount++; // only increment on weekday
-    			break;
-    		}
-    	}
-    	
-    	return businessDayCount;
-    }
-    
-    // Black-Scholes Call Options formula
-    private double getCallOptionPrice(double spotPrice, double strikePrice, double riskFreeForce, double annualVolatility, double timeInYears) {
-    	double d1, d2, Nd1, Nd2, callOptionPrice;
-    	
-    	final NormalDistribution normalDistribution = new NormalDistribution();
-    	
-    	d1 = (Math.log(spotPrice/strikePrice) + (riskFreeForce + annualVolatility*annualVolatility/2)*timeInYears);
-    	d1 /= annualVolatility*Math.sqrt(timeInYears);
-    	
-    	d2 = d1 - annualVolatility*Math.sqrt(timeInYears);
-    	
-    	Nd1 = normalDistribution.cumulativeProbability(d1);
-    	Nd2 = normalDistribution.cumulativeProbability(d2);
-    	
-    	callOptionPrice = Nd1*spotPrice - Nd2*strikePrice*Math.exp(-riskFreeForce*timeInYears);
-
-    	return callOptionPrice;
-    }
-    
-    // use Put-Call Parity to get the Put option from the corresponding Call option
-    private double getPutOptionPrice(double spotPrice, double strikePrice, double riskFreeForce, double annualVolatility, double timeInYears) {
-    	double callOptionPrice = getCallOptionPrice(spotPrice, strikePrice, riskFreeForce, annualVolatility, timeInYears);
-    	
-    	double putOptionPrice = callOptionPrice - spotPrice + strikePrice*Math.exp(-riskFreeForce*timeInYears);
-    	
-    	return putOptionPrice;
-    }
-    
 	// formats the representing JTable
     public static void formatTable(JTable table) {
-		DefaultTableCellHeaderRenderer headerRenderer = new DefaultTableCellHeaderRenderer();
-		headerRenderer.setHorizontalAlignment(SwingConstants.CENTER);
+		// center the look and feel's own header renderer (a JLabel in the standard ones)
+		TableCellRenderer headerRenderer = table.getTableHeader().getDefaultRenderer();
+		if (headerRenderer instanceof JLabel) {
+			((JLabel)headerRenderer).setHorizontalAlignment(SwingConstants.CENTER);
+		}
 		
 		DefaultTableCellRenderer centerRenderer = new DefaultTableCellRenderer();
 		centerRenderer.setHorizontalAlignment(SwingConstants.CENTER);
@@ -279,13 +144,13 @@ public class OptionPriceTableModel {
 		DefaultTableCellRenderer rightRenderer = new DefaultTableCellRenderer();
 		rightRenderer.setHorizontalAlignment(SwingConstants.RIGHT);
 		
-		for (int i = 0; i < COLUMN_NAMES.length ; i++) {
-			table.getColumnModel().getColumn(i).setHeaderRenderer(headerRenderer);
+		for (int i = 0; i < OptionChainTableModel.COLUMN_NAMES.length ; i++) {
 			table.getColumnModel().getColumn(i).setCellRenderer(rightRenderer);
 		}
 		
 		table.getColumnModel().getColumn(0).setCellRenderer(centerRenderer);
 		
 		table.getTableHeader().setFont(new Font("SansSerif", Font.BOLD, 14));
+		OptionChainTableModel.installHeaderSorting(table);
 	}
 }
\ No newline at end of file
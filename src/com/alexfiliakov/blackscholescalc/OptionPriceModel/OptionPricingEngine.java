@@ -0,0 +1,15 @@
+package com.alexfiliakov.blackscholescalc.OptionPriceModel;
+
+public interface OptionPricingEngine {
+	/**
+	 * This interface prices an option chain given as primitive columns, the way BlackScholesPricer does:
+	 * every contract's call and put prices (and, if greeksOut is not null, its Greeks) are written into
+	 * the output arrays at the contract's index. Units as in BlackScholesPricer.
+	 */
+
+	// European prices from the Black-Scholes formula
+	OptionPricingEngine BLACK_SCHOLES = BlackScholesPricer::priceChain;
+
+	void priceChain(double[] spotPrice, double[] strikePrice, double[] riskFreeForce, double[] annualVolatility, double[] timeInYears,
+			double[] callPriceOut, double[] putPriceOut, ChainGreeks greeksOut);
+}
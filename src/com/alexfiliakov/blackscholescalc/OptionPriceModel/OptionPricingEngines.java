@@ -0,0 +1,51 @@
+package com.alexfiliakov.blackscholescalc.OptionPriceModel;
+
+public final class OptionPricingEngines {
+	/**
+	 * This class holds the application's default OptionPricingEngine, picked from system properties:
+	 *   -Dpricing.engine=blackscholes   European prices from the Black-Scholes formula (the default)
+	 *   -Dpricing.engine=binomial       American prices from a CRR binomial lattice (LatticePricer)
+	 *   -Dpricing.engine=trinomial      American prices from a trinomial lattice
+	 *   -Dpricing.engine=pde            American prices from one Crank-Nicolson solve per expiry (FiniteDifferencePricer)
+	 * Lattices use -Dpricing.steps=<n> steps (default LatticePricer.DEFAULT_STEPS).
+	 */
+
+	private static volatile OptionPricingEngine defaultEngine;
+
+	private OptionPricingEngines() {
+	}
+
+	public static OptionPricingEngine getDefault() {
+		OptionPricingEngine engine = defaultEngine;
+		if (engine == null) {
+			synchronized (OptionPricingEngines.class) {
+				if (defaultEngine == null) {
+					defaultEngine = createFromSystemProperties();
+				}
+				engine = defaultEngine;
+			}
+		}
+		return engine;
+	}
+
+	public static void setDefault(OptionPricingEngine engine) {
+		defaultEngine = engine;
+	}
+
+	private static OptionPricingEngine createFromSystemProperties() {
+		String name = System.getProperty("pricing.engine", "blackscholes");
+		int steps = Integer.getInteger("pricing.steps", LatticePricer.DEFAULT_STEPS);
+		switch (name.toLowerCase()) {
+		case "binomial":
+			return new LatticePricer(LatticePricer.Lattice.BINOMIAL, steps);
+		case "trinomial":
+			return new LatticePricer(LatticePricer.Lattice.TRINOMIAL, steps);
+		case "pde":
+			return new FiniteDifferencePricer();
+		case "blackscholes":
+			return OptionPricingEngine.BLACK_SCHOLES;
+		default:
+			throw new IllegalArgumentException("Unknown pricing engine " + name + " (expected blackscholes, binomial, trinomial or pde)");
+		}
+	}
+}
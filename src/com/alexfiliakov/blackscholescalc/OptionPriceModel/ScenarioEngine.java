@@ -0,0 +1,217 @@
+package com.alexfiliakov.blackscholescalc.OptionPriceModel;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import com.alexfiliakov.blackscholescalc.Metrics.Metrics;
+
+public class ScenarioEngine {
+	/**
+	 * This class revalues a book of European options under every scenario of a ScenarioGrid and returns
+	 * the P&L cube: for each scenario, the change in the book's Black-Scholes value from today's. Like
+	 * BlackScholesPricer it takes the contracts as primitive columns; each contract is a call or a put
+	 * held in some quantity.
+	 *
+	 * Pricing scenarios one by one would repeat a log, a square root and an exponential per contract and
+	 * scenario. Instead the work is nested so that each is done once at the level it depends on:
+	 *   per contract               log(spot/strike), sqrt(time) and today's value
+	 *   per contract and rate      the discount factor and the drift
+	 *   per contract and vol       volatility*sqrt(time) and its reciprocal
+	 *   per spot shock             log(1+shock), once for the whole grid
+	 * which leaves two CDF evaluations and a few multiplications per contract and scenario.
+	 *
+	 * Contracts are processed in tiles of TILE_SIZE, whose hoisted terms stay in cache while every
+	 * scenario is run over them, and the tiles are spread over a fork-join pool. Each task sums its
+	 * contracts into its own cube and the cubes are added as tasks join, so no scenario is ever written
+	 * by two threads.
+	 */
+
+	private static final int TILE_SIZE = 256; // contracts whose hoisted terms are kept together
+	private static final int PARALLEL_THRESHOLD = 1024; // contracts per fork-join leaf task
+
+	private final StandardNormal.Accuracy accuracy;
+
+	public ScenarioEngine() {
+		this(StandardNormal.Accuracy.EXACT);
+	}
+
+	public ScenarioEngine(StandardNormal.Accuracy accuracy) {
+		this.accuracy = accuracy;
+	}
+
+	// the book's P&L cube, revalued across the cores of the common fork-join pool
+	public double[] revalue(double[] spotPrice, double[] strikePrice, double[] riskFreeForce, double[] annualVolatility, double[] timeInYears,
+			boolean[] isCall, double[] quantity, ScenarioGrid grid) {
+		return revalue(spotPrice, strikePrice, riskFreeForce, annualVolatility, timeInYears, isCall, quantity, grid, null, ForkJoinPool.commonPool());
+	}
+
+	/*
+	 * Returns the book's P&L cube, getScenarioCount() values laid out as the grid numbers its scenarios.
+	 * quantity may be null for one of every contract. If contractPnlOut is not null it also receives every
+	 * contract's own cube: the P&L of contract i in scenario j is at i*getScenarioCount() + j.
+	 */
+	public double[] revalue(double[] spotPrice, double[] strikePrice, double[] riskFreeForce, double[] annualVolatility, double[] timeInYears,
+			boolean[] isCall, double[] quantity, ScenarioGrid grid, double[] contractPnlOut, ForkJoinPool pool) {
+		int size = strikePrice.length;
+		if (spotPrice.length != size || riskFreeForce.length != size || annualVolatility.length != size || timeInYears.length != size
+				|| isCall.length != size || (quantity != null && quantity.length != size)) {
+			throw new IllegalArgumentException("Contract columns have different lengths");
+		}
+		if (contractPnlOut != null && contractPnlOut.length < (long)size*grid.getScenarioCount()) {
+			throw new IllegalArgumentException("Contract P&L array holds fewer than " + size + " x " + grid.getScenarioCount() + " values");
+		}
+
+		long started = Metrics.start();
+		double[] cube = pool.invoke(new BookTask(new Book(spotPrice, strikePrice, riskFreeForce, annualVolatility, timeInYears, isCall, quantity,
+				grid, contractPnlOut), 0, size));
+		Metrics.SCENARIO_REVALUATION.recordSince(started);
+		return cube;
+	}
+
+	// adds the P&L of contracts [from, to) to cube, on the calling thread
+	private void revalue(Book book, int from, int to, double[] cube) {
+		boolean fast = (accuracy == StandardNormal.Accuracy.FAST);
+		ScenarioGrid grid = book.grid;
+		int spotCount = grid.getSpotShockCount(), volatilityCount = grid.getVolatilityShockCount(), rateCount = grid.getRateShockCount();
+		int scenarioCount = grid.getScenarioCount();
+		int spotStride = volatilityCount*rateCount; // distance between neighbouring spot shocks in the cube
+
+		double[] spotFactor = new double[spotCount], logSpotFactor = new double[spotCount];
+		for (int s=0; s<spotCount; s++) {
+			spotFactor[s] = 1 + grid.getSpotShock(s);
+			logSpotFactor[s] = Math.log1p(grid.getSpotShock(s));
+		}
+
+		// per-contract terms of the current tile
+		double[] logMoneyness = new double[TILE_SIZE], sqrtTime = new double[TILE_SIZE], todayValue = new double[TILE_SIZE];
+		double[] discountedStrike = new double[TILE_SIZE], drift = new double[TILE_SIZE];
+		double[] volSqrtTime = new double[TILE_SIZE], inverseVolSqrtTime = new double[TILE_SIZE], halfVarianceTime = new double[TILE_SIZE];
+
+		for (int tileStart=from; tileStart<to; tileStart+=TILE_SIZE) {
+			int tileSize = Math.min(TILE_SIZE, to - tileStart);
+
+			for (int t=0; t<tileSize; t++) {
+				int i = tileStart + t;
+				double time = book.timeInYears[i];
+				logMoneyness[t] = Math.log(book.spotPrice[i]/book.strikePrice[i]);
+				sqrtTime[t] = Math.sqrt(time);
+
+				// today's value goes through the same arithmetic as the scenarios, so unshocked P&L is exactly 0
+				double volatility = Math.max(book.annualVolatility[i], 0);
+				double force = book.riskFreeForce[i];
+				double vst = volatility*sqrtTime[t];
+				double strikeToday = book.strikePrice[i]*Math.exp(-force*time);
+				double call = callValue(book.spotPrice[i], strikeToday, logMoneyness[t] + force*time + volatility*volatility/2*time,
+						1/vst, vst, fast);
+				todayValue[t] = book.isCall[i] ? call : call - book.spotPrice[i] + strikeToday;
+			}
+
+			for (int r=0; r<rateCount; r++) {
+				double rateShock = grid.getRateShock(r);
+				for (int t=0; t<tileSize; t++) {
+					int i = tileStart + t;
+					double force = book.riskFreeForce[i] + rateShock;
+					discountedStrike[t] = book.strikePrice[i]*Math.exp(-force*book.timeInYears[i]);
+					drift[t] = force*book.timeInYears[i];
+				}
+
+				for (int v=0; v<volatilityCount; v++) {
+					double volatilityShock = grid.getVolatilityShock(v);
+					for (int t=0; t<tileSize; t++) {
+						int i = tileStart + t;
+						double volatility = Math.max(book.annualVolatility[i] + volatilityShock, 0); // shocks cannot make it negative
+						volSqrtTime[t] = volatility*sqrtTime[t];
+						inverseVolSqrtTime[t] = 1/volSqrtTime[t];
+						halfVarianceTime[t] = volatility*volatility/2*book.timeInYears[i];
+					}
+
+					int firstScenario = grid.getScenario(0, v, r);
+					for (int t=0; t<tileSize; t++) {
+						int i = tileStart + t;
+						double spot = book.spotPrice[i];
+						double held = (book.quantity != null) ? book.quantity[i] : 1;
+						boolean call = book.isCall[i];
+						double d1Numerator = logMoneyness[t] + drift[t] + halfVarianceTime[t];
+						long contractOffset = (long)i*scenarioCount;
+
+						for (int s=0, scenario=firstScenario; s<spotCount; s++, scenario+=spotStride) {
+							double shockedSpot = spot*spotFactor[s];
+							double value = callValue(shockedSpot, discountedStrike[t], d1Numerator + logSpotFactor[s], inverseVolSqrtTime[t], volSqrtTime[t], fast);
+							if (!call) {
+								value = value - shockedSpot + discountedStrike[t]; // Put-Call Parity
+							}
+							double pnl = held*(value - todayValue[t]);
+							cube[scenario] += pnl;
+							if (book.contractPnlOut != null) {
+								book.contractPnlOut[(int)(contractOffset + scenario)] = pnl;
+							}
+						}
+					}
+				}
+			}
+		}
+	}
+
+	// the call value given d1's numerator, or the discounted intrinsic value when there is no volatility left
+	private static double callValue(double spot, double discountedStrike, double d1Numerator, double inverseVolSqrtTime, double volSqrtTime, boolean fast) {
+		if (!(volSqrtTime > 0)) {
+			return Math.max(spot - discountedStrike, 0);
+		}
+		double d1 = d1Numerator*inverseVolSqrtTime;
+		double d2 = d1 - volSqrtTime;
+		double Nd1 = fast ? StandardNormal.cdfFast(d1) : StandardNormal.cdf(d1);
+		double Nd2 = fast ? StandardNormal.cdfFast(d2) : StandardNormal.cdf(d2);
+		return Nd1*spot - Nd2*discountedStrike;
+	}
+
+	// the columns and grid of one revaluation, shared by its tasks
+	private static class Book {
+		final double[] spotPrice, strikePrice, riskFreeForce, annualVolatility, timeInYears, quantity, contractPnlOut;
+		final boolean[] isCall;
+		final ScenarioGrid grid;
+
+		Book(double[] spotPrice, double[] strikePrice, double[] riskFreeForce, double[] annualVolatility, double[] timeInYears,
+				boolean[] isCall, double[] quantity, ScenarioGrid grid, double[] contractPnlOut) {
+			this.spotPrice = spotPrice;
+			this.strikePrice = strikePrice;
+			this.riskFreeForce = riskFreeForce;
+			this.annualVolatility = annualVolatility;
+			this.timeInYears = timeInYears;
+			this.isCall = isCall;
+			this.quantity = quantity;
+			this.grid = grid;
+			this.contractPnlOut = contractPnlOut;
+		}
+	}
+
+	private class BookTask extends RecursiveTask<double[]> {
+		private static final long serialVersionUID = 1L;
+
+		private final Book book;
+		private final int from, to;
+
+		BookTask(Book book, int from, int to) {
+			this.book = book;
+			this.from = from;
+			this.to = to;
+		}
+
+		protected double[] compute() {
+			if (to - from <= PARALLEL_THRESHOLD) {
+				double[] cube = new double[book.grid.getScenarioCount()];
+				revalue(book, from, to, cube);
+				return cube;
+			}
+			int middle = (from + to) >>> 1;
+			BookTask left = new BookTask(book, from, middle);
+			BookTask right = new BookTask(book, middle, to);
+			left.fork();
+			double[] cube = right.compute();
+			double[] leftCube = left.join();
+			for (int scenario=0; scenario<cube.length; scenario++) {
+				cube[scenario] += leftCube[scenario];
+			}
+			return cube;
+		}
+	}
+}
@@ -0,0 +1,54 @@
+package com.alexfiliakov.blackscholescalc.OptionPriceModel;
+
+public class ScenarioGrid {
+	/**
+	 * This class is the grid of market shocks a ScenarioEngine revalues a book under: every combination
+	 * of a spot shock, a volatility shock and a rate shock is one scenario.
+	 *
+	 *   spot shocks        relative: 0.1 moves the spot up 10%, -0.2 down 20% (must be over -1)
+	 *   volatility shocks  absolute, in annual volatility: 0.05 adds 5 volatility points
+	 *   rate shocks        absolute, in force of interest: 0.01 adds 100 basis points
+	 *
+	 * Scenarios are numbered with the rate shock varying fastest, then the volatility shock, then the
+	 * spot shock (see getScenario), so a P&L cube is a flat array of getScenarioCount() values.
+	 */
+
+	private final double[] spotShocks, volatilityShocks, rateShocks;
+
+	public ScenarioGrid(double[] spotShocks, double[] volatilityShocks, double[] rateShocks) {
+		if (spotShocks.length == 0 || volatilityShocks.length == 0 || rateShocks.length == 0) {
+			throw new IllegalArgumentException("Every scenario axis needs at least one shock");
+		}
+		for (double spotShock : spotShocks) {
+			if (!(spotShock > -1) || Double.isInfinite(spotShock)) {
+				throw new IllegalArgumentException("Spot shock " + spotShock + " would not leave a positive spot price");
+			}
+		}
+		this.spotShocks = spotShocks.clone();
+		this.volatilityShocks = volatilityShocks.clone();
+		this.rateShocks = rateShocks.clone();
+	}
+
+	// steps evenly spaced shocks from first to last, both included (e.g. linear(-0.2, 0.2, 21) for spot)
+	public static double[] linear(double first, double last, int steps) {
+		double[] shocks = new double[steps];
+		for (int i=0; i<steps; i++) {
+			shocks[i] = (steps == 1) ? first : first + (last - first)*i/(steps - 1);
+		}
+		return shocks;
+	}
+
+	public int getSpotShockCount() { return spotShocks.length; }
+	public int getVolatilityShockCount() { return volatilityShocks.length; }
+	public int getRateShockCount() { return rateShocks.length; }
+	public int getScenarioCount() { return spotShocks.length*volatilityShocks.length*rateShocks.length; }
+
+	public double getSpotShock(int spotIndex) { return spotShocks[spotIndex]; }
+	public double getVolatilityShock(int volatilityIndex) { return volatilityShocks[volatilityIndex]; }
+	public double getRateShock(int rateIndex) { return rateShocks[rateIndex]; }
+
+	// the position of a combination of shocks in a P&L cube
+	public int getScenario(int spotIndex, int volatilityIndex, int rateIndex) {
+		return (spotIndex*volatilityShocks.length + volatilityIndex)*rateShocks.length + rateIndex;
+	}
+}
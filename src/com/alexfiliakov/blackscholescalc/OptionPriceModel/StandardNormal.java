@@ -0,0 +1,114 @@
+package com.alexfiliakov.blackscholescalc.OptionPriceModel;
+
+public final class StandardNormal {
+	/**
+	 * This class evaluates the standard normal CDF and PDF with static, allocation-free kernels
+	 * small enough for the JIT to inline into the pricing loops.
+	 *
+	 * Two accuracy tiers are available:
+	 *   FAST  - Abramowitz & Stegun 26.2.17 (Zelen & Severo), absolute error below 7.5e-8
+	 *   EXACT - W. J. Cody's rational Chebyshev approximations (algorithm ANORM), absolute error
+	 *           below 1e-15 across the whole real line, and relative error of a few ulps in the tails
+	 * Both tiers return exactly 0 or 1 once the true value underflows or rounds to it in double precision.
+	 */
+
+	public enum Accuracy { FAST, EXACT }
+
+	private static final double ONE_OVER_SQRT_TWO_PI = 0.39894228040143267794;
+	private static final double SQRT_32 = 5.656854249492380195206754896838792314;
+	private static final double CENTRAL_THRESHOLD = 0.66291; // boundary of Cody's central interval
+	private static final double CUTOFF = 38.5; // beyond this the tail probability underflows
+
+	// Cody: central interval |x| <= 0.66291
+	private static final double A0 = 2.2352520354606839287e00, A1 = 1.6102823106855587881e02,
+			A2 = 1.0676894854603709582e03, A3 = 1.8154981253343561249e04, A4 = 6.5682337918207449113e-2;
+	private static final double B0 = 4.7202581904688241870e01, B1 = 9.7609855173777669322e02,
+			B2 = 1.0260932208618978205e04, B3 = 4.5507789335026729956e04;
+
+	// Cody: intermediate interval 0.66291 < |x| <= sqrt(32)
+	private static final double C0 = 3.9894151208813466764e-1, C1 = 8.8831497943883759412e00,
+			C2 = 9.3506656132177855979e01, C3 = 5.9727027639480026226e02, C4 = 2.4945375852903726711e03,
+			C5 = 6.8481904505362823326e03, C6 = 1.1602651437647350124e04, C7 = 9.8427148383839780218e03,
+			C8 = 1.0765576773720192317e-8;
+	private static final double D0 = 2.2266688044328115691e01, D1 = 2.3538790178262499861e02,
+			D2 = 1.5193775994075548050e03, D3 = 6.4855582982667607550e03, D4 = 1.8615571640885098091e04,
+			D5 = 3.4900952721145977266e04, D6 = 3.8912003286093271411e04, D7 = 1.9685429676859990727e04;
+
+	// Cody: tail interval |x| > sqrt(32)
+	private static final double P0 = 2.1589853405795699e-1, P1 = 1.274011611602473639e-1,
+			P2 = 2.2235277870649807e-2, P3 = 1.421619193227893466e-3, P4 = 2.9112874951168792e-5,
+			P5 = 2.307344176494017303e-2;
+	private static final double Q0 = 1.28426009614491121e00, Q1 = 4.68238212480865118e-1,
+			Q2 = 6.59881378689285515e-2, Q3 = 3.78239633202758244e-3, Q4 = 7.29751555083966205e-5;
+
+	// Abramowitz & Stegun 26.2.17
+	private static final double AS_P = 0.2316419, AS_B1 = 0.319381530, AS_B2 = -0.356563782,
+			AS_B3 = 1.781477937, AS_B4 = -1.821255978, AS_B5 = 1.330274429;
+
+	private StandardNormal() {
+	}
+
+	public static double cdf(double x, Accuracy accuracy) {
+		return (accuracy == Accuracy.FAST) ? cdfFast(x) : cdf(x);
+	}
+
+	// standard normal density
+	public static double pdf(double x) {
+		return ONE_OVER_SQRT_TWO_PI * Math.exp(-0.5*x*x);
+	}
+
+	// EXACT tier: Cody's ANORM
+	public static double cdf(double x) {
+		double y = Math.abs(x);
+
+		if (y <= CENTRAL_THRESHOLD) {
+			double xsq = x*x;
+			double xnum = (((A4*xsq + A0)*xsq + A1)*xsq + A2)*xsq;
+			double xden = (((xsq + B0)*xsq + B1)*xsq + B2)*xsq;
+			return 0.5 + x*(xnum + A3)/(xden + B3);
+		}
+
+		double tail; // probability mass beyond |x|
+		if (y <= SQRT_32) {
+			double xnum = (((((((C8*y + C0)*y + C1)*y + C2)*y + C3)*y + C4)*y + C5)*y + C6)*y;
+			double xden = (((((((y + D0)*y + D1)*y + D2)*y + D3)*y + D4)*y + D5)*y + D6)*y;
+			tail = (xnum + C7)/(xden + D7) * gaussianTail(y);
+		} else if (y < CUTOFF) {
+			double xsq = 1/(x*x);
+			double xnum = ((((P5*xsq + P0)*xsq + P1)*xsq + P2)*xsq + P3)*xsq;
+			double xden = ((((xsq + Q0)*xsq + Q1)*xsq + Q2)*xsq + Q3)*xsq;
+			double ratio = xsq*(xnum + P4)/(xden + Q4);
+			tail = (ONE_OVER_SQRT_TWO_PI - ratio)/y * gaussianTail(y);
+		} else if (y == y) {
+			tail = 0;
+		} else {
+			return Double.NaN;
+		}
+
+		return (x > 0) ? 1 - tail : tail;
+	}
+
+	// FAST tier: Abramowitz & Stegun 26.2.17
+	public static double cdfFast(double x) {
+		double y = Math.abs(x);
+		if (y >= CUTOFF) {
+			return (x > 0) ? 1 : 0;
+		}
+
+		double t = 1/(1 + AS_P*y);
+		double poly = ((((AS_B5*t + AS_B4)*t + AS_B3)*t + AS_B2)*t + AS_B1)*t;
+		double tail = ONE_OVER_SQRT_TWO_PI * Math.exp(-0.5*y*y) * poly;
+
+		return (x > 0) ? 1 - tail : tail;
+	}
+
+	/*
+	 * exp(-y^2/2) evaluated as exp(-ys^2/2)*exp(-(y-ys)(y+ys)/2), where ys is y truncated to a multiple of 1/16.
+	 * ys^2 is then exact, which keeps the relative error of the tails down to a few ulps.
+	 */
+	private static double gaussianTail(double y) {
+		double ys = ((long)(y*16))/16.;
+		double del = (y - ys)*(y + ys);
+		return Math.exp(-0.5*ys*ys) * Math.exp(-0.5*del);
+	}
+}
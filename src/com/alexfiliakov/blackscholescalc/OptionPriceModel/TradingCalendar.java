@@ -0,0 +1,251 @@
+package com.alexfiliakov.blackscholescalc.OptionPriceModel;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public final class TradingCalendar {
+	/**
+	 * This class answers business-day questions for option pricing in constant time. Days are epoch
+	 * days (days since 1970-01-01), as in HistoricBars.
+	 *
+	 * A business day is a weekday that is not an exchange holiday. For every day in its range of years,
+	 * the calendar stores how many business days come before it. The business days between two dates are
+	 * then the difference of two lookups, with no walking day by day.
+	 *
+	 * Holidays are either the NYSE rules (fixed and floating holidays, moved off weekends the way the
+	 * exchange observes them) or a list loaded from a file. The default calendar uses the file named by
+	 * -Dcalendar.holidays=<file> (one yyyy-MM-dd date per line, # starts a comment) when it is set.
+	 */
+
+	public static final int TRADING_DAYS_IN_YEAR = 252;
+
+	// years covered by the default calendar
+	public static final int DEFAULT_FIRST_YEAR = 1950, DEFAULT_LAST_YEAR = 2150;
+
+	private static final int MONDAY = 0, THURSDAY = 3, FRIDAY = 4, SATURDAY = 5, SUNDAY = 6;
+
+	private static volatile TradingCalendar defaultCalendar;
+
+	private final int firstYear, lastYear;
+	private final int firstDay, lastDay;
+
+	// businessDaysBefore[i] is the number of business days from firstDay up to, not including, firstDay+i
+	private final int[] businessDaysBefore;
+
+	// holidays outside the years given are ignored
+	public TradingCalendar(int firstYear, int lastYear, int[] holidays) {
+		if (firstYear > lastYear) {
+			throw new IllegalArgumentException("Calendar years " + firstYear + " to " + lastYear);
+		}
+		this.firstYear = firstYear;
+		this.lastYear = lastYear;
+		this.firstDay = (int)LocalDate.of(firstYear, 1, 1).toEpochDay();
+		this.lastDay = (int)LocalDate.of(lastYear, 12, 31).toEpochDay();
+
+		int dayCount = lastDay - firstDay + 1;
+		boolean[] closed = new boolean[dayCount];
+		for (int holiday : holidays) {
+			if (holiday >= firstDay && holiday <= lastDay) {
+				closed[holiday - firstDay] = true;
+			}
+		}
+		businessDaysBefore = new int[dayCount + 1];
+		for (int i=0; i<dayCount; i++) {
+			boolean businessDay = !closed[i] && dayOfWeek(firstDay + i) < SATURDAY;
+			businessDaysBefore[i+1] = businessDaysBefore[i] + (businessDay ? 1 : 0);
+		}
+	}
+
+	public static TradingCalendar getDefault() throws Exception {
+		TradingCalendar calendar = defaultCalendar;
+		if (calendar == null) {
+			synchronized (TradingCalendar.class) {
+				if (defaultCalendar == null) {
+					String holidaysFile = System.getProperty("calendar.holidays");
+					defaultCalendar = (holidaysFile != null)
+							? load(new File(holidaysFile), DEFAULT_FIRST_YEAR, DEFAULT_LAST_YEAR)
+							: new TradingCalendar(DEFAULT_FIRST_YEAR, DEFAULT_LAST_YEAR, getNyseHolidays(DEFAULT_FIRST_YEAR, DEFAULT_LAST_YEAR));
+				}
+				calendar = defaultCalendar;
+			}
+		}
+		return calendar;
+	}
+
+	public static void setDefault(TradingCalendar calendar) {
+		defaultCalendar = calendar;
+	}
+
+	// a calendar whose holidays are exactly those listed in the file (yyyy-MM-dd per line, # comments)
+	public static TradingCalendar load(File holidaysFile, int firstYear, int lastYear) throws Exception {
+		ArrayList<Integer> holidays = new ArrayList<Integer>();
+		BufferedReader reader = new BufferedReader(new FileReader(holidaysFile));
+		try {
+			String line;
+			int lineNumber = 0;
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				int comment = line.indexOf('#');
+				line = ((comment >= 0) ? line.substring(0, comment) : line).trim();
+				if (line.isEmpty()) {
+					continue;
+				}
+				try {
+					holidays.add((int)LocalDate.parse(line).toEpochDay());
+				} catch (DateTimeParseException e) {
+					throw new Exception("Malformed holiday on line " + lineNumber + " of " + holidaysFile);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+
+		int[] holidayDays = new int[holidays.size()];
+		for (int i=0; i<holidayDays.length; i++) {
+			holidayDays[i] = holidays.get(i);
+		}
+		return new TradingCalendar(firstYear, lastYear, holidayDays);
+	}
+
+	/*
+	 * NYSE full-day closures by rule: New Year's Day, Martin Luther King Jr. Day (from 1998), Washington's
+	 * Birthday, Good Friday, Memorial Day, Juneteenth (from 2022), Independence Day, Labor Day, Thanksgiving
+	 * and Christmas. A holiday on Saturday is observed on Friday and on Sunday on Monday, except that
+	 * New Year's Day on a Saturday is not observed. One-off closures have to be loaded from a file.
+	 */
+	public static int[] getNyseHolidays(int firstYear, int lastYear) {
+		int[] holidays = new int[10*(lastYear - firstYear + 1)];
+		int count = 0;
+		for (int year=firstYear; year<=lastYear; year++) {
+			int newYear = (int)LocalDate.of(year, 1, 1).toEpochDay();
+			if (dayOfWeek(newYear) != SATURDAY) {
+				holidays[count++] = observed(newYear);
+			}
+			if (year >= 1998) {
+				holidays[count++] = nthWeekday(year, 1, MONDAY, 3);
+			}
+			holidays[count++] = nthWeekday(year, 2, MONDAY, 3);
+			holidays[count++] = easterSunday(year) - 2;
+			holidays[count++] = nthWeekday(year, 6, MONDAY, 1) - 7; // last Monday of May
+			if (year >= 2022) {
+				holidays[count++] = observed((int)LocalDate.of(year, 6, 19).toEpochDay());
+			}
+			holidays[count++] = observed((int)LocalDate.of(year, 7, 4).toEpochDay());
+			holidays[count++] = nthWeekday(year, 9, MONDAY, 1);
+			holidays[count++] = nthWeekday(year, 11, THURSDAY, 4);
+			holidays[count++] = observed((int)LocalDate.of(year, 12, 25).toEpochDay());
+		}
+		return Arrays.copyOf(holidays, count);
+	}
+
+	public int getFirstDay() { return firstDay; }
+	public int getLastDay() { return lastDay; }
+
+	public boolean isBusinessDay(int epochDay) {
+		int i = indexOf(epochDay);
+		return businessDaysBefore[i+1] > businessDaysBefore[i];
+	}
+
+	// business days after fromDay up to and including toDay (negative when toDay is before fromDay)
+	public int getBusinessDaysBetween(int fromDay, int toDay) {
+		return businessDaysBefore[indexOf(toDay)+1] - businessDaysBefore[indexOf(fromDay)+1];
+	}
+
+	// time from one day's close to another's, in trading years
+	public double getYearFraction(int fromDay, int toDay) {
+		return ((double)getBusinessDaysBetween(fromDay, toDay))/TRADING_DAYS_IN_YEAR;
+	}
+
+	// the day itself if it is a business day, otherwise the business day before it
+	public int getBusinessDayOnOrBefore(int epochDay) {
+		int before = businessDaysBefore[indexOf(epochDay)+1];
+		while (epochDay > firstDay && businessDaysBefore[epochDay - firstDay] == before) {
+			epochDay--; // at most a few days: weekends and holidays are short
+		}
+		return epochDay;
+	}
+
+	// the next count weekly expirations after a day: Fridays, or the business day before a Friday holiday
+	public int[] getWeeklyExpirations(int afterDay, int count) {
+		int[] expirations = new int[count];
+		int friday = afterDay + 1 + Math.floorMod(FRIDAY - dayOfWeek(afterDay + 1), 7);
+		for (int i=0; i<count; friday += 7) {
+			int expiration = getBusinessDayOnOrBefore(friday);
+			if (expiration > afterDay) {
+				expirations[i++] = expiration;
+			}
+		}
+		return expirations;
+	}
+
+	// the next count monthly expirations after a day: third Fridays, adjusted like weeklies
+	public int[] getMonthlyExpirations(int afterDay, int count) {
+		return getThirdFridayExpirations(afterDay, count, 1);
+	}
+
+	// the next count quarterly expirations after a day: third Fridays of March, June, September and December
+	public int[] getQuarterlyExpirations(int afterDay, int count) {
+		return getThirdFridayExpirations(afterDay, count, 3);
+	}
+
+	private int[] getThirdFridayExpirations(int afterDay, int count, int monthStep) {
+		int[] expirations = new int[count];
+		LocalDate after = LocalDate.ofEpochDay(afterDay);
+		int month = after.getYear()*12 + after.getMonthValue() - 1;
+		month += Math.floorMod(monthStep - 1 - month, monthStep); // first month of a cycle, from this one
+		for (int i=0; i<count; month += monthStep) {
+			int expiration = getBusinessDayOnOrBefore(nthWeekday(month/12, month%12 + 1, FRIDAY, 3));
+			if (expiration > afterDay) {
+				expirations[i++] = expiration;
+			}
+		}
+		return expirations;
+	}
+
+	// helper methods
+
+	private int indexOf(int epochDay) {
+		if (epochDay < firstDay || epochDay > lastDay) {
+			throw new IllegalArgumentException(LocalDate.ofEpochDay(epochDay) + " is outside the trading calendar ("
+					+ firstYear + " to " + lastYear + ")");
+		}
+		return epochDay - firstDay;
+	}
+
+	// 0 for Monday to 6 for Sunday (1970-01-01 was a Thursday)
+	private static int dayOfWeek(int epochDay) {
+		return Math.floorMod(epochDay + THURSDAY, 7);
+	}
+
+	// the nth given weekday (0 for Monday) of a month
+	private static int nthWeekday(int year, int month, int weekday, int n) {
+		int first = (int)LocalDate.of(year, month, 1).toEpochDay();
+		return first + Math.floorMod(weekday - dayOfWeek(first), 7) + 7*(n-1);
+	}
+
+	private static int observed(int holiday) {
+		switch (dayOfWeek(holiday)) {
+		case SATURDAY: return holiday - 1;
+		case SUNDAY: return holiday + 1;
+		default: return holiday;
+		}
+	}
+
+	// Gregorian Easter (anonymous algorithm)
+	private static int easterSunday(int year) {
+		int a = year % 19, b = year / 100, c = year % 100;
+		int d = b / 4, e = b % 4, f = (b + 8) / 25, g = (b - f + 1) / 3;
+		int h = (19*a + b - d - g + 15) % 30;
+		int i = c / 4, k = c % 4;
+		int l = (32 + 2*e + 2*i - h - k) % 7;
+		int m = (a + 11*h + 22*l) / 451;
+		int month = (h + l - 7*m + 114) / 31;
+		int day = (h + l - 7*m + 114) % 31 + 1;
+		return (int)LocalDate.of(year, month, day).toEpochDay();
+	}
+}
@@ -0,0 +1,295 @@
+package com.alexfiliakov.blackscholescalc.OptionPriceModel;
+
+import java.util.Arrays;
+
+import com.alexfiliakov.blackscholescalc.StockModel.HistoricBars;
+import com.alexfiliakov.blackscholescalc.StockModel.LogReturnIndex;
+
+public class VolatilitySurface {
+	/**
+	 * This class is a volatility surface over strike and time to expiration, built from slices: the
+	 * annual volatilities of one expiry at a few strikes, implied from market prices (see
+	 * ImpliedVolatilitySolver) or estimated from history (fromHistory).
+	 *
+	 * Strikes are measured by forward log-moneyness k = log(strike/forward), and each slice fits its
+	 * total variance w(k) = volatility^2 * time with a natural cubic spline through its points. The
+	 * spline passes through every point exactly and is flat beyond the outermost strikes. Between
+	 * expiries, total variance is interpolated linearly in time at the same k. Where the later slice has
+	 * less total variance than the earlier one (calendar arbitrage in the inputs), the earlier one's is
+	 * held instead, so interpolated total variance never falls as time grows. Before the first expiry
+	 * and after the last, the volatility of the nearest slice is kept.
+	 *
+	 * Spline coefficients are computed when a slice is added, so a query is two binary searches (over
+	 * expiries and over the slice's strikes) and a cubic, O(log n). Surfaces are immutable: withSlice
+	 * returns a new surface in which only the changed slice is fitted and the others are shared. Pricing
+	 * threads can keep reading one surface while its replacement is built.
+	 */
+
+	private static final double[] NO_TIMES = {};
+	private static final Slice[] NO_SLICES = {};
+
+	private final double[] times; // slice expirations in years, ascending
+	private final Slice[] slices;
+
+	// an empty surface, to add slices to
+	public VolatilitySurface() {
+		this(NO_TIMES, NO_SLICES);
+	}
+
+	private VolatilitySurface(double[] times, Slice[] slices) {
+		this.times = times;
+		this.slices = slices;
+	}
+
+	// the same volatility for every strike and expiration
+	public static VolatilitySurface flat(double annualVolatility) {
+		return new VolatilitySurface().withSlice(1, new double[] {0}, new double[] {annualVolatility});
+	}
+
+	// a surface without smile: one volatility per expiration (NaN entries are skipped)
+	public static VolatilitySurface fromTermStructure(double[] timeInYears, double[] annualVolatility) {
+		VolatilitySurface surface = new VolatilitySurface();
+		for (int i=0; i<timeInYears.length; i++) {
+			if (!Double.isNaN(annualVolatility[i])) {
+				surface = surface.withSlice(timeInYears[i], new double[] {0}, new double[] {annualVolatility[i]});
+			}
+		}
+		return surface;
+	}
+
+	// the historic term structure of weekly bars: each of LogReturnIndex.DEFAULT_WINDOWS the history covers is a slice
+	public static VolatilitySurface fromHistory(HistoricBars bars) throws Exception {
+		double[] annualVolatility = new LogReturnIndex(bars).getVolatilityTermStructure();
+		double[] timeInYears = new double[annualVolatility.length];
+		for (int i=0; i<timeInYears.length; i++) {
+			timeInYears[i] = LogReturnIndex.DEFAULT_WINDOWS[i]/52.0;
+		}
+		VolatilitySurface surface = fromTermStructure(timeInYears, annualVolatility);
+		if (surface.getSliceCount() == 0) {
+			throw new Exception("Not enough data to model");
+		}
+		return surface;
+	}
+
+	// log(strike/forward) of a contract, the strike coordinate slices are given in
+	public static double getLogMoneyness(double spotPrice, double strikePrice, double riskFreeForce, double timeInYears) {
+		return Math.log(strikePrice/spotPrice) - riskFreeForce*timeInYears;
+	}
+
+	/*
+	 * Returns this surface with the slice of an expiration added, or replaced if it has one already.
+	 * The points need not be in order, but their log-moneyness values must be distinct.
+	 */
+	public VolatilitySurface withSlice(double timeInYears, double[] logMoneyness, double[] annualVolatility) {
+		if (!(timeInYears > 0) || Double.isInfinite(timeInYears)) {
+			throw new IllegalArgumentException("Slice expiration must be a positive time: " + timeInYears);
+		}
+		Slice slice = new Slice(timeInYears, logMoneyness, annualVolatility);
+
+		int index = Arrays.binarySearch(times, timeInYears);
+		if (index >= 0) {
+			Slice[] newSlices = slices.clone();
+			newSlices[index] = slice;
+			return new VolatilitySurface(times, newSlices);
+		}
+		index = -index - 1;
+		double[] newTimes = new double[times.length + 1];
+		Slice[] newSlices = new Slice[slices.length + 1];
+		System.arraycopy(times, 0, newTimes, 0, index);
+		System.arraycopy(slices, 0, newSlices, 0, index);
+		newTimes[index] = timeInYears;
+		newSlices[index] = slice;
+		System.arraycopy(times, index, newTimes, index + 1, times.length - index);
+		System.arraycopy(slices, index, newSlices, index + 1, slices.length - index);
+		return new VolatilitySurface(newTimes, newSlices);
+	}
+
+	// returns this surface without the slice of an expiration (itself if it has none)
+	public VolatilitySurface withoutSlice(double timeInYears) {
+		int index = Arrays.binarySearch(times, timeInYears);
+		if (index < 0) {
+			return this;
+		}
+		double[] newTimes = new double[times.length - 1];
+		Slice[] newSlices = new Slice[slices.length - 1];
+		System.arraycopy(times, 0, newTimes, 0, index);
+		System.arraycopy(slices, 0, newSlices, 0, index);
+		System.arraycopy(times, index + 1, newTimes, index, newTimes.length - index);
+		System.arraycopy(slices, index + 1, newSlices, index, newSlices.length - index);
+		return new VolatilitySurface(newTimes, newSlices);
+	}
+
+	public int getSliceCount() { return slices.length; }
+	public double getSliceTime(int slice) { return times[slice]; }
+
+	// the annual volatility at a forward log-moneyness and time to expiration
+	public double getVolatility(double logMoneyness, double timeInYears) {
+		checkNotEmpty();
+		int next = nextSlice(timeInYears);
+		return volatility(logMoneyness, timeInYears, next, weight(timeInYears, next));
+	}
+
+	// the annual volatility of a contract
+	public double getVolatility(double spotPrice, double strikePrice, double riskFreeForce, double timeInYears) {
+		return getVolatility(getLogMoneyness(spotPrice, strikePrice, riskFreeForce, timeInYears), timeInYears);
+	}
+
+	// looks up the volatility of every contract in the columns
+	public void getVolatilities(double[] spotPrice, double[] strikePrice, double[] riskFreeForce, double[] timeInYears, double[] volatilityOut) {
+		getVolatilities(spotPrice, strikePrice, riskFreeForce, timeInYears, volatilityOut, 0, strikePrice.length);
+	}
+
+	/*
+	 * Looks up the volatilities of contracts [from, to) of the columns. Chains list their contracts
+	 * expiry by expiry, so where a contract has the same time as the one before it, the search over
+	 * expiries and the interpolation weight are reused.
+	 */
+	public void getVolatilities(double[] spotPrice, double[] strikePrice, double[] riskFreeForce, double[] timeInYears, double[] volatilityOut,
+			int from, int to) {
+		checkNotEmpty();
+		double lastTime = Double.NaN;
+		int next = 0;
+		double weight = 0;
+		for (int i=from; i<to; i++) {
+			double time = timeInYears[i];
+			if (time != lastTime) {
+				next = nextSlice(time);
+				weight = weight(time, next);
+				lastTime = time;
+			}
+			double logMoneyness = Math.log(strikePrice[i]/spotPrice[i]) - riskFreeForce[i]*time;
+			volatilityOut[i] = volatility(logMoneyness, time, next, weight);
+		}
+	}
+
+	// helper methods
+
+	private void checkNotEmpty() {
+		if (slices.length == 0) {
+			throw new IllegalStateException("Volatility surface has no slices");
+		}
+	}
+
+	// the first slice later than time (slices.length if none is)
+	private int nextSlice(double time) {
+		int index = Arrays.binarySearch(times, time);
+		return (index >= 0) ? index + 1 : -index - 1;
+	}
+
+	// how far time is from the slice before next to next, in [0, 1); unused at the ends
+	private double weight(double time, int next) {
+		if (next == 0 || next == times.length) {
+			return 0;
+		}
+		return (time - times[next-1])/(times[next] - times[next-1]);
+	}
+
+	// interpolates between the slices around time; next is the first slice later than time
+	private double volatility(double logMoneyness, double time, int next, double weight) {
+		if (next == 0 || !(time > 0)) {
+			return Math.sqrt(slices[0].totalVariance(logMoneyness)/times[0]); // the first slice's volatility
+		}
+		double before = slices[next-1].totalVariance(logMoneyness);
+		if (next == times.length) {
+			return Math.sqrt(before/times[next-1]); // the last slice's volatility
+		}
+		double after = Math.max(slices[next].totalVariance(logMoneyness), before);
+		return Math.sqrt((before + (after - before)*weight)/time);
+	}
+
+	// one expiry's total variance, as a natural cubic spline over log-moneyness
+	private static final class Slice {
+		private static final double MIN_TOTAL_VARIANCE = 1e-12; // floor for a spline that dips between points
+
+		private final double[] knots; // log-moneyness of the points, ascending
+		private final double[] coefficients; // a, b, c, d of each segment: w = a + b*dx + c*dx^2 + d*dx^3
+
+		Slice(double timeInYears, double[] logMoneyness, double[] annualVolatility) {
+			int size = logMoneyness.length;
+			if (size == 0 || annualVolatility.length != size) {
+				throw new IllegalArgumentException("A slice needs one volatility per log-moneyness");
+			}
+
+			// sort the points by log-moneyness
+			double[][] points = new double[size][];
+			for (int i=0; i<size; i++) {
+				double volatility = annualVolatility[i];
+				if (!(volatility > 0) || Double.isInfinite(volatility) || Double.isNaN(logMoneyness[i]) || Double.isInfinite(logMoneyness[i])) {
+					throw new IllegalArgumentException("Invalid slice point: log-moneyness " + logMoneyness[i] + ", volatility " + volatility);
+				}
+				points[i] = new double[] {logMoneyness[i], volatility*volatility*timeInYears};
+			}
+			Arrays.sort(points, (left, right) -> Double.compare(left[0], right[0]));
+
+			knots = new double[size];
+			double[] totalVariance = new double[size];
+			for (int i=0; i<size; i++) {
+				knots[i] = points[i][0];
+				totalVariance[i] = points[i][1];
+				if (i > 0 && knots[i] == knots[i-1]) {
+					throw new IllegalArgumentException("Slice has two points at log-moneyness " + knots[i]);
+				}
+			}
+			coefficients = fit(knots, totalVariance);
+		}
+
+		double totalVariance(double logMoneyness) {
+			int last = knots.length - 1;
+			int segment;
+			if (logMoneyness >= knots[last]) {
+				segment = last; // flat beyond the outermost points
+				logMoneyness = knots[last];
+			} else if (logMoneyness <= knots[0]) {
+				segment = 0;
+				logMoneyness = knots[0];
+			} else {
+				segment = Arrays.binarySearch(knots, logMoneyness);
+				if (segment < 0) {
+					segment = -segment - 2;
+				}
+			}
+			double dx = logMoneyness - knots[segment];
+			int c = 4*segment;
+			double w = coefficients[c] + dx*(coefficients[c+1] + dx*(coefficients[c+2] + dx*coefficients[c+3]));
+			return Math.max(w, MIN_TOTAL_VARIANCE);
+		}
+
+		/*
+		 * Natural cubic spline coefficients: the second derivatives at the knots solve a tridiagonal
+		 * system (zero at both ends), solved with the Thomas algorithm. The last knot gets a constant
+		 * segment of its own, so evaluating at it needs no special case.
+		 */
+		private static double[] fit(double[] x, double[] y) {
+			int n = x.length;
+			double[] coefficients = new double[4*n];
+			coefficients[4*(n-1)] = y[n-1];
+			if (n == 1) {
+				return coefficients;
+			}
+
+			double[] secondDerivative = new double[n];
+			if (n > 2) {
+				double[] upper = new double[n];
+				double[] rhs = new double[n];
+				for (int i=1; i<n-1; i++) {
+					double hLeft = x[i] - x[i-1], hRight = x[i+1] - x[i];
+					double diagonal = 2*(hLeft + hRight) - hLeft*upper[i-1];
+					upper[i] = hRight/diagonal;
+					rhs[i] = (6*((y[i+1] - y[i])/hRight - (y[i] - y[i-1])/hLeft) - hLeft*rhs[i-1])/diagonal;
+				}
+				for (int i=n-2; i>=1; i--) {
+					secondDerivative[i] = rhs[i] - upper[i]*secondDerivative[i+1];
+				}
+			}
+
+			for (int i=0; i<n-1; i++) {
+				double h = x[i+1] - x[i];
+				coefficients[4*i] = y[i];
+				coefficients[4*i+1] = (y[i+1] - y[i])/h - h*(2*secondDerivative[i] + secondDerivative[i+1])/6;
+				coefficients[4*i+2] = secondDerivative[i]/2;
+				coefficients[4*i+3] = (secondDerivative[i+1] - secondDerivative[i])/(6*h);
+			}
+			return coefficients;
+		}
+	}
+}
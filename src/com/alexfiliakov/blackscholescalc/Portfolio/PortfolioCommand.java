@@ -0,0 +1,79 @@
+package com.alexfiliakov.blackscholescalc.Portfolio;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.alexfiliakov.blackscholescalc.MarketData.MarketDataProviders;
+import com.alexfiliakov.blackscholescalc.OptionPriceModel.ChainRecordWriter;
+
+public class PortfolioCommand {
+	/**
+	 * This class is the headless portfolio mode: it reads a list of symbols (separated by
+	 * commas, whitespace or new lines), models all of them with a PortfolioRunner and prints
+	 * one CSV line per symbol as soon as that symbol completes:
+	 *   Symbol,Spot,RiskFreeRate,AnnualMean,AnnualVolatility,Contracts,Error
+	 * Given a chain file, it also writes every priced chain there as binary records (see ChainRecordWriter).
+	 */
+
+	private PortfolioCommand() {
+	}
+
+	// returns the number of symbols that failed
+	public static int run(File symbolsFile, final PrintStream out) throws Exception {
+		return run(symbolsFile, null, out);
+	}
+
+	// as above, also writing the priced chains to chainFile unless it is null
+	public static int run(File symbolsFile, File chainFile, final PrintStream out) throws Exception {
+		List<String> stockSymbols = readSymbols(symbolsFile);
+
+		out.println("Symbol,Spot,RiskFreeRate,AnnualMean,AnnualVolatility,Contracts,Error");
+		try (ChainRecordWriter chainWriter = (chainFile != null) ? new ChainRecordWriter(chainFile, true) : null;
+				PortfolioRunner runner = new PortfolioRunner(MarketDataProviders.getDefault())) {
+			final AtomicInteger writeFailures = new AtomicInteger();
+			int failures = runner.run(stockSymbols, new PortfolioListener() {
+				public void onResult(PortfolioResult result) {
+					if (chainWriter != null) {
+						try {
+							chainWriter.write(result.stockSymbol, result.optionPriceTableModel);
+						} catch (Exception e) {
+							onFailure(result.stockSymbol, e);
+							writeFailures.incrementAndGet();
+							return;
+						}
+					}
+					String line = result.stockSymbol + "," + result.spotPrice + "," + result.riskFreeRate + ","
+							+ result.stockModel.getAnnualMean() + "," + result.stockModel.getAnnualVolatility() + ","
+							+ result.optionPriceTableModel.getCallOptionPrices().length + ",";
+					synchronized (out) {
+						out.println(line);
+					}
+				}
+
+				public void onFailure(String stockSymbol, Exception failure) {
+					String message = String.valueOf(failure.getMessage()).replace(',', ';');
+					synchronized (out) {
+						out.println(stockSymbol + ",,,,,," + message);
+					}
+				}
+			}).get();
+			return failures + writeFailures.get();
+		}
+	}
+
+	private static List<String> readSymbols(File symbolsFile) throws Exception {
+		String content = new String(Files.readAllBytes(symbolsFile.toPath()), StandardCharsets.UTF_8);
+		List<String> stockSymbols = new ArrayList<String>();
+		for (String stockSymbol : content.split("[,\\s]+")) {
+			if (!stockSymbol.isEmpty()) {
+				stockSymbols.add(stockSymbol);
+			}
+		}
+		return stockSymbols;
+	}
+}
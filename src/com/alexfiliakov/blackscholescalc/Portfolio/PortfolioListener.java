@@ -0,0 +1,13 @@
+package com.alexfiliakov.blackscholescalc.Portfolio;
+
+public interface PortfolioListener {
+	/**
+	 * This interface receives the outcome of each symbol of a portfolio run as soon as that symbol
+	 * completes. Calls arrive in completion order, possibly from several threads at once.
+	 */
+
+	public void onResult(PortfolioResult result);
+
+	// the symbol failed at some stage; the rest of the run carries on
+	public void onFailure(String stockSymbol, Exception failure);
+}
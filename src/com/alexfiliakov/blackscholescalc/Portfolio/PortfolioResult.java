@@ -0,0 +1,23 @@
+package com.alexfiliakov.blackscholescalc.Portfolio;
+
+import com.alexfiliakov.blackscholescalc.OptionPriceModel.OptionPriceTableModel;
+import com.alexfiliakov.blackscholescalc.StockModel.StockModel;
+
+public class PortfolioResult {
+	/**
+	 * This class holds the models built for one symbol of a portfolio run
+	 */
+
+	public final String stockSymbol;
+	public final double spotPrice, riskFreeRate;
+	public final StockModel stockModel;
+	public final OptionPriceTableModel optionPriceTableModel;
+
+	PortfolioResult(String stockSymbol, double spotPrice, double riskFreeRate, StockModel stockModel, OptionPriceTableModel optionPriceTableModel) {
+		this.stockSymbol = stockSymbol;
+		this.spotPrice = spotPrice;
+		this.riskFreeRate = riskFreeRate;
+		this.stockModel = stockModel;
+		this.optionPriceTableModel = optionPriceTableModel;
+	}
+}
@@ -0,0 +1,145 @@
+package com.alexfiliakov.blackscholescalc.Portfolio;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.alexfiliakov.blackscholescalc.MarketData.IoExecutors;
+import com.alexfiliakov.blackscholescalc.MarketData.MarketDataProvider;
+import com.alexfiliakov.blackscholescalc.MarketData.MarketDataProviders;
+import com.alexfiliakov.blackscholescalc.OptionPriceModel.OptionPriceTableModel;
+import com.alexfiliakov.blackscholescalc.StockModel.HistoricBars;
+import com.alexfiliakov.blackscholescalc.StockModel.StockModel;
+
+public class PortfolioRunner implements AutoCloseable {
+	/**
+	 * This class runs the whole model (fetch, validate, calibrate, price the chain) for many symbols at once.
+	 *
+	 * Each symbol's fetches run on the I/O executor (virtual threads where available), at most
+	 * maxConcurrentFetches symbols at a time. Once its data is in, the symbol moves to a fixed pool
+	 * of compute threads for the math, so slow fetches never hold up calibration and pricing.
+	 * The risk-free rate is fetched once per run and shared by every symbol.
+	 *
+	 * A failing symbol is reported to the listener and the run carries on; results stream to
+	 * the listener as each symbol completes.
+	 */
+
+	public static final int DEFAULT_MAX_CONCURRENT_FETCHES = 256;
+
+	private final MarketDataProvider marketData;
+	private final ExecutorService ioExecutor;
+	private final ExecutorService computeExecutor;
+	private final Semaphore fetchPermits;
+
+	public PortfolioRunner(MarketDataProvider marketData) {
+		this(marketData, Runtime.getRuntime().availableProcessors(), DEFAULT_MAX_CONCURRENT_FETCHES);
+	}
+
+	public PortfolioRunner(MarketDataProvider marketData, int computeThreads, int maxConcurrentFetches) {
+		this.marketData = marketData;
+		this.ioExecutor = IoExecutors.newIoExecutor("portfolio-io");
+		this.computeExecutor = Executors.newFixedThreadPool(computeThreads, new ThreadFactory() {
+			private final AtomicInteger threadCount = new AtomicInteger();
+
+			public Thread newThread(Runnable task) {
+				Thread thread = new Thread(task, "portfolio-compute-" + threadCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		this.fetchPermits = new Semaphore(maxConcurrentFetches);
+	}
+
+	/*
+	 * Starts modelling every symbol and returns at once. The future completes with the number
+	 * of symbols that failed, after the listener has seen every symbol.
+	 */
+	public CompletableFuture<Integer> run(List<String> stockSymbols, final PortfolioListener listener) {
+		final CompletableFuture<Double> riskFreeRate = marketData.getRiskFreeRate();
+		final AtomicInteger failures = new AtomicInteger();
+
+		List<CompletableFuture<Void>> symbolRuns = new ArrayList<CompletableFuture<Void>>(stockSymbols.size());
+		for (final String stockSymbol : stockSymbols) {
+			symbolRuns.add(CompletableFuture
+					.supplyAsync(() -> fetch(stockSymbol, riskFreeRate), ioExecutor)
+					.thenApplyAsync(this::model, computeExecutor)
+					.handle((result, failure) -> {
+						if (failure == null) {
+							listener.onResult(result);
+						} else {
+							failures.incrementAndGet();
+							listener.onFailure(stockSymbol, unwrap(failure));
+						}
+						return null;
+					}));
+		}
+
+		return CompletableFuture.allOf(symbolRuns.toArray(new CompletableFuture<?>[symbolRuns.size()]))
+				.thenApply(done -> failures.get());
+	}
+
+	public void close() {
+		ioExecutor.shutdown();
+		computeExecutor.shutdown();
+	}
+
+	// I/O stage: fetch the symbol's history and spot price (blocking is cheap on the I/O executor)
+	private MarketSnapshot fetch(String stockSymbol, CompletableFuture<Double> riskFreeRate) {
+		try {
+			// stock symbols must contain only letters
+			if (stockSymbol == null || !stockSymbol.matches("[a-zA-Z]+")) {
+				throw new Exception("input must contain letters");
+			}
+
+			fetchPermits.acquire();
+			try {
+				CompletableFuture<HistoricBars> historicData = marketData.getHistoricData(stockSymbol);
+				CompletableFuture<Double> spotPrice = marketData.getSpotPrice(stockSymbol);
+				return new MarketSnapshot(stockSymbol, MarketDataProviders.await(historicData),
+						MarketDataProviders.await(spotPrice), MarketDataProviders.await(riskFreeRate));
+			} finally {
+				fetchPermits.release();
+			}
+		} catch (Exception e) {
+			throw new CompletionException(e);
+		}
+	}
+
+	// compute stage: validate, calibrate and price the chain
+	private PortfolioResult model(MarketSnapshot snapshot) {
+		try {
+			StockModel stockModel = new StockModel(snapshot.stockSymbol, snapshot.historicData);
+			OptionPriceTableModel optionPriceTableModel = new OptionPriceTableModel(stockModel, snapshot.spotPrice, snapshot.riskFreeRate);
+			return new PortfolioResult(snapshot.stockSymbol, snapshot.spotPrice, snapshot.riskFreeRate, stockModel, optionPriceTableModel);
+		} catch (Exception e) {
+			throw new CompletionException(e);
+		}
+	}
+
+	private static Exception unwrap(Throwable failure) {
+		while (failure instanceof CompletionException && failure.getCause() != null) {
+			failure = failure.getCause();
+		}
+		return (failure instanceof Exception) ? (Exception)failure : new Exception(failure);
+	}
+
+	// market data of one symbol, handed from the I/O stage to the compute stage
+	private static class MarketSnapshot {
+		final String stockSymbol;
+		final HistoricBars historicData;
+		final double spotPrice, riskFreeRate;
+
+		MarketSnapshot(String stockSymbol, HistoricBars historicData, double spotPrice, double riskFreeRate) {
+			this.stockSymbol = stockSymbol;
+			this.historicData = historicData;
+			this.spotPrice = spotPrice;
+			this.riskFreeRate = riskFreeRate;
+		}
+	}
+}
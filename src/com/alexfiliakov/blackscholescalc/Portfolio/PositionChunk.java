@@ -0,0 +1,51 @@
+package com.alexfiliakov.blackscholescalc.Portfolio;
+
+class PositionChunk {
+	/**
+	 * This class is a fixed-size block of positions passing through the PositionsCommand pipeline: filled by the
+	 * reader, priced and formatted by a worker, written by the writer and then reused. Its columns, scratch
+	 * space and output buffer are allocated once, so memory stays the same however large the file is.
+	 */
+
+	final int capacity;
+	long sequence; // position of the chunk in the input, so output is written in input order
+	int size;
+
+	final UnderlyingModel[] underlyings;
+	final double[] strikePrices;
+	final int[] expirationDays;
+	final boolean[] isCall;
+
+	// scratch space of the worker pricing the chunk
+	final String[] errors;
+	final long[] sortKeys;
+	final int[] pricedIndex;
+
+	// the chunk's output lines, as formatted by a worker
+	final StringBuilder csv = new StringBuilder();
+	byte[] outputBytes = new byte[0];
+	int outputLength;
+
+	PositionChunk(int capacity) {
+		this.capacity = capacity;
+		this.underlyings = new UnderlyingModel[capacity];
+		this.strikePrices = new double[capacity];
+		this.expirationDays = new int[capacity];
+		this.isCall = new boolean[capacity];
+		this.errors = new String[capacity];
+		this.sortKeys = new long[capacity];
+		this.pricedIndex = new int[capacity];
+	}
+
+	// encodes the formatted lines (plain ASCII) into outputBytes, growing it only when needed
+	void encodeOutput() {
+		int length = csv.length();
+		if (outputBytes.length < length) {
+			outputBytes = new byte[length + length/4];
+		}
+		for (int i=0; i<length; i++) {
+			outputBytes[i] = (byte)csv.charAt(i);
+		}
+		outputLength = length;
+	}
+}
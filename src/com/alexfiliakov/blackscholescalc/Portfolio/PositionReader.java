@@ -0,0 +1,302 @@
+package com.alexfiliakov.blackscholescalc.Portfolio;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.function.Function;
+
+abstract class PositionReader implements AutoCloseable {
+	/**
+	 * This class streams positions from a file into PositionChunks through a fixed-size buffer, so files of
+	 * any size are read in constant memory. Two formats are read:
+	 *
+	 *   CSV (any other extension)   Symbol,Strike,Expiry,Type lines, e.g. GOOG,120.5,2026-12-18,C
+	 *                               Expiry is yyyy-MM-dd and Type is C or P (or Call or Put); a Symbol,... header line is skipped
+	 *   binary (.bin)               24-byte big-endian records: symbol (8 bytes of ASCII, padded with spaces
+	 *                               or zeros), strike (double), expiry (int, days since 1970-01-01), type
+	 *                               (1 byte, 'C' or 'P') and 3 unused bytes
+	 *
+	 * Symbols are resolved to their UnderlyingModel as they are read. Positions files are usually grouped by
+	 * symbol, so a row with the same symbol as the row before reuses its model without building a String.
+	 */
+
+	static final int BUFFER_SIZE = 1 << 20;
+
+	protected final FileChannel channel;
+	private final Function<String, UnderlyingModel> underlyings;
+
+	private byte[] lastSymbol = new byte[0];
+	private UnderlyingModel lastUnderlying;
+
+	protected PositionReader(File input, Function<String, UnderlyingModel> underlyings) throws IOException {
+		this.channel = FileChannel.open(input.toPath(), StandardOpenOption.READ);
+		this.underlyings = underlyings;
+	}
+
+	static PositionReader open(File input, Function<String, UnderlyingModel> underlyings) throws IOException {
+		return input.getName().toLowerCase().endsWith(".bin")
+				? new BinaryPositionReader(input, underlyings)
+				: new CsvPositionReader(input, underlyings);
+	}
+
+	// fills the chunk with up to its capacity positions; returns false once the input is used up
+	abstract boolean readChunk(PositionChunk chunk) throws Exception;
+
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	// the model of the symbol in bytes [from, to)
+	protected UnderlyingModel resolve(byte[] bytes, int from, int to) {
+		if (lastUnderlying == null || !Arrays.equals(bytes, from, to, lastSymbol, 0, lastSymbol.length)) {
+			lastSymbol = Arrays.copyOfRange(bytes, from, to);
+			lastUnderlying = underlyings.apply(new String(lastSymbol, StandardCharsets.US_ASCII));
+		}
+		return lastUnderlying;
+	}
+
+	private static class CsvPositionReader extends PositionReader {
+		private static final String HEADER_FIRST_FIELD = "Symbol";
+		private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15};
+
+		private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		private final byte[] bytes = buffer.array();
+		private boolean endOfInput;
+		private long lineNumber;
+
+		// field boundaries of the line being parsed
+		private final int[] fieldStart = new int[4], fieldEnd = new int[4];
+
+		CsvPositionReader(File input, Function<String, UnderlyingModel> underlyings) throws IOException {
+			super(input, underlyings);
+			buffer.flip(); // empty, in read mode
+		}
+
+		boolean readChunk(PositionChunk chunk) throws Exception {
+			chunk.size = 0;
+			while (chunk.size < chunk.capacity) {
+				int lineEnd = findLineEnd();
+				if (lineEnd < 0) {
+					if (!endOfInput) {
+						fill();
+						continue;
+					}
+					if (buffer.hasRemaining()) {
+						// last line, without a line break
+						parseLine(buffer.position(), buffer.limit(), chunk);
+						buffer.position(buffer.limit());
+					}
+					break;
+				}
+				parseLine(buffer.position(), lineEnd, chunk);
+				buffer.position(lineEnd + 1);
+			}
+			return chunk.size > 0;
+		}
+
+		private int findLineEnd() {
+			for (int i=buffer.position(); i<buffer.limit(); i++) {
+				if (bytes[i] == '\n') {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		private void fill() throws Exception {
+			buffer.compact();
+			if (!buffer.hasRemaining()) {
+				throw new Exception("Line " + (lineNumber+1) + " of the positions is too long");
+			}
+			if (channel.read(buffer) < 0) {
+				endOfInput = true;
+			}
+			buffer.flip();
+		}
+
+		private void parseLine(int from, int to, PositionChunk chunk) throws Exception {
+			lineNumber++;
+			if (to > from && bytes[to-1] == '\r') {
+				to--;
+			}
+			if (to == from) {
+				return; // blank line
+			}
+
+			int fieldCount = 0;
+			fieldStart[0] = from;
+			for (int i=from; i<to; i++) {
+				if (bytes[i] == ',') {
+					if (fieldCount == 3) {
+						throw new Exception("Line " + lineNumber + " has more than 4 fields (Symbol,Strike,Expiry,Type)");
+					}
+					fieldEnd[fieldCount++] = i;
+					fieldStart[fieldCount] = i + 1;
+				}
+			}
+			fieldEnd[fieldCount] = to;
+			if (fieldCount != 3) {
+				throw new Exception("Line " + lineNumber + " does not have 4 fields (Symbol,Strike,Expiry,Type)");
+			}
+			if (lineNumber == 1 && HEADER_FIRST_FIELD.equalsIgnoreCase(new String(bytes, fieldStart[0], fieldEnd[0] - fieldStart[0], StandardCharsets.US_ASCII).trim())) {
+				return; // header
+			}
+
+			int row = chunk.size;
+			chunk.strikePrices[row] = parseDecimal(fieldStart[1], fieldEnd[1]);
+			chunk.expirationDays[row] = parseDate(fieldStart[2], fieldEnd[2]);
+			chunk.isCall[row] = parseType(fieldStart[3], fieldEnd[3]);
+			chunk.underlyings[row] = resolve(bytes, trimStart(fieldStart[0], fieldEnd[0]), trimEnd(fieldStart[0], fieldEnd[0]));
+			chunk.size++;
+		}
+
+		/*
+		 * Plain decimals of up to 15 digits (like strikes) are parsed directly: the digits and the power of ten
+		 * are both exact doubles, so one division gives the correctly rounded value. Anything else goes to
+		 * Double.parseDouble.
+		 */
+		private double parseDecimal(int from, int to) throws Exception {
+			from = trimStart(from, to);
+			to = trimEnd(from, to);
+			long digits = 0;
+			int digitCount = 0, fractionDigits = -1;
+			for (int i=from; i<to; i++) {
+				byte b = bytes[i];
+				if (b >= '0' && b <= '9') {
+					digits = 10*digits + (b - '0');
+					digitCount++;
+					if (fractionDigits >= 0) {
+						fractionDigits++;
+					}
+				} else if (b == '.' && fractionDigits < 0) {
+					fractionDigits = 0;
+				} else {
+					digitCount = 16; // signs, exponents and the like: not the simple case
+					break;
+				}
+			}
+			if (digitCount > 0 && digitCount <= 15) {
+				return (fractionDigits > 0) ? digits/POWERS_OF_TEN[fractionDigits] : digits;
+			}
+			try {
+				return Double.parseDouble(new String(bytes, from, to - from, StandardCharsets.US_ASCII));
+			} catch (NumberFormatException e) {
+				throw new Exception("Malformed strike on line " + lineNumber);
+			}
+		}
+
+		// yyyy-MM-dd as an epoch day
+		private int parseDate(int from, int to) throws Exception {
+			from = trimStart(from, to);
+			to = trimEnd(from, to);
+			if (to - from == 10 && bytes[from+4] == '-' && bytes[from+7] == '-') {
+				int year = parseDigits(from, from+4), month = parseDigits(from+5, from+7), day = parseDigits(from+8, from+10);
+				if (year >= 0 && month >= 0 && day >= 0) {
+					try {
+						return (int)LocalDate.of(year, month, day).toEpochDay();
+					} catch (DateTimeException e) {
+						// reported below
+					}
+				}
+			}
+			throw new Exception("Malformed expiry on line " + lineNumber + " (expected yyyy-MM-dd)");
+		}
+
+		private int parseDigits(int from, int to) {
+			int value = 0;
+			for (int i=from; i<to; i++) {
+				if (bytes[i] < '0' || bytes[i] > '9') {
+					return -1;
+				}
+				value = 10*value + (bytes[i] - '0');
+			}
+			return value;
+		}
+
+		private boolean parseType(int from, int to) throws Exception {
+			from = trimStart(from, to);
+			if (from < to) {
+				switch (bytes[from]) {
+				case 'C': case 'c': return true;
+				case 'P': case 'p': return false;
+				}
+			}
+			throw new Exception("Malformed type on line " + lineNumber + " (expected C or P)");
+		}
+
+		private int trimStart(int from, int to) {
+			while (from < to && bytes[from] == ' ') {
+				from++;
+			}
+			return from;
+		}
+
+		private int trimEnd(int from, int to) {
+			while (to > from && bytes[to-1] == ' ') {
+				to--;
+			}
+			return to;
+		}
+	}
+
+	private static class BinaryPositionReader extends PositionReader {
+		static final int RECORD_SIZE = 24, SYMBOL_SIZE = 8;
+
+		private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE - BUFFER_SIZE % RECORD_SIZE);
+		private final byte[] bytes = buffer.array();
+		private boolean endOfInput;
+		private long recordNumber;
+
+		BinaryPositionReader(File input, Function<String, UnderlyingModel> underlyings) throws IOException {
+			super(input, underlyings);
+			if (channel.size() % RECORD_SIZE != 0) {
+				channel.close();
+				throw new IOException(input + " is not a whole number of " + RECORD_SIZE + "-byte position records");
+			}
+			buffer.flip();
+		}
+
+		boolean readChunk(PositionChunk chunk) throws Exception {
+			chunk.size = 0;
+			while (chunk.size < chunk.capacity) {
+				if (buffer.remaining() < RECORD_SIZE) {
+					if (endOfInput) {
+						break;
+					}
+					buffer.compact();
+					if (channel.read(buffer) < 0) {
+						endOfInput = true;
+					}
+					buffer.flip();
+					continue;
+				}
+
+				int record = buffer.position();
+				recordNumber++;
+				int symbolEnd = record + SYMBOL_SIZE;
+				while (symbolEnd > record && (bytes[symbolEnd-1] == ' ' || bytes[symbolEnd-1] == 0)) {
+					symbolEnd--;
+				}
+				byte type = bytes[record + 20];
+				if (type != 'C' && type != 'P') {
+					throw new Exception("Malformed type in position record " + recordNumber + " (expected C or P)");
+				}
+
+				int row = chunk.size;
+				chunk.underlyings[row] = resolve(bytes, record, symbolEnd);
+				chunk.strikePrices[row] = buffer.getDouble(record + 8);
+				chunk.expirationDays[row] = buffer.getInt(record + 16);
+				chunk.isCall[row] = (type == 'C');
+				chunk.size++;
+				buffer.position(record + RECORD_SIZE);
+			}
+			return chunk.size > 0;
+		}
+	}
+}
@@ -0,0 +1,360 @@
+package com.alexfiliakov.blackscholescalc.Portfolio;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import com.alexfiliakov.blackscholescalc.MarketData.IoExecutors;
+import com.alexfiliakov.blackscholescalc.MarketData.MarketDataProvider;
+import com.alexfiliakov.blackscholescalc.MarketData.MarketDataProviders;
+import com.alexfiliakov.blackscholescalc.Metrics.Metrics;
+import com.alexfiliakov.blackscholescalc.OptionPriceModel.ChainGreeks;
+import com.alexfiliakov.blackscholescalc.OptionPriceModel.OptionPricingEngine;
+import com.alexfiliakov.blackscholescalc.OptionPriceModel.OptionPricingEngines;
+import com.alexfiliakov.blackscholescalc.OptionPriceModel.TradingCalendar;
+import com.alexfiliakov.blackscholescalc.StockModel.StockModel;
+
+public class PositionsCommand {
+	/**
+	 * This class is the headless positions mode: it prices every position (symbol, strike, expiry, type) of a
+	 * CSV or binary file, as read by PositionReader, and writes one CSV line per position in input order:
+	 *   Symbol,Strike,Expiry,Type,Price,Delta,Gamma,Vega,Theta,Rho,Error
+	 *
+	 * The file is streamed through a fixed pool of PositionChunks, so memory does not grow with its size:
+	 *   the reader (the calling thread) fills free chunks and queues them for pricing,
+	 *   one worker per core prices a chunk in a single OptionPricingEngine call and formats its lines,
+	 *   the writer puts priced chunks back in input order, writes them through a FileChannel and frees them.
+	 * When every chunk is in use the reader waits, so a slow disk or slow pricing holds back reading.
+	 *
+	 * Each underlying is fetched and calibrated once per run, on the I/O executor, as soon as the reader first
+	 * sees it. Within a chunk, contracts are priced grouped by underlying and expiry. A position whose underlying
+	 * cannot be modelled, whose strike is not a positive number, or which has expired, gets an empty line with
+	 * the reason in the Error column.
+	 */
+
+	public static final int DEFAULT_CHUNK_SIZE = 8192;
+
+	private static final String HEADER = "Symbol,Strike,Expiry,Type,Price,Delta,Gamma,Vega,Theta,Rho,Error\n";
+	private static final int OUTPUT_BUFFER_SIZE = 1 << 20;
+
+	private final MarketDataProvider marketData;
+	private final OptionPricingEngine pricingEngine;
+	private final int workerCount, chunkSize;
+
+	private final TradingCalendar tradingCalendar;
+	private final int today;
+
+	private final AtomicLong positionCount = new AtomicLong(), failureCount = new AtomicLong();
+	private volatile Throwable pipelineFailure;
+
+	private PositionsCommand(MarketDataProvider marketData, OptionPricingEngine pricingEngine, int workerCount, int chunkSize) throws Exception {
+		this.marketData = marketData;
+		this.pricingEngine = pricingEngine;
+		this.workerCount = workerCount;
+		this.chunkSize = chunkSize;
+		this.tradingCalendar = TradingCalendar.getDefault();
+		this.today = (int)LocalDate.now().toEpochDay();
+	}
+
+	// returns the number of positions that could not be priced
+	public static long run(File input, File output, PrintStream out) throws Exception {
+		PositionsCommand command = new PositionsCommand(MarketDataProviders.getDefault(), OptionPricingEngines.getDefault(),
+				Runtime.getRuntime().availableProcessors(), DEFAULT_CHUNK_SIZE);
+		long started = System.nanoTime();
+		command.run(input, output);
+		out.println("Priced " + command.positionCount.get() + " positions (" + command.failureCount.get() + " failed) in "
+				+ TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) + " ms");
+		return command.failureCount.get();
+	}
+
+	private void run(File input, File output) throws Exception {
+		// enough chunks for every worker to have one in hand and one waiting, plus one each being read and written
+		final int chunkCount = 2*workerCount + 2;
+		final ArrayBlockingQueue<PositionChunk> freeChunks = new ArrayBlockingQueue<PositionChunk>(chunkCount);
+		final ArrayBlockingQueue<PositionChunk> filledChunks = new ArrayBlockingQueue<PositionChunk>(chunkCount + 1);
+		final ArrayBlockingQueue<PositionChunk> pricedChunks = new ArrayBlockingQueue<PositionChunk>(chunkCount + 1);
+		for (int i=0; i<chunkCount; i++) {
+			freeChunks.add(new PositionChunk(chunkSize));
+		}
+		// marks the end of the input; its sequence is the number of chunks
+		final PositionChunk endOfInput = new PositionChunk(0);
+
+		ExecutorService ioExecutor = IoExecutors.newIoExecutor("positions-io");
+		ExecutorService pipeline = Executors.newFixedThreadPool(workerCount + 1, new ThreadFactory() {
+			private final AtomicInteger threadCount = new AtomicInteger();
+
+			public Thread newThread(Runnable task) {
+				Thread thread = new Thread(task, "positions-" + threadCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+		try (PositionReader reader = PositionReader.open(input, new UnderlyingLoader(ioExecutor));
+				FileChannel channel = FileChannel.open(output.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			for (int i=0; i<workerCount; i++) {
+				pipeline.submit(guard(() -> {
+					PositionChunk chunk;
+					while ((chunk = filledChunks.take()) != endOfInput) {
+						priceChunk(chunk);
+						pricedChunks.put(chunk);
+					}
+					filledChunks.put(endOfInput); // for the next worker
+					return null;
+				}));
+			}
+			Future<Void> writer = pipeline.submit(guard(() -> {
+				writeChunks(channel, pricedChunks, freeChunks, endOfInput, chunkCount);
+				return null;
+			}));
+
+			long sequence = 0;
+			while (true) {
+				PositionChunk chunk = takeChunk(freeChunks);
+				if (!reader.readChunk(chunk)) {
+					freeChunks.add(chunk);
+					break;
+				}
+				chunk.sequence = sequence++;
+				filledChunks.put(chunk);
+			}
+			endOfInput.sequence = sequence;
+			filledChunks.put(endOfInput);
+			pricedChunks.put(endOfInput);
+
+			MarketDataProviders.await(writer);
+		} finally {
+			pipeline.shutdownNow();
+			ioExecutor.shutdown();
+		}
+	}
+
+	// prices the chunk's positions and formats their output lines
+	private void priceChunk(PositionChunk chunk) {
+		int size = chunk.size;
+		String[] errors = chunk.errors;
+		long[] keys = chunk.sortKeys;
+		int[] pricedIndex = chunk.pricedIndex;
+
+		// the positions that can be priced, sorted by underlying, then expiry, then row
+		int priceable = 0;
+		for (int row=0; row<size; row++) {
+			UnderlyingModel underlying = chunk.underlyings[row];
+			int expirationDay = chunk.expirationDays[row];
+			errors[row] = awaitFailure(underlying);
+			if (errors[row] != null) {
+				continue;
+			}
+			double strike = chunk.strikePrices[row];
+			if (!(strike > 0) || Double.isInfinite(strike)) {
+				errors[row] = "Invalid strike";
+			} else if (expirationDay > tradingCalendar.getLastDay()) {
+				errors[row] = "Expiry is after the trading calendar";
+			} else if (expirationDay <= today || tradingCalendar.getBusinessDaysBetween(today, expirationDay) <= 0) {
+				errors[row] = "Expired";
+			} else {
+				keys[priceable++] = ((long)underlying.id << 33) | ((long)(expirationDay - tradingCalendar.getFirstDay()) << 16) | row;
+			}
+		}
+		Arrays.sort(keys, 0, priceable);
+
+		double[] spotPrices = new double[priceable];
+		double[] strikePrices = new double[priceable];
+		double[] riskFreeForces = new double[priceable];
+		double[] annualVolatilities = new double[priceable];
+		double[] timesInYears = new double[priceable];
+		for (int i=0; i<priceable; i++) {
+			int row = (int)(keys[i] & 0xFFFF);
+			UnderlyingModel underlying = chunk.underlyings[row];
+			spotPrices[i] = underlying.spotPrice;
+			strikePrices[i] = chunk.strikePrices[row];
+			riskFreeForces[i] = underlying.riskFreeForce;
+			annualVolatilities[i] = underlying.annualVolatility;
+			timesInYears[i] = tradingCalendar.getYearFraction(today, chunk.expirationDays[row]);
+			pricedIndex[row] = i;
+		}
+
+		double[] callPrices = new double[priceable];
+		double[] putPrices = new double[priceable];
+		ChainGreeks greeks = new ChainGreeks(priceable);
+		if (priceable > 0) {
+			long started = Metrics.start();
+			pricingEngine.priceChain(spotPrices, strikePrices, riskFreeForces, annualVolatilities, timesInYears, callPrices, putPrices, greeks);
+			Metrics.BATCH_PRICING.recordSince(started);
+			Metrics.CONTRACTS_PRICED.add(priceable);
+		}
+
+		StringBuilder csv = chunk.csv;
+		csv.setLength(0);
+		for (int row=0; row<size; row++) {
+			boolean isCall = chunk.isCall[row];
+			csv.append(chunk.underlyings[row].stockSymbol).append(',').append(chunk.strikePrices[row]).append(',')
+					.append(LocalDate.ofEpochDay(chunk.expirationDays[row])).append(',').append(isCall ? 'C' : 'P').append(',');
+			if (errors[row] != null) {
+				csv.append(",,,,,,").append(errors[row]).append('\n');
+				continue;
+			}
+			int i = pricedIndex[row];
+			csv.append(isCall ? callPrices[i] : putPrices[i]).append(',')
+					.append(isCall ? greeks.callDelta[i] : greeks.putDelta[i]).append(',')
+					.append(isCall ? greeks.gamma[i] : greeks.putGamma[i]).append(',')
+					.append(isCall ? greeks.vega[i] : greeks.putVega[i]).append(',')
+					.append(isCall ? greeks.callTheta[i] : greeks.putTheta[i]).append(',')
+					.append(isCall ? greeks.callRho[i] : greeks.putRho[i]).append(",\n");
+		}
+		chunk.encodeOutput();
+
+		positionCount.addAndGet(size);
+		failureCount.addAndGet(size - priceable);
+	}
+
+	// writes priced chunks in input order, returning each to the free pool once written
+	private void writeChunks(FileChannel channel, ArrayBlockingQueue<PositionChunk> pricedChunks, ArrayBlockingQueue<PositionChunk> freeChunks,
+			PositionChunk endOfInput, int chunkCount) throws Exception {
+		ByteBuffer buffer = ByteBuffer.allocateDirect(OUTPUT_BUFFER_SIZE);
+		buffer.put(HEADER.getBytes(StandardCharsets.US_ASCII));
+
+		// chunks that arrived before the ones ahead of them; at most chunkCount are in flight, so slots never collide
+		PositionChunk[] waiting = new PositionChunk[chunkCount];
+		long nextSequence = 0, chunkTotal = Long.MAX_VALUE;
+		while (nextSequence < chunkTotal) {
+			// a worker that fails never passes its chunk on, so the writer must not wait for it forever
+			PositionChunk chunk = takeChunk(pricedChunks);
+			if (chunk == endOfInput) {
+				chunkTotal = chunk.sequence;
+				continue;
+			}
+			waiting[(int)(chunk.sequence % chunkCount)] = chunk;
+
+			int slot;
+			while ((chunk = waiting[slot = (int)(nextSequence % chunkCount)]) != null) {
+				waiting[slot] = null;
+				for (int offset=0; offset<chunk.outputLength; ) {
+					if (!buffer.hasRemaining()) {
+						drain(channel, buffer);
+					}
+					int length = Math.min(buffer.remaining(), chunk.outputLength - offset);
+					buffer.put(chunk.outputBytes, offset, length);
+					offset += length;
+				}
+				freeChunks.put(chunk);
+				nextSequence++;
+			}
+		}
+		drain(channel, buffer);
+	}
+
+	private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/*
+	 * Helper Methods
+	 */
+
+	// waits for a chunk from a queue, giving up if a worker or the writer has failed
+	private PositionChunk takeChunk(ArrayBlockingQueue<PositionChunk> chunks) throws Exception {
+		while (true) {
+			PositionChunk chunk = chunks.poll(100, TimeUnit.MILLISECONDS);
+			if (pipelineFailure != null) {
+				throw (pipelineFailure instanceof Exception) ? (Exception)pipelineFailure : new Exception(pipelineFailure);
+			}
+			if (chunk != null) {
+				return chunk;
+			}
+		}
+	}
+
+	// records a pipeline thread's failure so the reader stops too
+	private <T> Callable<T> guard(final Callable<T> task) {
+		return () -> {
+			try {
+				return task.call();
+			} catch (Throwable e) {
+				pipelineFailure = e;
+				throw e;
+			}
+		};
+	}
+
+	// null once the underlying is modelled, or why it could not be
+	private static String awaitFailure(UnderlyingModel underlying) {
+		try {
+			MarketDataProviders.await(underlying.ready);
+			return null;
+		} catch (Exception e) {
+			return String.valueOf(e.getMessage()).replace(',', ';');
+		}
+	}
+
+	// resolves symbols for the reader, starting each underlying's fetch and calibration the first time it is seen
+	private class UnderlyingLoader implements Function<String, UnderlyingModel> {
+		private final ExecutorService ioExecutor;
+		private final HashMap<String, UnderlyingModel> underlyings = new HashMap<String, UnderlyingModel>();
+		private final Semaphore fetchPermits = new Semaphore(PortfolioRunner.DEFAULT_MAX_CONCURRENT_FETCHES);
+		private CompletableFuture<Double> riskFreeRate;
+
+		UnderlyingLoader(ExecutorService ioExecutor) {
+			this.ioExecutor = ioExecutor;
+		}
+
+		public UnderlyingModel apply(String stockSymbol) {
+			UnderlyingModel underlying = underlyings.get(stockSymbol);
+			if (underlying == null) {
+				if (riskFreeRate == null) {
+					riskFreeRate = marketData.getRiskFreeRate();
+				}
+				underlying = new UnderlyingModel(underlyings.size(), stockSymbol);
+				underlyings.put(stockSymbol, underlying);
+				final UnderlyingModel model = underlying;
+				final CompletableFuture<Double> rate = riskFreeRate;
+				ioExecutor.execute(() -> load(model, rate));
+			}
+			return underlying;
+		}
+
+		private void load(UnderlyingModel underlying, CompletableFuture<Double> riskFreeRate) {
+			try {
+				// stock symbols must contain only letters
+				if (!underlying.stockSymbol.matches("[a-zA-Z]+")) {
+					throw new Exception("input must contain letters");
+				}
+				fetchPermits.acquire();
+				try {
+					StockModel stockModel = new StockModel(underlying.stockSymbol, MarketDataProviders.await(marketData.getHistoricData(underlying.stockSymbol)));
+					underlying.spotPrice = MarketDataProviders.await(marketData.getSpotPrice(underlying.stockSymbol));
+					underlying.annualVolatility = stockModel.getAnnualVolatility();
+					underlying.riskFreeForce = Math.log(1 + MarketDataProviders.await(riskFreeRate)/100);
+				} finally {
+					fetchPermits.release();
+				}
+				underlying.ready.complete(underlying);
+			} catch (Exception e) {
+				underlying.ready.completeExceptionally(e);
+			}
+		}
+	}
+}
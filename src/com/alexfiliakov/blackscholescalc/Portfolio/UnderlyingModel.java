@@ -0,0 +1,23 @@
+package com.alexfiliakov.blackscholescalc.Portfolio;
+
+import java.util.concurrent.CompletableFuture;
+
+class UnderlyingModel {
+	/**
+	 * This class holds what pricing needs from one underlying of a positions file: its spot price, the
+	 * volatility its StockModel calibrated and the risk-free force of interest. PositionsCommand loads it
+	 * once per run, however many positions refer to the symbol.
+	 */
+
+	final int id;
+	final String stockSymbol;
+
+	// completes once the fields below are set, or with the reason the symbol could not be modelled
+	final CompletableFuture<UnderlyingModel> ready = new CompletableFuture<UnderlyingModel>();
+	double spotPrice, annualVolatility, riskFreeForce;
+
+	UnderlyingModel(int id, String stockSymbol) {
+		this.id = id;
+		this.stockSymbol = stockSymbol;
+	}
+}
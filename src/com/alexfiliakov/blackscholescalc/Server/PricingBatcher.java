@@ -0,0 +1,220 @@
+package com.alexfiliakov.blackscholescalc.Server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.alexfiliakov.blackscholescalc.Metrics.Metrics;
+import com.alexfiliakov.blackscholescalc.OptionPriceModel.ChainGreeks;
+import com.alexfiliakov.blackscholescalc.OptionPriceModel.OptionPricingEngine;
+
+public class PricingBatcher implements AutoCloseable {
+	/**
+	 * This class micro-batches pricing requests. Requests from any number of threads wait in a queue, and
+	 * a single batching thread takes everything that has queued up (up to maxBatchContracts contracts),
+	 * lays it out as one set of columns and prices it with a single OptionPricingEngine call. Each request
+	 * then gets its slice of the batch's output columns, without copying.
+	 *
+	 * Batches never wait to fill up: under light load a batch is one request, priced at once, and under
+	 * heavy load requests pile up while the previous batch is priced, so batches grow with the load and
+	 * the per-call cost is paid once for many requests.
+	 *
+	 * The queue is bounded. When it is full, submit throws RejectedExecutionException so the caller can
+	 * shed the request instead of letting the queue, and the latency of everything in it, grow.
+	 *
+	 * A batch whose pricing fails, however it fails, fails only its own requests. Should the batching
+	 * thread ever stop other than by close, the batcher closes itself so no future is left waiting.
+	 */
+
+	public static final int DEFAULT_QUEUE_CAPACITY = 8192;
+	public static final int DEFAULT_MAX_BATCH_CONTRACTS = 4096;
+
+	private final OptionPricingEngine pricingEngine;
+	private final int maxBatchContracts;
+	private final ArrayBlockingQueue<PendingRequest> queue;
+	private final Thread batchingThread;
+	private volatile boolean closed;
+
+	private final AtomicLong batchCount = new AtomicLong(), contractCount = new AtomicLong(), rejectedCount = new AtomicLong();
+
+	public PricingBatcher(OptionPricingEngine pricingEngine) {
+		this(pricingEngine, DEFAULT_QUEUE_CAPACITY, DEFAULT_MAX_BATCH_CONTRACTS);
+	}
+
+	public PricingBatcher(OptionPricingEngine pricingEngine, int queueCapacity, int maxBatchContracts) {
+		this.pricingEngine = pricingEngine;
+		this.maxBatchContracts = maxBatchContracts;
+		this.queue = new ArrayBlockingQueue<PendingRequest>(queueCapacity);
+		this.batchingThread = new Thread(this::runBatches, "pricing-batcher");
+		batchingThread.setDaemon(true);
+		batchingThread.start();
+	}
+
+	/*
+	 * Queues contracts for pricing and returns at once; the future completes when their batch is priced.
+	 * Throws RejectedExecutionException when the queue is full or the batcher is closed.
+	 */
+	public CompletableFuture<PricedContracts> submit(Contracts contracts, boolean withGreeks) {
+		if (closed) {
+			throw new RejectedExecutionException("Pricing batcher is closed");
+		}
+		PendingRequest request = new PendingRequest(contracts, withGreeks);
+		if (!queue.offer(request)) {
+			rejectedCount.incrementAndGet();
+			throw new RejectedExecutionException("Pricing queue is full");
+		}
+		if (closed && queue.remove(request)) {
+			// closed while queueing: the batching thread may already have failed the rest of the queue
+			throw new RejectedExecutionException("Pricing batcher is closed");
+		}
+		return request.result;
+	}
+
+	public int getMaxBatchContracts() { return maxBatchContracts; }
+	public int getQueuedRequestCount() { return queue.size(); }
+	public long getBatchCount() { return batchCount.get(); }
+	public long getContractCount() { return contractCount.get(); }
+	public long getRejectedCount() { return rejectedCount.get(); }
+
+	// stops the batching thread; requests still queued fail
+	public void close() {
+		closed = true;
+		batchingThread.interrupt();
+	}
+
+	/*
+	 * Prices batches until closed. However it exits, the batcher is closed from then on: submit rejects new
+	 * requests, and the requests still queued fail (with the cause, if the thread died of an exception).
+	 */
+	private void runBatches() {
+		List<PendingRequest> batch = new ArrayList<PendingRequest>();
+		Throwable failure = null;
+		try {
+			while (!closed) {
+				batch.add(queue.take());
+				int batchSize = batch.get(0).contracts.size();
+
+				// take whatever else is waiting, as long as it fits (a single request may be bigger than a batch)
+				PendingRequest next;
+				while ((next = queue.peek()) != null && batchSize + next.contracts.size() <= maxBatchContracts) {
+					batch.add(queue.poll());
+					batchSize += next.contracts.size();
+				}
+
+				priceBatch(batch, batchSize);
+				batch.clear();
+			}
+		} catch (InterruptedException e) {
+			// closed
+		} catch (RuntimeException | Error e) {
+			failure = e;
+			throw e;
+		} finally {
+			closed = true;
+			RejectedExecutionException closedFailure = (failure == null) ? new RejectedExecutionException("Pricing batcher is closed")
+					: new RejectedExecutionException("Pricing batcher stopped", failure);
+			for (PendingRequest request : batch) {
+				request.result.completeExceptionally(closedFailure);
+			}
+			PendingRequest request;
+			while ((request = queue.poll()) != null) {
+				request.result.completeExceptionally(closedFailure);
+			}
+		}
+	}
+
+	// prices a batch and completes its futures; whatever goes wrong (even an Error) fails the batch, not the batching thread
+	private void priceBatch(List<PendingRequest> batch, int batchSize) {
+		try {
+			double[] spotPrice = new double[batchSize];
+			double[] strikePrice = new double[batchSize];
+			double[] riskFreeForce = new double[batchSize];
+			double[] annualVolatility = new double[batchSize];
+			double[] timeInYears = new double[batchSize];
+			boolean withGreeks = false;
+
+			int offset = 0;
+			for (PendingRequest request : batch) {
+				Contracts contracts = request.contracts;
+				int size = contracts.size();
+				System.arraycopy(contracts.spotPrice, 0, spotPrice, offset, size);
+				System.arraycopy(contracts.strikePrice, 0, strikePrice, offset, size);
+				System.arraycopy(contracts.riskFreeForce, 0, riskFreeForce, offset, size);
+				System.arraycopy(contracts.annualVolatility, 0, annualVolatility, offset, size);
+				System.arraycopy(contracts.timeInYears, 0, timeInYears, offset, size);
+				withGreeks |= request.withGreeks;
+				offset += size;
+			}
+
+			// Greeks are computed for the whole batch if any request in it wants them
+			double[] callPrice = new double[batchSize];
+			double[] putPrice = new double[batchSize];
+			ChainGreeks greeks = withGreeks ? new ChainGreeks(batchSize) : null;
+			long started = Metrics.start();
+			pricingEngine.priceChain(spotPrice, strikePrice, riskFreeForce, annualVolatility, timeInYears, callPrice, putPrice, greeks);
+			Metrics.BATCH_PRICING.recordSince(started);
+			Metrics.CONTRACTS_PRICED.add(batchSize);
+			batchCount.incrementAndGet();
+			contractCount.addAndGet(batchSize);
+
+			offset = 0;
+			for (PendingRequest request : batch) {
+				int size = request.contracts.size();
+				request.result.complete(new PricedContracts(callPrice, putPrice, request.withGreeks ? greeks : null, offset, size));
+				offset += size;
+			}
+		} catch (Throwable e) {
+			for (PendingRequest request : batch) {
+				request.result.completeExceptionally(e);
+			}
+		}
+	}
+
+	// contracts to price, as columns in the engine's units
+	public static class Contracts {
+		public final double[] spotPrice, strikePrice, riskFreeForce, annualVolatility, timeInYears;
+
+		public Contracts(double[] spotPrice, double[] strikePrice, double[] riskFreeForce, double[] annualVolatility, double[] timeInYears) {
+			int size = strikePrice.length;
+			if (spotPrice.length != size || riskFreeForce.length != size || annualVolatility.length != size || timeInYears.length != size) {
+				throw new IllegalArgumentException("Contract columns have different lengths");
+			}
+			this.spotPrice = spotPrice;
+			this.strikePrice = strikePrice;
+			this.riskFreeForce = riskFreeForce;
+			this.annualVolatility = annualVolatility;
+			this.timeInYears = timeInYears;
+		}
+
+		public int size() { return strikePrice.length; }
+	}
+
+	// a request's results: entries [offset, offset+size) of its batch's columns (greeks is null unless asked for)
+	public static class PricedContracts {
+		public final double[] callPrice, putPrice;
+		public final ChainGreeks greeks;
+		public final int offset, size;
+
+		PricedContracts(double[] callPrice, double[] putPrice, ChainGreeks greeks, int offset, int size) {
+			this.callPrice = callPrice;
+			this.putPrice = putPrice;
+			this.greeks = greeks;
+			this.offset = offset;
+			this.size = size;
+		}
+	}
+
+	private static class PendingRequest {
+		final Contracts contracts;
+		final boolean withGreeks;
+		final CompletableFuture<PricedContracts> result = new CompletableFuture<PricedContracts>();
+
+		PendingRequest(Contracts contracts, boolean withGreeks) {
+			this.contracts = contracts;
+			this.withGreeks = withGreeks;
+		}
+	}
+}
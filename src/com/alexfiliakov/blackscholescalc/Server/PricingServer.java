@@ -0,0 +1,470 @@
+package com.alexfiliakov.blackscholescalc.Server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import com.alexfiliakov.blackscholescalc.MarketData.IoExecutors;
+import com.alexfiliakov.blackscholescalc.MarketData.MarketDataProvider;
+import com.alexfiliakov.blackscholescalc.MarketData.MarketDataProviders;
+import com.alexfiliakov.blackscholescalc.OptionPriceModel.ChainGreeks;
+import com.alexfiliakov.blackscholescalc.OptionPriceModel.OptionChainTableModel;
+import com.alexfiliakov.blackscholescalc.OptionPriceModel.OptionPricingEngine;
+import com.alexfiliakov.blackscholescalc.OptionPriceModel.OptionPricingEngines;
+import com.alexfiliakov.blackscholescalc.Portfolio.PortfolioListener;
+import com.alexfiliakov.blackscholescalc.Portfolio.PortfolioResult;
+import com.alexfiliakov.blackscholescalc.Portfolio.PortfolioRunner;
+import com.alexfiliakov.blackscholescalc.StockModel.PredictedDataPoint;
+import com.alexfiliakov.blackscholescalc.StockModel.StockModel;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class PricingServer {
+	/**
+	 * This class is the headless pricing service: an HTTP server on the JDK's com.sun.net.httpserver that
+	 * answers in CSV. Exchanges run on the I/O executor (a virtual thread each, where available), so a request
+	 * waiting on market data or on its pricing batch does not hold a platform thread.
+	 *
+	 *   GET  /price?spot=&strike=&force=&volatility=&time=   prices one contract
+	 *   POST /price                                          prices one contract per body line: spot,strike,force,volatility,time
+	 *   GET  /calibrate?s=<symbol>                           Symbol,Spot,RiskFreeRate,AnnualMean,AnnualVolatility
+	 *   GET  /chain?s=<symbol>                               the symbol's option chain, one line per contract
+	 *   GET  /predict?s=<symbol>                             WeekStart,Expected,LowerBound,UpperBound per predicted week
+	 *
+	 * /price takes the engine's units (force is the continuously compounded rate, volatility is annual,
+	 * time is in years) and answers Call,Put per contract, followed by the Greeks with greeks=true. Its
+	 * requests go through a PricingBatcher, so concurrent small requests are priced in one engine call.
+	 * Since one client's contracts may share a batch (and a PDE solve) with another's, every number must
+	 * be finite and spot, strike, volatility and time positive, or the request is a 400. A POST body may
+	 * hold at most the batcher's maxBatchContracts lines of MAX_LINE_BYTES; a longer body is a 413.
+	 *
+	 * Symbol requests are modelled by a PortfolioRunner, at most maxConcurrentSymbols at a time. A symbol's
+	 * model is kept for modelTtlMillis, so /calibrate, /chain and /predict for it share one fetch and
+	 * calibration, and concurrent requests for it share one in-flight run.
+	 *
+	 * When the pricing queue is full or too many symbols are being modelled, requests are shed at once
+	 * with 503 and Retry-After rather than queued without bound.
+	 *
+	 * Run it with BlackScholesCalculator --serve [port] or PricingServer [port].
+	 */
+
+	public static final int DEFAULT_PORT = 8080;
+	public static final int DEFAULT_MAX_CONCURRENT_SYMBOLS = 64;
+	public static final long DEFAULT_MODEL_TTL_MILLIS = TimeUnit.SECONDS.toMillis(15);
+
+	private static final int MAX_CACHED_MODELS = 10000;
+	private static final String RETRY_AFTER_SECONDS = "1";
+	private static final int MAX_LINE_BYTES = 128; // the longest contract line a POST body is sized for
+
+	private static final String PRICE_HEADER = "Call,Put";
+	private static final String GREEKS_HEADER = ",CallDelta,PutDelta,CallGamma,PutGamma,CallVega,PutVega,CallTheta,PutTheta,CallRho,PutRho";
+
+	static {
+		// small responses would otherwise wait on Nagle's algorithm and delayed ACKs (about 40ms each); the JDK
+		// server reads this once, when its first server is created, so it can still be overridden on the command line
+		if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+		}
+	}
+
+	private final HttpServer server;
+	private final ExecutorService ioExecutor;
+	private final PricingBatcher batcher;
+	private final PortfolioRunner runner;
+	private final Semaphore symbolPermits;
+	private final long modelTtlMillis;
+
+	// symbol models by symbol, loading or loaded
+	private final ConcurrentHashMap<String, CachedModel> models = new ConcurrentHashMap<String, CachedModel>();
+
+	public PricingServer(int port) throws IOException {
+		this(port, MarketDataProviders.getDefault(), OptionPricingEngines.getDefault());
+	}
+
+	public PricingServer(int port, MarketDataProvider marketData, OptionPricingEngine pricingEngine) throws IOException {
+		this(port, new PricingBatcher(pricingEngine), new PortfolioRunner(marketData), DEFAULT_MAX_CONCURRENT_SYMBOLS, DEFAULT_MODEL_TTL_MILLIS);
+	}
+
+	// port 0 picks a free port; the server closes the batcher and runner when stopped
+	public PricingServer(int port, PricingBatcher batcher, PortfolioRunner runner, int maxConcurrentSymbols, long modelTtlMillis) throws IOException {
+		this.batcher = batcher;
+		this.runner = runner;
+		this.symbolPermits = new Semaphore(maxConcurrentSymbols);
+		this.modelTtlMillis = modelTtlMillis;
+		this.ioExecutor = IoExecutors.newIoExecutor("pricing-server");
+		this.server = HttpServer.create(new InetSocketAddress(port), 0);
+		server.setExecutor(ioExecutor);
+		server.createContext("/price", new PriceHandler());
+		server.createContext("/calibrate", new CalibrateHandler());
+		server.createContext("/chain", new ChainHandler());
+		server.createContext("/predict", new PredictHandler());
+	}
+
+	public PricingServer start() {
+		server.start();
+		return this;
+	}
+
+	public void stop() {
+		server.stop(0);
+		batcher.close();
+		runner.close();
+		ioExecutor.shutdown();
+	}
+
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	public PricingBatcher getBatcher() {
+		return batcher;
+	}
+
+	public static void main(String[] args) throws Exception {
+		int port = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+		PricingServer pricingServer = new PricingServer(port).start();
+		System.out.println("Pricing server listening on port " + pricingServer.getPort());
+	}
+
+	// handlers
+
+	private class PriceHandler extends CsvHandler {
+		String answer(HttpExchange exchange, Map<String, String> parameters) throws Exception {
+			PricingBatcher.Contracts contracts = exchange.getRequestMethod().equalsIgnoreCase("POST")
+					? parseContracts(exchange.getRequestBody(), batcher.getMaxBatchContracts())
+					: parseContract(parameters);
+			boolean withGreeks = Boolean.parseBoolean(parameters.get("greeks"));
+
+			PricingBatcher.PricedContracts priced = MarketDataProviders.await(batcher.submit(contracts, withGreeks));
+
+			StringBuilder csv = new StringBuilder(32*(priced.size + 1));
+			csv.append(PRICE_HEADER).append(withGreeks ? GREEKS_HEADER : "").append('\n');
+			for (int i=priced.offset; i<priced.offset+priced.size; i++) {
+				csv.append(priced.callPrice[i]).append(',').append(priced.putPrice[i]);
+				if (withGreeks) {
+					ChainGreeks greeks = priced.greeks;
+					csv.append(',').append(greeks.callDelta[i]).append(',').append(greeks.putDelta[i])
+							.append(',').append(greeks.gamma[i]).append(',').append(greeks.putGamma[i])
+							.append(',').append(greeks.vega[i]).append(',').append(greeks.putVega[i])
+							.append(',').append(greeks.callTheta[i]).append(',').append(greeks.putTheta[i])
+							.append(',').append(greeks.callRho[i]).append(',').append(greeks.putRho[i]);
+				}
+				csv.append('\n');
+			}
+			return csv.toString();
+		}
+	}
+
+	private class CalibrateHandler extends CsvHandler {
+		String answer(HttpExchange exchange, Map<String, String> parameters) throws Exception {
+			PortfolioResult result = getModel(parameters.get("s"));
+			return "Symbol,Spot,RiskFreeRate,AnnualMean,AnnualVolatility\n"
+					+ result.stockSymbol + "," + result.spotPrice + "," + result.riskFreeRate + ","
+					+ result.stockModel.getAnnualMean() + "," + result.stockModel.getAnnualVolatility() + "\n";
+		}
+	}
+
+	private class ChainHandler extends CsvHandler {
+		String answer(HttpExchange exchange, Map<String, String> parameters) throws Exception {
+			OptionChainTableModel chain = getModel(parameters.get("s")).optionPriceTableModel.getTableModel();
+			int columnCount = OptionChainTableModel.COLUMN_NAMES.length;
+
+			StringBuilder csv = new StringBuilder(128*(chain.getChainSize() + 1));
+			for (int column=0; column<columnCount; column++) {
+				csv.append(column == 0 ? "" : ",").append(OptionChainTableModel.COLUMN_NAMES[column].replace(" ", ""));
+			}
+			csv.append('\n');
+			// chain order (by expiration, then strike), whatever the GUI's sort
+			for (int row=0; row<chain.getChainSize(); row++) {
+				csv.append(LocalDate.ofEpochDay(chain.getExpirationDay(row)));
+				for (int column=1; column<columnCount; column++) {
+					csv.append(',').append(chain.getNumber(row, column));
+				}
+				csv.append('\n');
+			}
+			return csv.toString();
+		}
+	}
+
+	private class PredictHandler extends CsvHandler {
+		String answer(HttpExchange exchange, Map<String, String> parameters) throws Exception {
+			StockModel stockModel = getModel(parameters.get("s")).stockModel;
+			PredictedDataPoint[] predictions;
+			synchronized (stockModel) {
+				// predictions are computed on first use
+				predictions = stockModel.getPredictedData();
+			}
+
+			StringBuilder csv = new StringBuilder(64*(predictions.length + 1));
+			csv.append("WeekStart,Expected,LowerBound,UpperBound\n");
+			for (PredictedDataPoint prediction : predictions) {
+				csv.append(prediction.date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate())
+						.append(',').append(prediction.expected).append(',').append(prediction.lowerBound)
+						.append(',').append(prediction.upperBound).append('\n');
+			}
+			return csv.toString();
+		}
+	}
+
+	/*
+	 * Answers a request with the CSV its subclass builds. Bad input is a 400, a body over its limit a 413,
+	 * a shed request a 503, a symbol that cannot be modelled a 422 and anything else a 500, each with the
+	 * message as the body.
+	 */
+	private abstract static class CsvHandler implements HttpHandler {
+		abstract String answer(HttpExchange exchange, Map<String, String> parameters) throws Exception;
+
+		public void handle(HttpExchange exchange) throws IOException {
+			try {
+				String body;
+				try {
+					body = answer(exchange, parseQuery(exchange.getRequestURI().getRawQuery()));
+				} catch (IllegalArgumentException e) {
+					respond(exchange, 400, e.getMessage());
+					return;
+				} catch (RejectedExecutionException e) {
+					exchange.getResponseHeaders().set("Retry-After", RETRY_AFTER_SECONDS);
+					respond(exchange, 503, e.getMessage());
+					return;
+				} catch (RequestTooLarge e) {
+					respond(exchange, 413, e.getMessage());
+					return;
+				} catch (SymbolFailure e) {
+					respond(exchange, 422, e.getMessage());
+					return;
+				} catch (Exception e) {
+					respond(exchange, 500, String.valueOf(e.getMessage()));
+					return;
+				}
+				respond(exchange, 200, body);
+			} finally {
+				exchange.close();
+			}
+		}
+	}
+
+	// symbol models
+
+	private PortfolioResult getModel(String stockSymbol) throws Exception {
+		if (stockSymbol == null || stockSymbol.isEmpty()) {
+			throw new IllegalArgumentException("Missing parameter s (the stock symbol)");
+		}
+		final String symbol = stockSymbol.toUpperCase();
+		final long now = System.currentTimeMillis();
+
+		// the run starts outside compute, which must not be re-entered if the run fails at once
+		CachedModel created = new CachedModel(now + modelTtlMillis);
+		CachedModel cached = models.compute(symbol, (key, current) ->
+				(current != null && now < current.expiresAt) ? current : created);
+		if (cached == created) {
+			startModel(symbol, created);
+		}
+		if (models.size() > MAX_CACHED_MODELS) {
+			evictExpiredModels(now);
+		}
+
+		try {
+			return MarketDataProviders.await(cached.result);
+		} catch (RejectedExecutionException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new SymbolFailure(e.getMessage());
+		}
+	}
+
+	// starts modelling a symbol, or sheds the request when too many symbols are being modelled
+	private void startModel(final String stockSymbol, final CachedModel model) {
+		if (!symbolPermits.tryAcquire()) {
+			// not kept, so the next request tries again
+			models.remove(stockSymbol, model);
+			model.result.completeExceptionally(new RejectedExecutionException("Too many symbols are being modelled"));
+			return;
+		}
+
+		runner.run(Collections.singletonList(stockSymbol), new PortfolioListener() {
+			public void onResult(PortfolioResult result) {
+				model.result.complete(result);
+			}
+
+			public void onFailure(String stockSymbol, Exception failure) {
+				model.result.completeExceptionally(failure);
+			}
+		}).whenComplete((failures, error) -> {
+			symbolPermits.release();
+			if (error != null) {
+				model.result.completeExceptionally(error);
+			}
+			if (model.result.isCompletedExceptionally()) {
+				// failed runs are not kept, so the next request retries
+				models.remove(stockSymbol, model);
+			}
+		});
+	}
+
+	private void evictExpiredModels(long now) {
+		Iterator<CachedModel> iterator = models.values().iterator();
+		while (iterator.hasNext()) {
+			CachedModel model = iterator.next();
+			if (now >= model.expiresAt && model.result.isDone()) {
+				iterator.remove();
+			}
+		}
+	}
+
+	private static class CachedModel {
+		final CompletableFuture<PortfolioResult> result = new CompletableFuture<PortfolioResult>();
+		final long expiresAt;
+
+		CachedModel(long expiresAt) {
+			this.expiresAt = expiresAt;
+		}
+	}
+
+	// a symbol whose data could not be fetched or modelled
+	private static class SymbolFailure extends Exception {
+		private static final long serialVersionUID = 1L;
+
+		SymbolFailure(String message) {
+			super(message);
+		}
+	}
+
+	// a request body longer than the server reads
+	private static class RequestTooLarge extends Exception {
+		private static final long serialVersionUID = 1L;
+
+		RequestTooLarge(String message) {
+			super(message);
+		}
+	}
+
+	// helper methods
+
+	private static PricingBatcher.Contracts parseContract(Map<String, String> parameters) {
+		double spot = parseNumber(parameters, "spot"), strike = parseNumber(parameters, "strike"), force = parseNumber(parameters, "force");
+		double volatility = parseNumber(parameters, "volatility"), time = parseNumber(parameters, "time");
+		String invalid = checkContract(spot, strike, force, volatility, time);
+		if (invalid != null) {
+			throw new IllegalArgumentException(invalid);
+		}
+		return new PricingBatcher.Contracts(new double[] { spot }, new double[] { strike }, new double[] { force },
+				new double[] { volatility }, new double[] { time });
+	}
+
+	// body lines of spot,strike,force,volatility,time; blank lines and a header line starting with a letter are skipped
+	private static PricingBatcher.Contracts parseContracts(InputStream body, int maxContracts) throws IOException, RequestTooLarge {
+		// room for a header line and maxContracts contract lines; one byte more tells that the body is longer
+		int maxBytes = (int)Math.min((maxContracts + 1L)*MAX_LINE_BYTES, Integer.MAX_VALUE - 1);
+		byte[] bytes = body.readNBytes(maxBytes + 1);
+		if (bytes.length > maxBytes) {
+			throw new RequestTooLarge("Request body is longer than " + maxBytes + " bytes");
+		}
+		String[] lines = new String(bytes, StandardCharsets.US_ASCII).split("\n");
+		double[][] columns = new double[5][lines.length];
+		int count = 0;
+		for (int lineIndex=0; lineIndex<lines.length; lineIndex++) {
+			String line = lines[lineIndex].trim();
+			if (line.isEmpty() || Character.isLetter(line.charAt(0))) {
+				continue;
+			}
+			if (count == maxContracts) {
+				throw new IllegalArgumentException("More than " + maxContracts + " contracts in one request");
+			}
+			String[] fields = line.split(",");
+			if (fields.length != 5) {
+				throw new IllegalArgumentException("Line " + (lineIndex+1) + " does not have 5 fields (spot,strike,force,volatility,time)");
+			}
+			for (int field=0; field<5; field++) {
+				try {
+					columns[field][count] = Double.parseDouble(fields[field].trim());
+				} catch (NumberFormatException e) {
+					throw new IllegalArgumentException("Malformed number on line " + (lineIndex+1) + ": " + fields[field]);
+				}
+			}
+			String invalid = checkContract(columns[0][count], columns[1][count], columns[2][count], columns[3][count], columns[4][count]);
+			if (invalid != null) {
+				throw new IllegalArgumentException(invalid + " on line " + (lineIndex+1));
+			}
+			count++;
+		}
+		if (count == 0) {
+			throw new IllegalArgumentException("No contracts in the request body");
+		}
+		for (int field=0; field<5; field++) {
+			columns[field] = Arrays.copyOf(columns[field], count);
+		}
+		return new PricingBatcher.Contracts(columns[0], columns[1], columns[2], columns[3], columns[4]);
+	}
+
+	// why a contract cannot be priced, or null if it can: every number finite, spot, strike, volatility and time positive
+	private static String checkContract(double spot, double strike, double force, double volatility, double time) {
+		if (!(spot > 0) || Double.isInfinite(spot)) {
+			return "Spot must be positive and finite: " + spot;
+		}
+		if (!(strike > 0) || Double.isInfinite(strike)) {
+			return "Strike must be positive and finite: " + strike;
+		}
+		if (Double.isNaN(force) || Double.isInfinite(force)) {
+			return "Force must be finite: " + force;
+		}
+		if (!(volatility > 0) || Double.isInfinite(volatility)) {
+			return "Volatility must be positive and finite: " + volatility;
+		}
+		if (!(time > 0) || Double.isInfinite(time)) {
+			return "Time must be positive and finite: " + time;
+		}
+		return null;
+	}
+
+	private static double parseNumber(Map<String, String> parameters, String name) {
+		String value = parameters.get(name);
+		if (value == null) {
+			throw new IllegalArgumentException("Missing parameter " + name);
+		}
+		try {
+			return Double.parseDouble(value);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Malformed parameter " + name + ": " + value);
+		}
+	}
+
+	private static Map<String, String> parseQuery(String query) {
+		Map<String, String> parameters = new HashMap<String, String>();
+		if (query != null) {
+			for (String parameter : query.split("&")) {
+				int equals = parameter.indexOf('=');
+				if (equals > 0) {
+					parameters.put(URLDecoder.decode(parameter.substring(0, equals), StandardCharsets.UTF_8),
+							URLDecoder.decode(parameter.substring(equals+1), StandardCharsets.UTF_8));
+				}
+			}
+		}
+		return parameters;
+	}
+
+	private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.US_ASCII);
+		exchange.getResponseHeaders().set("Content-Type", "text/csv");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+}
@@ -0,0 +1,203 @@
+package com.alexfiliakov.blackscholescalc.StockModel;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+public class HistoricBarStore {
+	/**
+	 * This class persists historic bars on disk, one append-only file per symbol (<directory>/<SYMBOL>.ohlc).
+	 * Files are read through a MappedByteBuffer: the HistoricBars handed out are views of the mapped
+	 * columns, so opening a symbol copies nothing and the bars take no heap beyond a few buffer objects.
+	 *
+	 * File layout (little-endian):
+	 *   header   64 bytes: magic "OHLC", version, capacity, count, reserved
+	 *   columns  epochDay int[capacity], then open, high, low, close double[capacity]
+	 * Each column has room for capacity bars. Appends fill the free room and then publish the new count
+	 * in the header, so a reader that opened the file earlier keeps seeing a complete (shorter) series.
+	 * When the room runs out, the file is rewritten with twice the capacity and swapped in atomically.
+	 *
+	 * The store is POSIX-only: the swap replaces a file that readers may still have mapped, which POSIX
+	 * allows (they keep the old file) but Windows refuses. There a full file cannot grow, append throws
+	 * and the symbol's history is simply fetched again next time.
+	 */
+
+	public static final String FILE_EXTENSION = ".ohlc";
+
+	private static final int MAGIC = 0x4F484C43; // "OHLC"
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 64;
+	private static final int CAPACITY_OFFSET = 8, COUNT_OFFSET = 12;
+	private static final int MIN_CAPACITY = 64; // capacities are even, so the double columns stay 8-byte aligned
+	private static final int INT_SIZE = 4, DOUBLE_SIZE = 8;
+
+	private final File directory;
+
+	public HistoricBarStore(File directory) {
+		this.directory = directory;
+	}
+
+	public File getFile(String stockSymbol) throws Exception {
+		// the symbol becomes a file name, so it may only contain letters
+		if (stockSymbol == null || !stockSymbol.matches("[a-zA-Z]+")) {
+			throw new Exception("input must contain letters");
+		}
+		return new File(directory, stockSymbol.toUpperCase() + FILE_EXTENSION);
+	}
+
+	// maps the symbol's bars, or returns null if nothing is stored for it
+	public HistoricBars read(String stockSymbol) throws Exception {
+		File file = getFile(stockSymbol);
+		if (!file.isFile()) {
+			return null;
+		}
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			if (channel.size() == 0) {
+				return null; // created, but the first append did not complete
+			}
+			// the mapping stays valid after the channel is closed
+			MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			mapped.order(ByteOrder.LITTLE_ENDIAN);
+			int capacity = readHeader(mapped, file);
+			int count = mapped.getInt(COUNT_OFFSET);
+			return new HistoricBars(count,
+					column(mapped, dayOffset(), count*INT_SIZE).asIntBuffer(),
+					column(mapped, priceOffset(capacity, 0), count*DOUBLE_SIZE).asDoubleBuffer(),
+					column(mapped, priceOffset(capacity, 1), count*DOUBLE_SIZE).asDoubleBuffer(),
+					column(mapped, priceOffset(capacity, 2), count*DOUBLE_SIZE).asDoubleBuffer(),
+					column(mapped, priceOffset(capacity, 3), count*DOUBLE_SIZE).asDoubleBuffer());
+		}
+	}
+
+	/*
+	 * Appends the bars that are newer than the newest stored bar, so appending a refreshed history
+	 * only adds the new weeks. Returns the number of bars appended.
+	 */
+	public synchronized int append(String stockSymbol, HistoricBars bars) throws Exception {
+		File file = getFile(stockSymbol);
+		directory.mkdirs();
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE)) {
+			int capacity = 0, count = 0;
+			MappedByteBuffer mapped = null;
+			if (channel.size() > 0) {
+				mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+				mapped.order(ByteOrder.LITTLE_ENDIAN);
+				capacity = readHeader(mapped, file);
+				count = mapped.getInt(COUNT_OFFSET);
+			}
+
+			// bars are chronological, so the new ones are at the end
+			int first = 0;
+			if (count > 0) {
+				int newestStored = mapped.getInt(dayOffset() + (count-1)*INT_SIZE);
+				first = bars.size();
+				while (first > 0 && bars.getEpochDay(first-1) > newestStored) {
+					first--;
+				}
+			}
+			int added = bars.size() - first;
+			if (added == 0) {
+				return 0;
+			}
+
+			if (count + added <= capacity) {
+				// fill the free room, then publish the new count
+				writeBars(mapped, capacity, count, bars, first);
+				mapped.force();
+				mapped.putInt(COUNT_OFFSET, count + added);
+				mapped.force();
+			} else {
+				grow(file, mapped, capacity, count, bars, first);
+			}
+			return added;
+		}
+	}
+
+	// rewrites the file with room for at least twice the bars, then swaps it in
+	private void grow(File file, ByteBuffer stored, int capacity, int count, HistoricBars bars, int first) throws Exception {
+		int total = count + bars.size() - first;
+		int newCapacity = Math.max(MIN_CAPACITY, Math.max(capacity*2, total));
+		newCapacity += newCapacity & 1;
+
+		Path temporary = new File(directory, file.getName() + ".tmp").toPath();
+		try {
+			try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.READ, StandardOpenOption.WRITE,
+					StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+				MappedByteBuffer grown = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize(newCapacity));
+				grown.order(ByteOrder.LITTLE_ENDIAN);
+				grown.putInt(0, MAGIC);
+				grown.putInt(4, VERSION);
+				grown.putInt(CAPACITY_OFFSET, newCapacity);
+
+				// copy the stored columns, then add the new bars after them
+				for (int i=0; i<count; i++) {
+					grown.putInt(dayOffset() + i*INT_SIZE, stored.getInt(dayOffset() + i*INT_SIZE));
+					for (int column=0; column<4; column++) {
+						grown.putDouble(priceOffset(newCapacity, column) + i*DOUBLE_SIZE,
+								stored.getDouble(priceOffset(capacity, column) + i*DOUBLE_SIZE));
+					}
+				}
+				writeBars(grown, newCapacity, count, bars, first);
+				grown.putInt(COUNT_OFFSET, total);
+				grown.force();
+			}
+			Files.move(temporary, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (Exception e) {
+			Files.deleteIfExists(temporary); // the stored file is unchanged
+			throw e;
+		}
+	}
+
+	private static void writeBars(ByteBuffer mapped, int capacity, int count, HistoricBars bars, int first) {
+		for (int i=first, row=count; i<bars.size(); i++, row++) {
+			mapped.putInt(dayOffset() + row*INT_SIZE, bars.getEpochDay(i));
+			mapped.putDouble(priceOffset(capacity, 0) + row*DOUBLE_SIZE, bars.getOpen(i));
+			mapped.putDouble(priceOffset(capacity, 1) + row*DOUBLE_SIZE, bars.getHigh(i));
+			mapped.putDouble(priceOffset(capacity, 2) + row*DOUBLE_SIZE, bars.getLow(i));
+			mapped.putDouble(priceOffset(capacity, 3) + row*DOUBLE_SIZE, bars.getClose(i));
+		}
+	}
+
+	// checks the header and returns the file's capacity
+	private static int readHeader(ByteBuffer mapped, File file) throws Exception {
+		if (mapped.capacity() < HEADER_SIZE || mapped.getInt(0) != MAGIC) {
+			throw new Exception("Not a historic bar file: " + file);
+		}
+		if (mapped.getInt(4) != VERSION) {
+			throw new Exception("Unsupported historic bar file version " + mapped.getInt(4) + ": " + file);
+		}
+		int capacity = mapped.getInt(CAPACITY_OFFSET);
+		int count = mapped.getInt(COUNT_OFFSET);
+		if (capacity < 0 || count < 0 || count > capacity || mapped.capacity() < fileSize(capacity)) {
+			throw new Exception("Historic bar file is damaged: " + file);
+		}
+		return capacity;
+	}
+
+	private static ByteBuffer column(ByteBuffer mapped, int offset, int length) {
+		ByteBuffer view = mapped.duplicate();
+		view.limit(offset + length);
+		view.position(offset);
+		return view.slice().order(ByteOrder.LITTLE_ENDIAN); // slices start out big-endian
+	}
+
+	private static int dayOffset() {
+		return HEADER_SIZE;
+	}
+
+	// price columns in order: open, high, low, close
+	private static int priceOffset(int capacity, int column) {
+		return HEADER_SIZE + capacity*INT_SIZE + column*capacity*DOUBLE_SIZE;
+	}
+
+	private static long fileSize(int capacity) {
+		return HEADER_SIZE + (long)capacity*(INT_SIZE + 4*DOUBLE_SIZE);
+	}
+}
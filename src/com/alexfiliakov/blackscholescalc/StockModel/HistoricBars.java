@@ -0,0 +1,79 @@
+package com.alexfiliakov.blackscholescalc.StockModel;
+
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+
+public final class HistoricBars {
+	/**
+	 * This class is a read-only series of historic price bars stored as primitive columns: the bar's
+	 * start date as an epoch day (days since 1970-01-01) and its open, high, low and close prices.
+	 * Bars are always in chronological order, oldest first.
+	 *
+	 * The columns are buffers, so the same class serves bars parsed onto the heap and bars mapped
+	 * straight from a HistoricBarStore file. Windows are views that share the columns; nothing is copied.
+	 */
+
+	private final int size;
+	private final IntBuffer epochDay;
+	private final DoubleBuffer open, high, low, close;
+
+	// the columns hold at least size values each, in chronological order
+	HistoricBars(int size, IntBuffer epochDay, DoubleBuffer open, DoubleBuffer high, DoubleBuffer low, DoubleBuffer close) {
+		this.size = size;
+		this.epochDay = epochDay;
+		this.open = open;
+		this.high = high;
+		this.low = low;
+		this.close = close;
+	}
+
+	public int size() { return size; }
+	public int getEpochDay(int i) { return epochDay.get(i); }
+	public double getOpen(int i) { return open.get(i); }
+	public double getHigh(int i) { return high.get(i); }
+	public double getLow(int i) { return low.get(i); }
+	public double getClose(int i) { return close.get(i); }
+
+	// the newest count bars (all of them if there are fewer), sharing this series' columns
+	public HistoricBars window(int count) {
+		count = Math.min(Math.max(count, 0), size);
+		return range(size - count, size);
+	}
+
+	// bars from (inclusive) to (exclusive), sharing this series' columns
+	public HistoricBars range(int from, int to) {
+		if (from < 0 || to > size || from > to) {
+			throw new IndexOutOfBoundsException("Bars " + from + " to " + to + " of " + size);
+		}
+		int count = to - from;
+		return new HistoricBars(count, slice(epochDay, from, count),
+				slice(open, from, count), slice(high, from, count), slice(low, from, count), slice(close, from, count));
+	}
+
+	/*
+	 * The Monday of the week an epoch day falls in, weeks running Sunday to Saturday. Yahoo labels a
+	 * week by its first trading day, so a holiday Monday shows up as Tuesday.
+	 */
+	public static int weekStart(int epochDay) {
+		int daysSinceSunday = Math.floorMod(epochDay + 4, 7); // 1970-01-01 was a Thursday
+		return epochDay - daysSinceSunday + 1;
+	}
+
+	public static boolean isMonday(int epochDay) {
+		return weekStart(epochDay) == epochDay;
+	}
+
+	private static IntBuffer slice(IntBuffer column, int from, int count) {
+		IntBuffer view = column.duplicate();
+		view.limit(from + count);
+		view.position(from);
+		return view.slice();
+	}
+
+	private static DoubleBuffer slice(DoubleBuffer column, int from, int count) {
+		DoubleBuffer view = column.duplicate();
+		view.limit(from + count);
+		view.position(from);
+		return view.slice();
+	}
+}
@@ -0,0 +1,342 @@
+package com.alexfiliakov.blackscholescalc.StockModel;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+
+public final class HistoricBarsParser {
+	/**
+	 * This class parses Yahoo historic price CSVs straight from bytes into HistoricBars columns:
+	 *   Date, Open, High, Low, Close, Volume, Adj Close
+	 *
+	 * Input is read through a fixed buffer, and lines are decoded in place: ISO dates become epoch
+	 * days with integer arithmetic, and plain decimals are read as a long mantissa scaled by an exact
+	 * power of ten. That is correctly rounded, so results match Double.parseDouble. No objects are
+	 * created per line; only numbers the fast path cannot represent exactly (exponents, more than
+	 * 18 digits) go through Double.parseDouble.
+	 *
+	 * Yahoo lists the newest bar first; the parsed bars are put in chronological order.
+	 */
+
+	public static final String HEADER = "Date,Open,High,Low,Close,Volume,Adj Close";
+
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final long MAX_EXACT_MANTISSA = 1L << 53; // every long up to here is an exact double
+	private static final double[] POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+	private static final int[] DAYS_IN_MONTH = {31, 29, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+
+	// parsed columns, grown by doubling
+	private int size;
+	private int[] epochDay;
+	private double[] open, high, low, close;
+
+	private boolean headerRead;
+	private int lineNumber;
+
+	private HistoricBarsParser(int capacity) {
+		epochDay = new int[capacity];
+		open = new double[capacity];
+		high = new double[capacity];
+		low = new double[capacity];
+		close = new double[capacity];
+	}
+
+	// parses a whole in-memory (or memory-mapped) CSV
+	public static HistoricBars parse(ByteBuffer csv) throws Exception {
+		HistoricBarsParser parser = new HistoricBarsParser(csv.remaining()/48 + 1);
+		ByteBuffer view = csv.duplicate();
+		parser.consume(view, true);
+		return parser.finish();
+	}
+
+	public static HistoricBars parse(InputStream in) throws Exception {
+		return parse(Channels.newChannel(in));
+	}
+
+	// streams the CSV through a fixed buffer, so the input is never held in memory at once
+	public static HistoricBars parse(ReadableByteChannel channel) throws Exception {
+		HistoricBarsParser parser = new HistoricBarsParser(1024);
+		ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		while (channel.read(buffer) >= 0) {
+			buffer.flip();
+			parser.consume(buffer, false);
+			buffer.compact();
+			if (!buffer.hasRemaining()) {
+				throw new Exception("Line " + (parser.lineNumber + 1) + " is longer than " + BUFFER_SIZE + " bytes");
+			}
+		}
+		buffer.flip();
+		parser.consume(buffer, true);
+		return parser.finish();
+	}
+
+	private HistoricBars finish() throws Exception {
+		if (!headerRead) {
+			throw new Exception("File header not as expected. Output:null");
+		}
+		sortChronologically();
+		return new HistoricBars(size, IntBuffer.wrap(epochDay, 0, size), DoubleBuffer.wrap(open, 0, size),
+				DoubleBuffer.wrap(high, 0, size), DoubleBuffer.wrap(low, 0, size), DoubleBuffer.wrap(close, 0, size));
+	}
+
+	private void add(int day, double openPrice, double highPrice, double lowPrice, double closePrice) {
+		if (size == epochDay.length) {
+			int capacity = size*2;
+			epochDay = Arrays.copyOf(epochDay, capacity);
+			open = Arrays.copyOf(open, capacity);
+			high = Arrays.copyOf(high, capacity);
+			low = Arrays.copyOf(low, capacity);
+			close = Arrays.copyOf(close, capacity);
+		}
+		epochDay[size] = day;
+		open[size] = openPrice;
+		high[size] = highPrice;
+		low[size] = lowPrice;
+		close[size] = closePrice;
+		size++;
+	}
+
+	private void sortChronologically() {
+		if (isSorted()) {
+			return;
+		}
+		// newest first (the Yahoo order) only needs reversing
+		for (int i=0, j=size-1; i<j; i++, j--) {
+			swap(i, j);
+		}
+		if (isSorted()) {
+			return;
+		}
+
+		// any other order: sort a permutation of the rows by date
+		Integer[] order = new Integer[size];
+		for (int i=0; i<size; i++) {
+			order[i] = i;
+		}
+		final int[] days = epochDay;
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer row1, Integer row2) {
+				return Integer.compare(days[row1], days[row2]);
+			}
+		});
+		int[] sortedDays = new int[size];
+		double[] sortedOpen = new double[size], sortedHigh = new double[size], sortedLow = new double[size], sortedClose = new double[size];
+		for (int i=0; i<size; i++) {
+			int row = order[i];
+			sortedDays[i] = epochDay[row];
+			sortedOpen[i] = open[row];
+			sortedHigh[i] = high[row];
+			sortedLow[i] = low[row];
+			sortedClose[i] = close[row];
+		}
+		epochDay = sortedDays;
+		open = sortedOpen;
+		high = sortedHigh;
+		low = sortedLow;
+		close = sortedClose;
+	}
+
+	private boolean isSorted() {
+		for (int i=1; i<size; i++) {
+			if (epochDay[i] < epochDay[i-1]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void swap(int i, int j) {
+		int day = epochDay[i]; epochDay[i] = epochDay[j]; epochDay[j] = day;
+		double price = open[i]; open[i] = open[j]; open[j] = price;
+		price = high[i]; high[i] = high[j]; high[j] = price;
+		price = low[i]; low[i] = low[j]; low[j] = price;
+		price = close[i]; close[i] = close[j]; close[j] = price;
+	}
+
+	// parses every complete line in [position, limit) and leaves the position at the first unparsed byte
+	private void consume(ByteBuffer buffer, boolean endOfInput) throws Exception {
+		int lineStart = buffer.position();
+		int limit = buffer.limit();
+		for (int i=lineStart; i<limit; i++) {
+			if (buffer.get(i) == '\n') {
+				parseLine(buffer, lineStart, i);
+				lineStart = i + 1;
+			}
+		}
+		if (endOfInput && lineStart < limit) {
+			parseLine(buffer, lineStart, limit);
+			lineStart = limit;
+		}
+		buffer.position(lineStart);
+	}
+
+	private void parseLine(ByteBuffer buffer, int start, int end) throws Exception {
+		lineNumber++;
+		if (end > start && buffer.get(end-1) == '\r') {
+			end--;
+		}
+
+		if (!headerRead) {
+			// make sure CSV has a valid header
+			if (!matches(buffer, start, end, HEADER)) {
+				throw new Exception("File header not as expected. Output:" + decode(buffer, start, end));
+			}
+			headerRead = true;
+			return;
+		}
+		if (start == end) {
+			return; // blank line
+		}
+
+		// Date must be yyyy-MM-dd
+		int dateEnd = start + 10;
+		if (dateEnd >= end || buffer.get(dateEnd) != ',') {
+			throw malformed();
+		}
+		int day = parseEpochDay(buffer, start);
+
+		int fieldStart = dateEnd + 1;
+		int fieldEnd = nextComma(buffer, fieldStart, end);
+		double openPrice = parseDecimal(buffer, fieldStart, fieldEnd);
+
+		fieldStart = fieldEnd + 1;
+		fieldEnd = nextComma(buffer, fieldStart, end);
+		double highPrice = parseDecimal(buffer, fieldStart, fieldEnd);
+
+		fieldStart = fieldEnd + 1;
+		fieldEnd = nextComma(buffer, fieldStart, end);
+		double lowPrice = parseDecimal(buffer, fieldStart, fieldEnd);
+
+		fieldStart = fieldEnd + 1;
+		fieldEnd = nextComma(buffer, fieldStart, end);
+		double closePrice = parseDecimal(buffer, fieldStart, fieldEnd);
+
+		add(day, openPrice, highPrice, lowPrice, closePrice);
+	}
+
+	private int nextComma(ByteBuffer buffer, int from, int end) throws Exception {
+		if (from > end) {
+			throw malformed();
+		}
+		for (int i=from; i<end; i++) {
+			if (buffer.get(i) == ',') {
+				return i;
+			}
+		}
+		return end;
+	}
+
+	// yyyy-MM-dd to days since 1970-01-01 (proleptic Gregorian calendar)
+	private int parseEpochDay(ByteBuffer buffer, int start) throws Exception {
+		if (buffer.get(start+4) != '-' || buffer.get(start+7) != '-') {
+			throw malformed();
+		}
+		int year = digits(buffer, start, 4);
+		int month = digits(buffer, start+5, 2);
+		int day = digits(buffer, start+8, 2);
+		boolean leapYear = (year % 4 == 0) && (year % 100 != 0 || year % 400 == 0);
+		if (month < 1 || month > 12 || day < 1 || day > DAYS_IN_MONTH[month-1] || (month == 2 && day == 29 && !leapYear)) {
+			throw malformed();
+		}
+
+		// days from civil (H. Hinnant), with March as the first month so leap days fall at the end of the year
+		int y = (month <= 2) ? year - 1 : year;
+		int era = y/400; // years are 0000-9999, never negative
+		int yearOfEra = y - era*400;
+		int dayOfYear = (153*(month + (month > 2 ? -3 : 9)) + 2)/5 + day - 1;
+		int dayOfEra = yearOfEra*365 + yearOfEra/4 - yearOfEra/100 + dayOfYear;
+		return era*146097 + dayOfEra - 719468;
+	}
+
+	private int digits(ByteBuffer buffer, int start, int count) throws Exception {
+		int value = 0;
+		for (int i=start; i<start+count; i++) {
+			int digit = buffer.get(i) - '0';
+			if (digit < 0 || digit > 9) {
+				throw malformed();
+			}
+			value = value*10 + digit;
+		}
+		return value;
+	}
+
+	private double parseDecimal(ByteBuffer buffer, int start, int end) throws Exception {
+		int i = start;
+		boolean negative = false;
+		if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+			negative = (buffer.get(i) == '-');
+			i++;
+		}
+
+		long mantissa = 0;
+		int digitCount = 0, fractionDigits = 0;
+		boolean pointSeen = false;
+		for (; i<end; i++) {
+			byte b = buffer.get(i);
+			if (b >= '0' && b <= '9') {
+				mantissa = mantissa*10 + (b - '0');
+				digitCount++;
+				if (pointSeen) {
+					fractionDigits++;
+				}
+				if (digitCount > 18) {
+					return parseSlow(buffer, start, end);
+				}
+			} else if (b == '.' && !pointSeen) {
+				pointSeen = true;
+			} else {
+				return parseSlow(buffer, start, end); // exponent, "null", etc.
+			}
+		}
+		if (digitCount == 0) {
+			throw malformed();
+		}
+		if (mantissa > MAX_EXACT_MANTISSA || fractionDigits >= POWERS_OF_TEN.length) {
+			return parseSlow(buffer, start, end);
+		}
+
+		// both operands are exact, so the division is correctly rounded
+		double value = mantissa/POWERS_OF_TEN[fractionDigits];
+		return negative ? -value : value;
+	}
+
+	private double parseSlow(ByteBuffer buffer, int start, int end) throws Exception {
+		try {
+			return Double.parseDouble(decode(buffer, start, end));
+		} catch (NumberFormatException e) {
+			throw malformed();
+		}
+	}
+
+	private static boolean matches(ByteBuffer buffer, int start, int end, String text) {
+		if (end - start != text.length()) {
+			return false;
+		}
+		for (int i=0; i<text.length(); i++) {
+			if (buffer.get(start+i) != text.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static String decode(ByteBuffer buffer, int start, int end) {
+		byte[] bytes = new byte[end - start];
+		for (int i=0; i<bytes.length; i++) {
+			bytes[i] = buffer.get(start+i);
+		}
+		return new String(bytes, StandardCharsets.US_ASCII);
+	}
+
+	private Exception malformed() {
+		return new Exception("Malformed data on line " + lineNumber);
+	}
+}
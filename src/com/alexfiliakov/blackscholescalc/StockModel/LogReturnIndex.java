@@ -0,0 +1,177 @@
+package com.alexfiliakov.blackscholescalc.StockModel;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+public class LogReturnIndex {
+	/**
+	 * This class indexes a symbol's weekly log returns with prefix sums, so the lognormal model
+	 * parameters of any window of its history come out in constant time:
+	 *   mean       = (sum of returns in the window) / n
+	 *   volatility = sqrt((sum of squares - sum^2/n) / (n-1))
+	 * with each window sum taken as the difference of two prefix sums.
+	 *
+	 * To keep the subtraction accurate the returns are centered on the mean return of the history the
+	 * index was built from, so squares measure deviations rather than raw returns, and prefix sums are
+	 * accumulated with compensated (Kahan) summation.
+	 *
+	 * Bars must be consecutive weeks, so a bar's position follows from its date by arithmetic and date
+	 * ranges are looked up in constant time too. A window of w bars spans w-1 returns, as in StockModel.
+	 */
+
+	// lookback windows (in weeks) analysts ask for most
+	public static final int[] DEFAULT_WINDOWS = {4, 13, 26, 52, 104};
+
+	private HistoricBars bars;
+	private final double center;
+
+	// prefix sums over returns 1..i of (return - center) and its square; index 0 is empty
+	private double[] sums, sumsOfSquares;
+	private double sumCompensation, squaresCompensation;
+
+	public LogReturnIndex(HistoricBars bars) throws Exception {
+		if (bars.size() < 3) {
+			throw new Exception("Not enough data to model");
+		}
+		checkWeekly(bars, 1);
+		center = Math.log(bars.getClose(bars.size()-1)/bars.getClose(0))/(bars.size()-1);
+
+		this.bars = bars;
+		sums = new double[bars.size()];
+		sumsOfSquares = new double[bars.size()];
+		indexReturns(1);
+	}
+
+	/*
+	 * Extends the index with a refreshed history of the symbol whose new bars follow the indexed
+	 * ones. Costs O(1) per new bar. Returns the number of bars added.
+	 */
+	public int append(HistoricBars refreshedBars) throws Exception {
+		int size = bars.size();
+		if (refreshedBars.size() <= size) {
+			return 0;
+		}
+		if (refreshedBars.getEpochDay(size-1) != bars.getEpochDay(size-1)) {
+			throw new Exception("Refreshed bars do not continue the indexed history at " + LocalDate.ofEpochDay(bars.getEpochDay(size-1)));
+		}
+		checkWeekly(refreshedBars, size);
+
+		bars = refreshedBars;
+		if (refreshedBars.size() > sums.length) {
+			int capacity = Math.max(refreshedBars.size(), 2*sums.length);
+			sums = Arrays.copyOf(sums, capacity);
+			sumsOfSquares = Arrays.copyOf(sumsOfSquares, capacity);
+		}
+		indexReturns(size);
+		return refreshedBars.size() - size;
+	}
+
+	private static void checkWeekly(HistoricBars bars, int from) throws Exception {
+		for (int i=Math.max(from, 1); i<bars.size(); i++) {
+			int expected = HistoricBars.weekStart(bars.getEpochDay(i-1)) + 7;
+			if (HistoricBars.weekStart(bars.getEpochDay(i)) != expected) {
+				throw new Exception ("Data is missing, can't continue. Expected: " + LocalDate.ofEpochDay(expected)
+						+ "; Actual: " + LocalDate.ofEpochDay(bars.getEpochDay(i)));
+			}
+		}
+	}
+
+	private void indexReturns(int from) {
+		double sum = sums[from-1], squares = sumsOfSquares[from-1];
+		for (int i=from; i<bars.size(); i++) {
+			double deviation = Math.log(bars.getClose(i)/bars.getClose(i-1)) - center;
+
+			// compensated summation: each addition's rounding error is carried into the next one
+			double term = deviation - sumCompensation;
+			double next = sum + term;
+			sumCompensation = (next - sum) - term;
+			sum = next;
+
+			term = deviation*deviation - squaresCompensation;
+			next = squares + term;
+			squaresCompensation = (next - squares) - term;
+			squares = next;
+
+			sums[i] = sum;
+			sumsOfSquares[i] = squares;
+		}
+	}
+
+	public HistoricBars getBars() { return bars; }
+	public int size() { return bars.size(); }
+
+	// position of the bar of the week an epoch day falls in (may be outside 0..size-1)
+	public int indexOf(int epochDay) {
+		return (HistoricBars.weekStart(epochDay) - HistoricBars.weekStart(bars.getEpochDay(0)))/7;
+	}
+
+	// weekly mean of log returns over bars firstBar..lastBar (inclusive)
+	public double getWeeklyMean(int firstBar, int lastBar) {
+		int returns = checkWindow(firstBar, lastBar);
+		if (returns < 1) {
+			throw new IllegalArgumentException("Mean needs at least 2 bars");
+		}
+		return center + (sums[lastBar] - sums[firstBar])/returns;
+	}
+
+	// sample volatility of weekly log returns over bars firstBar..lastBar (inclusive, at least 3 bars)
+	public double getWeeklyVolatility(int firstBar, int lastBar) {
+		int returns = checkWindow(firstBar, lastBar);
+		if (returns < 2) {
+			throw new IllegalArgumentException("Volatility needs at least 3 bars, got " + (returns + 1));
+		}
+		double sum = sums[lastBar] - sums[firstBar];
+		double squares = sumsOfSquares[lastBar] - sumsOfSquares[firstBar];
+		return Math.sqrt(Math.max(squares - sum*sum/returns, 0)/(returns - 1));
+	}
+
+	public double getAnnualMean(int firstBar, int lastBar) { return 52*getWeeklyMean(firstBar, lastBar); }
+	public double getAnnualVolatility(int firstBar, int lastBar) { return Math.sqrt(52)*getWeeklyVolatility(firstBar, lastBar); }
+
+	// parameters over the weeks from one date to another (inclusive), clipped to the indexed history
+	public double getAnnualMean(LocalDate from, LocalDate to) {
+		return getAnnualMean(clip(indexOf((int)from.toEpochDay())), clip(indexOf((int)to.toEpochDay())));
+	}
+
+	public double getAnnualVolatility(LocalDate from, LocalDate to) {
+		return getAnnualVolatility(clip(indexOf((int)from.toEpochDay())), clip(indexOf((int)to.toEpochDay())));
+	}
+
+	/*
+	 * Term structure of historic parameters: for each window length (in weeks), the annualized mean and
+	 * volatility of the windowBars[i] bars ending at lastBar. Windows longer than the history before
+	 * lastBar, or shorter than 3 bars, come out as NaN.
+	 */
+	public void getTermStructure(int lastBar, int[] windowBars, double[] annualMeanOut, double[] annualVolatilityOut) {
+		checkWindow(lastBar, lastBar);
+		for (int i=0; i<windowBars.length; i++) {
+			int firstBar = lastBar - windowBars[i] + 1;
+			if (windowBars[i] < 3 || firstBar < 0) {
+				annualMeanOut[i] = annualVolatilityOut[i] = Double.NaN;
+			} else {
+				annualMeanOut[i] = getAnnualMean(firstBar, lastBar);
+				annualVolatilityOut[i] = getAnnualVolatility(firstBar, lastBar);
+			}
+		}
+	}
+
+	// annualized volatilities of the DEFAULT_WINDOWS ending at the newest bar
+	public double[] getVolatilityTermStructure() {
+		double[] annualMean = new double[DEFAULT_WINDOWS.length];
+		double[] annualVolatility = new double[DEFAULT_WINDOWS.length];
+		getTermStructure(size()-1, DEFAULT_WINDOWS, annualMean, annualVolatility);
+		return annualVolatility;
+	}
+
+	// returns the number of returns in the window
+	private int checkWindow(int firstBar, int lastBar) {
+		if (firstBar < 0 || lastBar >= bars.size() || firstBar > lastBar) {
+			throw new IndexOutOfBoundsException("Bars " + firstBar + " to " + lastBar + " of " + bars.size());
+		}
+		return lastBar - firstBar;
+	}
+
+	private int clip(int bar) {
+		return Math.min(Math.max(bar, 0), bars.size()-1);
+	}
+}
@@ -0,0 +1,142 @@
+package com.alexfiliakov.blackscholescalc.StockModel;
+
+import java.time.LocalDate;
+
+public class RollingCalibration {
+	/**
+	 * This class estimates the lognormal model parameters incrementally, one weekly bar at a time,
+	 * over a rolling window of the newest windowBars bars.
+	 *
+	 * The parameters are the mean and sample volatility of weekly log returns. They are kept as a running
+	 * mean and sum of squared deviations (Welford's method), which stays accurate where the textbook
+	 * sum-of-squares formula cancels. A new bar adds its return and, once the window is full, evicts the
+	 * oldest return, so each bar costs O(1) however long the history is.
+	 *
+	 * Evictions let rounding errors accumulate, so the running values are recomputed exactly from the
+	 * window once per window's worth of evictions (still O(1) per bar on average).
+	 */
+
+	private final int windowBars;
+
+	// log returns in the window, oldest at head; grows up to windowBars-1 as the window fills
+	private double[] returns;
+	private int head, returnCount;
+
+	// running mean and sum of squared deviations of the returns
+	private double mean, sumOfSquaredDeviations;
+	private int evictionsSinceResync;
+
+	private boolean empty = true;
+	private int lastWeekStart;
+	private double lastClose;
+
+	public RollingCalibration(int windowBars) {
+		if (windowBars < 3) {
+			throw new IllegalArgumentException("A window needs at least 3 bars, got " + windowBars);
+		}
+		this.windowBars = windowBars;
+		this.returns = new double[Math.min(windowBars-1, 64)];
+	}
+
+	/*
+	 * Adds the bar of the week after the last one; bars must come one week apart (holiday weeks are
+	 * labelled by their first trading day, so any day of the week is accepted).
+	 */
+	public void add(int epochDay, double close) throws Exception {
+		if (!(close > 0)) {
+			throw new Exception("Close price must be positive, got " + close + " on " + LocalDate.ofEpochDay(epochDay));
+		}
+		int week = HistoricBars.weekStart(epochDay);
+		if (!empty) {
+			if (week != lastWeekStart + 7) {
+				throw new Exception ("Data is missing, can't continue. Expected: " + LocalDate.ofEpochDay(lastWeekStart + 7)
+						+ "; Actual: " + LocalDate.ofEpochDay(epochDay));
+			}
+			addReturn(Math.log(close/lastClose));
+		}
+		empty = false;
+		lastWeekStart = week;
+		lastClose = close;
+	}
+
+	// adds every bar of a series, oldest first
+	public void addAll(HistoricBars bars) throws Exception {
+		for (int i=0; i<bars.size(); i++) {
+			add(bars.getEpochDay(i), bars.getClose(i));
+		}
+	}
+
+	private void addReturn(double logReturn) {
+		if (returnCount == returns.length) {
+			if (returns.length < windowBars-1) {
+				grow();
+			} else {
+				evictOldest();
+			}
+		}
+		returns[(head + returnCount) % returns.length] = logReturn;
+		returnCount++;
+
+		double delta = logReturn - mean;
+		mean += delta/returnCount;
+		sumOfSquaredDeviations += delta*(logReturn - mean);
+	}
+
+	private void evictOldest() {
+		double oldest = returns[head];
+		head = (head + 1) % returns.length;
+		returnCount--;
+
+		if (++evictionsSinceResync >= returns.length) {
+			resync();
+			return;
+		}
+		if (returnCount == 0) {
+			mean = sumOfSquaredDeviations = 0;
+			return;
+		}
+		double delta = oldest - mean;
+		mean -= delta/returnCount;
+		sumOfSquaredDeviations = Math.max(sumOfSquaredDeviations - delta*(oldest - mean), 0);
+	}
+
+	private void grow() {
+		double[] grown = new double[(int)Math.min(2L*returns.length, windowBars-1)];
+		for (int i=0; i<returnCount; i++) {
+			grown[i] = returns[(head + i) % returns.length];
+		}
+		returns = grown;
+		head = 0;
+	}
+
+	// recomputes the running values from the window with the two-pass formula
+	private void resync() {
+		evictionsSinceResync = 0;
+		double sum = 0;
+		for (int i=0; i<returnCount; i++) {
+			sum += returns[(head + i) % returns.length];
+		}
+		mean = (returnCount > 0) ? sum/returnCount : 0;
+		double squares = 0;
+		for (int i=0; i<returnCount; i++) {
+			double deviation = returns[(head + i) % returns.length] - mean;
+			squares += deviation*deviation;
+		}
+		sumOfSquaredDeviations = squares;
+	}
+
+	public int getWindowBars() { return windowBars; }
+	public int getBarCount() { return empty ? 0 : returnCount + 1; }
+	public int getLastWeekStart() { return lastWeekStart; }
+	public double getLastClose() { return lastClose; }
+
+	public double getWeeklyMean() { return mean; }
+
+	// sample standard deviation of the weekly log returns (needs at least 3 bars)
+	public double getWeeklyVolatility() {
+		return Math.sqrt(sumOfSquaredDeviations/(returnCount - 1));
+	}
+
+	public double getAnnualMean() { return 52*getWeeklyMean(); }
+	public double getAnnualVolatility() { return Math.sqrt(52)*getWeeklyVolatility(); }
+}
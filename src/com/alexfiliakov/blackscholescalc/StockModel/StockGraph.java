@@ -4,10 +4,13 @@ import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
-import java.util.Calendar;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.image.BufferedImage;
+import java.text.DecimalFormat;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
 import java.util.Locale;
 
 import javax.swing.JPanel;
@@ -15,177 +18,346 @@ import javax.swing.JPanel;
 
 public class StockGraph extends JPanel {
 	/**
-	 * This class generates graph of the stock
+	 * This class generates graph of the stock: weekly candles of the history, followed by the
+	 * model's expected close and its 95% confidence bounds for the year ahead.
+	 *
+	 * The chart is drawn into a cached image and repaints only copy that image; it is redrawn when
+	 * the data, the view or the size changes. Long histories are drawn from a pyramid of OHLC buckets
+	 * (2, 4, 8, ... weeks merged into one candle), built once per data change. A redraw picks the level
+	 * that keeps candles a few pixels apart, so it costs about one candle per few pixels however
+	 * many years are shown.
+	 *
+	 * The mouse wheel zooms around the pointer, dragging pans, and a double click goes back to the
+	 * last year of history and the year predicted.
 	 */
-	
-	// constants defining graph dimension and position
-	private final int CANDLE_WIDTH = 5; // width of individual candle plot
-	private final int CANDLE_SPACING = 2; // space between candles
-	private final int GRAPH_X = 20;
-	private final int GRAPH_Y = 20;
-	private final int GRAPH_W = (CANDLE_WIDTH+CANDLE_SPACING)*52*2;
-	private final int GRAPH_H = 400;
-	
-	// global extrema to scale all prices to chart
-	private double globalHigh;
-	private double globalLow;
-	
-	private ArrayList<HistoricDataPoint> historicData;
-	private PredictedDataPoint[] predictedData;
-	
-    public StockGraph(StockModel stockModel) {
-    	super();
-    	historicData = stockModel.getHistoricData();
-    	predictedData = stockModel.getPredictedData();
-    	
-    	findExtrema();
-    }
-	
-    public void paintComponent(Graphics g) {
-        super.paintComponent(g);
-
-        Graphics2D g2d = (Graphics2D)g;
-
-        // draw stage (border, labels, etc)
-        BasicStroke bs2 = new BasicStroke(1, BasicStroke.CAP_SQUARE, BasicStroke.JOIN_MITER);
-        g2d.setStroke(bs2);
-        g2d.setColor(Color.BLACK);
-        
-        g2d.drawRect(GRAPH_X, GRAPH_Y, GRAPH_W, GRAPH_H);
-        
-        // mark 5 price levels (high, low, and 3 in between)
-        for (int i=0; i<=4; i++) {
-        	int yPos = GRAPH_Y+i*GRAPH_H/4;
-        	double priceLevel = globalLow + (globalHigh-globalLow)*(5-i)/5;
-        	g2d.drawLine(GRAPH_X, yPos, GRAPH_X + GRAPH_W, yPos);
-        	g2d.drawString(Double.toString(priceLevel), GRAPH_X + GRAPH_W + 5, yPos + 3);
-        }
-        
-        // mark 3 dates (last close date, 1 year before close date, last prediction date)
-		DateFormat dateFormatter = new SimpleDateFormat("MMM dd, yyyy", Locale.ENGLISH); // used to format date output
-		Calendar cal = Calendar.getInstance(); // will use Calendar to get 1 year before last close (in case we don't have enough historic data)
-		cal.setTime(historicData.get(historicData.size()-1).date);
-		
-		// label last close
-		g2d.drawString(dateFormatter.format(cal.getTime()), GRAPH_X + 51*(CANDLE_WIDTH + CANDLE_SPACING), GRAPH_Y+GRAPH_H+15);
-		
-		// label 1 year ago
-		cal.add(Calendar.DATE,-365);
-		g2d.drawString(dateFormatter.format(cal.getTime()), GRAPH_X, GRAPH_Y+GRAPH_H+15);
-		
-		// label 1 year from close
-		g2d.drawString(dateFormatter.format(predictedData[51].date), GRAPH_X + 101*(CANDLE_WIDTH + CANDLE_SPACING), GRAPH_Y+GRAPH_H+15);
-		
-        
-        // draw candle chart from historic data
-        int historicDataSize = historicData.size();
-        for (int i=0; i<historicDataSize; i++) {
-        	HistoricDataPoint point = historicData.get(i);
-        	// scaled values are heights from top of the graph, so a higher stock price will have a lower scaled value
-        	int scaledHigh = (int) Math.round(GRAPH_H * (globalHigh - point.high)/(globalHigh - globalLow));
-        	int scaledLow = (int) Math.round(GRAPH_H * (globalHigh - point.low)/(globalHigh - globalLow));
-        	
-        	drawCandleFromXYWHOCHL (
-        			g2d,
-        			GRAPH_X + (52 - historicDataSize + i)*(CANDLE_WIDTH + CANDLE_SPACING),
-        			GRAPH_Y + scaledHigh,
-        			CANDLE_WIDTH,
-        			scaledLow-scaledHigh,
-        			point.open,
-        			point.close,
-        			point.high,
-        			point.low);
-        	
-        }
-        
-        // lines connect two prediction points, which stem from the most recent close price
-        double prevClose, prevCloseUpper, prevCloseLower;
-        prevClose = prevCloseUpper = prevCloseLower = historicData.get(historicData.size()-1).close;
-        
-        for (int i=0; i<52; i++) {
-        	int pointSpot = 52+i; // predictions start drawing from 52nd spot
-        	double closeExpected = predictedData[i].expected;
-        	double closeUpper = predictedData[i].upperBound;
-        	double closeLower = predictedData[i].lowerBound;
-        	
-        	bs2 = new BasicStroke(2, BasicStroke.CAP_SQUARE, BasicStroke.JOIN_MITER);
-            g2d.setStroke(bs2);
-            
-            // draw expected close prices
-            g2d.setColor(Color.BLUE);
-            g2d.drawLine(
-            		(int)(GRAPH_X + Math.round((pointSpot-0.5)*(CANDLE_WIDTH+CANDLE_SPACING))),
-            		(int)(GRAPH_Y + Math.round(GRAPH_H * (globalHigh-prevClose)/(globalHigh-globalLow))),
-            		(int)(GRAPH_X + Math.round((pointSpot+0.5)*(CANDLE_WIDTH+CANDLE_SPACING))),
-            		(int)(GRAPH_Y + Math.round(GRAPH_H * (globalHigh-closeExpected)/(globalHigh-globalLow)))
-            		);
-            
-            // draw upper bound
-            g2d.setColor(Color.MAGENTA);
-            g2d.drawLine(
-            		(int)(GRAPH_X + Math.round((pointSpot-0.5)*(CANDLE_WIDTH+CANDLE_SPACING))),
-            		(int)(GRAPH_Y + Math.round(GRAPH_H * (globalHigh-prevCloseUpper)/(globalHigh-globalLow))),
-            		(int)(GRAPH_X + Math.round((pointSpot+0.5)*(CANDLE_WIDTH+CANDLE_SPACING))),
-            		(int)(GRAPH_Y + Math.round(GRAPH_H * (globalHigh-closeUpper)/(globalHigh-globalLow)))
-            		);
-            
-            
-            // draw lower bound
-            g2d.setColor(Color.CYAN);
-            g2d.drawLine(
-            		(int)(GRAPH_X + Math.round((pointSpot-0.5)*(CANDLE_WIDTH+CANDLE_SPACING))),
-            		(int)(GRAPH_Y + Math.round(GRAPH_H * (globalHigh-prevCloseLower)/(globalHigh-globalLow))),
-            		(int)(GRAPH_X + Math.round((pointSpot+0.5)*(CANDLE_WIDTH+CANDLE_SPACING))),
-            		(int)(GRAPH_Y + Math.round(GRAPH_H * (globalHigh-closeLower)/(globalHigh-globalLow)))
-            		);
-            
-            prevClose = closeExpected;
-            prevCloseUpper = closeUpper;
-            prevCloseLower = closeLower;
-        }
-    }
-    
-    // helper methods
-    
-    private void findExtrema() { // set globalHigh and globalLow
-    	// find extrema among historic data
-    	globalHigh = historicData.get(0).high;
-    	globalLow = historicData.get(0).low;
-    	for (HistoricDataPoint point : historicData) {
-    		globalHigh = Math.max(globalHigh, point.high);
-    		globalLow = Math.min(globalLow, point.low);
-    	}
-    	
-    	// find extrema globally
-    	for (PredictedDataPoint point : predictedData) {
-    		globalHigh = Math.max(globalHigh, point.upperBound);
-    		globalLow = Math.min(globalLow, point.lowerBound);
-    	}
-    	
-    	globalHigh=Math.ceil(globalHigh/10)*10; // rounds max up to nearest 10s place
-    	globalLow=Math.floor(globalLow/10)*10; // rounds min down to nearest 10s place
-    }
-    
-    private void drawCandleFromXYWHOCHL(Graphics2D g2d, int x, int y, int w, int h, double open, double close, double high, double low ) {
-    	// y corresponds to high
-    	// y+h corresponds to low
-    	// based on those, y-pos of open and close are computed
-    	
-    	// scaled values are heights from top, so a higher stock price will be a lower scaled value
-    	int scaledOpen = (int)Math.round(h*(high-open)/(high-low));
-    	int scaledClose = (int)Math.round(h*(high-close)/(high-low));
-    	
-    	BasicStroke bs2 = new BasicStroke(1, BasicStroke.CAP_SQUARE, BasicStroke.JOIN_MITER);
-        g2d.setStroke(bs2);
-        g2d.setColor((close>open)?Color.GREEN:Color.RED); // weekly gains are green, weekly losses are red
-    	
-    	//g2d.drawLine(x,y,x+w-1,y); // draw high line
-    	//g2d.drawLine(x,y+h,x+w-1,y+h); // draw low line
-    	g2d.drawLine(x+w/2,y,x+w/2,y+h); // draw center wick
-    	if (open >= close) {
-    		g2d.fillRect(x,y+scaledOpen,w,Math.max(scaledClose-scaledOpen,1));
-    	} else {
-    		g2d.fillRect(x,y+scaledClose,w,Math.max(scaledOpen-scaledClose,1));
-    	}
-    }
+
+	private static final long serialVersionUID = 1L;
+
+	// constants defining graph position and spacing
+	private static final int GRAPH_X = 20;
+	private static final int GRAPH_Y = 20;
+	private static final int PRICE_LABEL_WIDTH = 70; // right of the graph
+	private static final int DATE_LABEL_HEIGHT = 30; // below the graph
+	private static final double CANDLE_FILL = 5/7.; // share of a week's width covered by its candle
+	private static final double MIN_CANDLE_SPACING = 3; // pixels per candle before weeks get merged
+	private static final int PREDICTED_WEEKS = 52;
+	private static final int MIN_VISIBLE_WEEKS = 8;
+	private static final double ZOOM_STEP = 1.25;
+
+	private static final BasicStroke CANDLE_STROKE = new BasicStroke(1, BasicStroke.CAP_SQUARE, BasicStroke.JOIN_MITER);
+	private static final BasicStroke PREDICTION_STROKE = new BasicStroke(2, BasicStroke.CAP_SQUARE, BasicStroke.JOIN_MITER);
+	private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("MMM dd, yyyy", Locale.ENGLISH);
+
+	private final DecimalFormat priceFormat = new DecimalFormat("0.00"); // used on the event thread only
+
+	// history, oldest first; week i of the history is drawn in slot i, prediction i in slot size+i
+	private HistoricBars historicBars;
+	private int lastWeekStart;
+	private double lastClose;
+
+	// merged candles: level k holds buckets of 2^k weeks (level 0 is the history itself)
+	private double[][] bucketOpen, bucketHigh, bucketLow, bucketClose;
+
+	private double[] predictedExpected, predictedUpper, predictedLower;
+
+	// slots shown, from viewStart (left edge) to viewEnd (right edge)
+	private double viewStart, viewEnd;
+
+	private BufferedImage chartImage;
+	private boolean chartValid;
+
+	private int dragX;
+	private double dragViewStart;
+
+	public StockGraph(StockModel stockModel) {
+		this(stockModel, stockModel.getHistoricBars());
+	}
+
+	// charts a longer history than the model's window; it must end with the model's newest week
+	public StockGraph(StockModel stockModel, HistoricBars historicBars) {
+		super();
+		setOpaque(true);
+		setStockModel(stockModel, historicBars);
+
+		MouseAdapter mouseHandler = new MouseAdapter() {
+			public void mouseWheelMoved(MouseWheelEvent e) {
+				zoom(e.getX(), Math.pow(ZOOM_STEP, e.getPreciseWheelRotation()));
+			}
+
+			public void mousePressed(MouseEvent e) {
+				dragX = e.getX();
+				dragViewStart = viewStart;
+			}
+
+			public void mouseDragged(MouseEvent e) {
+				double weeksPerPixel = (viewEnd - viewStart) / getPlotWidth(getWidth());
+				setVisibleRange(dragViewStart - (e.getX() - dragX)*weeksPerPixel, dragViewStart - (e.getX() - dragX)*weeksPerPixel + (viewEnd - viewStart));
+			}
+
+			public void mouseClicked(MouseEvent e) {
+				if (e.getClickCount() == 2) {
+					resetView();
+				}
+			}
+		};
+		addMouseListener(mouseHandler);
+		addMouseMotionListener(mouseHandler);
+		addMouseWheelListener(mouseHandler);
+	}
+
+	// replaces the charted data (e.g. after the model was updated) and goes back to the default view
+	public void setStockModel(StockModel stockModel, HistoricBars historicBars) {
+		this.historicBars = historicBars;
+		lastWeekStart = stockModel.getLastWeekStart();
+		lastClose = historicBars.getClose(historicBars.size()-1);
+		buildBuckets();
+
+		PredictedDataPoint[] predictedData = stockModel.getPredictedData();
+		predictedExpected = new double[PREDICTED_WEEKS];
+		predictedUpper = new double[PREDICTED_WEEKS];
+		predictedLower = new double[PREDICTED_WEEKS];
+		for (int i=0; i<PREDICTED_WEEKS; i++) {
+			predictedExpected[i] = predictedData[i].expected;
+			predictedUpper[i] = predictedData[i].upperBound;
+			predictedLower[i] = predictedData[i].lowerBound;
+		}
+		resetView();
+	}
+
+	// the last year of history and the year predicted
+	public void resetView() {
+		int size = historicBars.size();
+		setVisibleRange(size - 52, size + PREDICTED_WEEKS);
+	}
+
+	// shows the slots from start to end (history weeks are 0..size-1, predictions follow), kept within the data
+	public void setVisibleRange(double start, double end) {
+		double minSlot = Math.min(0, historicBars.size() - 52);
+		double maxSlot = historicBars.size() + PREDICTED_WEEKS;
+		double width = Math.min(Math.max(end - start, MIN_VISIBLE_WEEKS), maxSlot - minSlot);
+		start = Math.min(Math.max(start, minSlot), maxSlot - width);
+		if (start != viewStart || start + width != viewEnd) {
+			viewStart = start;
+			viewEnd = start + width;
+			chartValid = false;
+			repaint();
+		}
+	}
+
+	public double getViewStart() { return viewStart; }
+	public double getViewEnd() { return viewEnd; }
+
+	private void zoom(int x, double factor) {
+		double anchor = viewStart + (x - GRAPH_X) * (viewEnd - viewStart) / getPlotWidth(getWidth());
+		anchor = Math.min(Math.max(anchor, viewStart), viewEnd);
+		double width = Math.max((viewEnd - viewStart) * factor, MIN_VISIBLE_WEEKS);
+		double start = anchor - (anchor - viewStart) * width / (viewEnd - viewStart);
+		setVisibleRange(start, start + width);
+	}
+
+	public void paintComponent(Graphics g) {
+		int width = getWidth(), height = getHeight();
+		if (width <= 0 || height <= 0) {
+			return;
+		}
+
+		// redraw the cached chart only when something changed; otherwise just copy it
+		if (chartImage == null || chartImage.getWidth() != width || chartImage.getHeight() != height) {
+			chartImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+			chartValid = false;
+		}
+		if (!chartValid) {
+			Graphics2D g2d = chartImage.createGraphics();
+			try {
+				drawChart(g2d, width, height);
+			} finally {
+				g2d.dispose();
+			}
+			chartValid = true;
+		}
+		g.drawImage(chartImage, 0, 0, null);
+	}
+
+	private void drawChart(Graphics2D g2d, int width, int height) {
+		g2d.setColor(getBackground());
+		g2d.fillRect(0, 0, width, height);
+
+		int plotWidth = getPlotWidth(width);
+		int plotHeight = height - GRAPH_Y - DATE_LABEL_HEIGHT;
+		if (plotWidth <= 0 || plotHeight <= 0) {
+			return;
+		}
+
+		// pick the coarsest detail that still keeps candles MIN_CANDLE_SPACING pixels apart
+		double slotWidth = plotWidth / (viewEnd - viewStart);
+		int level = 0;
+		while (level < bucketHigh.length-1 && (1 << level) * slotWidth < MIN_CANDLE_SPACING) {
+			level++;
+		}
+		int weeksPerBucket = 1 << level;
+		int bucketCount = bucketCount(level);
+		int firstBucket = Math.max((int)Math.floor(viewStart / weeksPerBucket), 0);
+		int lastBucket = Math.min((int)Math.floor(viewEnd / weeksPerBucket), bucketCount-1);
+		int firstPrediction = Math.max((int)Math.floor(viewStart) - historicBars.size(), 0);
+		int lastPrediction = Math.min((int)Math.ceil(viewEnd) - historicBars.size(), PREDICTED_WEEKS-1);
+
+		// scale prices to what is visible
+		double high = Double.NEGATIVE_INFINITY, low = Double.POSITIVE_INFINITY;
+		for (int j=firstBucket; j<=lastBucket; j++) {
+			high = Math.max(high, bucketHigh(level, j));
+			low = Math.min(low, bucketLow(level, j));
+		}
+		for (int i=firstPrediction; i<=lastPrediction; i++) {
+			high = Math.max(high, Math.max(lastClose, predictedUpper[i]));
+			low = Math.min(low, Math.min(lastClose, predictedLower[i]));
+		}
+		double step = niceStep((high - low) / 4);
+		double graphHigh = Math.ceil(high / step) * step; // rounds max up to the nearest step
+		double graphLow = Math.floor(low / step) * step; // rounds min down to the nearest step
+		if (graphHigh <= graphLow) {
+			graphHigh = graphLow + step;
+		}
+		PriceScale scale = new PriceScale(graphHigh, graphLow, plotHeight);
+
+		// draw stage (border, price levels, date labels)
+		g2d.setStroke(CANDLE_STROKE);
+		g2d.setColor(Color.BLACK);
+		g2d.drawRect(GRAPH_X, GRAPH_Y, plotWidth, plotHeight);
+		for (double priceLevel = graphLow; priceLevel <= graphHigh + step/2; priceLevel += step) {
+			int yPos = scale.y(priceLevel);
+			g2d.drawLine(GRAPH_X, yPos, GRAPH_X + plotWidth, yPos);
+			g2d.drawString(priceFormat.format(priceLevel), GRAPH_X + plotWidth + 5, yPos + 3);
+		}
+
+		int dateY = GRAPH_Y + plotHeight + 15;
+		g2d.drawString(formatSlotDate(Math.ceil(viewStart)), GRAPH_X, dateY);
+		int lastBarX = slotCenter(historicBars.size() - 1, slotWidth);
+		if (lastBarX > GRAPH_X + 90 && lastBarX < GRAPH_X + plotWidth - 180) {
+			g2d.drawString(formatSlotDate(historicBars.size() - 1), lastBarX - 40, dateY);
+		}
+		g2d.drawString(formatSlotDate(Math.floor(viewEnd) - 1), GRAPH_X + plotWidth - 80, dateY);
+
+		g2d.setClip(GRAPH_X + 1, GRAPH_Y + 1, plotWidth - 1, plotHeight - 1);
+
+		// draw candle chart from historic data
+		int candleWidth = Math.max((int)(weeksPerBucket * slotWidth * CANDLE_FILL), 1);
+		for (int j=firstBucket; j<=lastBucket; j++) {
+			int x = GRAPH_X + (int)Math.round((j * weeksPerBucket - viewStart) * slotWidth);
+			drawCandleFromXWOCHL(g2d, scale, x, candleWidth,
+					bucketOpen(level, j), bucketClose(level, j), bucketHigh(level, j), bucketLow(level, j));
+		}
+
+		// lines connect two prediction points, which stem from the most recent close price
+		if (firstPrediction <= lastPrediction) {
+			g2d.setStroke(PREDICTION_STROKE);
+			drawPrediction(g2d, scale, slotWidth, firstPrediction, lastPrediction, predictedExpected, Color.BLUE);
+			drawPrediction(g2d, scale, slotWidth, firstPrediction, lastPrediction, predictedUpper, Color.MAGENTA);
+			drawPrediction(g2d, scale, slotWidth, firstPrediction, lastPrediction, predictedLower, Color.CYAN);
+		}
+		g2d.setClip(null);
+	}
+
+	private void drawPrediction(Graphics2D g2d, PriceScale scale, double slotWidth, int first, int last, double[] predicted, Color color) {
+		g2d.setColor(color);
+		int size = historicBars.size();
+		int prevX = slotCenter(size + first - 1, slotWidth);
+		int prevY = scale.y(first == 0 ? lastClose : predicted[first-1]);
+		for (int i=first; i<=last; i++) {
+			int x = slotCenter(size + i, slotWidth);
+			int y = scale.y(predicted[i]);
+			g2d.drawLine(prevX, prevY, x, y);
+			prevX = x;
+			prevY = y;
+		}
+	}
+
+	private void drawCandleFromXWOCHL(Graphics2D g2d, PriceScale scale, int x, int w, double open, double close, double high, double low) {
+		// scaled values are heights from top, so a higher stock price will be a lower scaled value
+		int yHigh = scale.y(high);
+		int yLow = scale.y(low);
+		int yOpen = scale.y(open);
+		int yClose = scale.y(close);
+
+		g2d.setColor((close>open)?Color.GREEN:Color.RED); // weekly gains are green, weekly losses are red
+		g2d.drawLine(x+w/2, yHigh, x+w/2, yLow); // draw center wick
+		g2d.fillRect(x, Math.min(yOpen, yClose), w, Math.max(Math.abs(yClose - yOpen), 1));
+	}
+
+	// helper methods
+
+	private int getPlotWidth(int width) {
+		return width - GRAPH_X - PRICE_LABEL_WIDTH;
+	}
+
+	private int slotCenter(double slot, double slotWidth) {
+		return GRAPH_X + (int)Math.round((slot + 0.5 - viewStart) * slotWidth);
+	}
+
+	private String formatSlotDate(double slot) {
+		int size = historicBars.size();
+		int week = (int)slot;
+		int day = (week >= 0 && week < size) ? HistoricBars.weekStart(historicBars.getEpochDay(week))
+				: lastWeekStart + 7*(week - (size - 1));
+		return DATE_FORMAT.format(LocalDate.ofEpochDay(day));
+	}
+
+	// 1, 2 or 5 times a power of ten, at least the given size
+	private static double niceStep(double size) {
+		if (!(size > 0)) {
+			return 1;
+		}
+		double magnitude = Math.pow(10, Math.floor(Math.log10(size)));
+		double fraction = size / magnitude;
+		return (fraction <= 1 ? 1 : fraction <= 2 ? 2 : fraction <= 5 ? 5 : 10) * magnitude;
+	}
+
+	// merges pairs of buckets level by level, until one bucket holds the whole history
+	private void buildBuckets() {
+		int levels = 1;
+		while ((historicBars.size() - 1) >> (levels - 1) > 0) {
+			levels++;
+		}
+		bucketOpen = new double[levels][];
+		bucketHigh = new double[levels][];
+		bucketLow = new double[levels][];
+		bucketClose = new double[levels][];
+		for (int level=1; level<levels; level++) {
+			int count = bucketCount(level);
+			int previousCount = bucketCount(level - 1);
+			bucketOpen[level] = new double[count];
+			bucketHigh[level] = new double[count];
+			bucketLow[level] = new double[count];
+			bucketClose[level] = new double[count];
+			for (int j=0; j<count; j++) {
+				int first = 2*j, last = Math.min(2*j + 1, previousCount - 1);
+				bucketOpen[level][j] = bucketOpen(level - 1, first);
+				bucketClose[level][j] = bucketClose(level - 1, last);
+				bucketHigh[level][j] = Math.max(bucketHigh(level - 1, first), bucketHigh(level - 1, last));
+				bucketLow[level][j] = Math.min(bucketLow(level - 1, first), bucketLow(level - 1, last));
+			}
+		}
+	}
+
+	private int bucketCount(int level) {
+		return (historicBars.size() + (1 << level) - 1) >> level;
+	}
+
+	private double bucketOpen(int level, int j) { return level == 0 ? historicBars.getOpen(j) : bucketOpen[level][j]; }
+	private double bucketHigh(int level, int j) { return level == 0 ? historicBars.getHigh(j) : bucketHigh[level][j]; }
+	private double bucketLow(int level, int j) { return level == 0 ? historicBars.getLow(j) : bucketLow[level][j]; }
+	private double bucketClose(int level, int j) { return level == 0 ? historicBars.getClose(j) : bucketClose[level][j]; }
+
+	// maps prices to y positions in the graph
+	private static class PriceScale {
+		final double high, pixelsPerDollar;
+
+		PriceScale(double high, double low, int plotHeight) {
+			this.high = high;
+			this.pixelsPerDollar = plotHeight / (high - low);
+		}
+
+		int y(double price) {
+			return GRAPH_Y + (int)Math.round((high - price) * pixelsPerDollar);
+		}
+	}
 }
@@ -1,16 +1,13 @@
 
 package com.alexfiliakov.blackscholescalc.StockModel;
 
-import java.net.*;
-import java.io.*;
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
-import java.util.Collections;
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.Date;
-import java.util.Locale;
-import java.util.StringTokenizer;
 import java.util.ArrayList;
-import java.util.Comparator;
+
+import com.alexfiliakov.blackscholescalc.MarketData.MarketDataProviders;
+import com.alexfiliakov.blackscholescalc.Metrics.Metrics;
 
 public class StockModel {
 	/*
@@ -28,177 +25,150 @@ public class StockModel {
 	// our prediction to construct a 95% confidence interval around the expected value
 	private final double ICNPF_VAL = -1.959963985;
 	
+	// default weeks of history the model is estimated from
+	public static final int HISTORIC_WEEKS = 52;
+	
 	private String stockSymbol;
 	
 	// lognormal model parameters
 	private double annualMean, annualVolatility;
 	
-	// stores up to 1 year of data, but may be less for new stocks
-	private ArrayList<HistoricDataPoint> historicData = new ArrayList<HistoricDataPoint>();
+	// running estimate of the parameters over the modelled window, updated one bar at a time
+	private RollingCalibration calibration;
+	
+	// the modelled window (1 year by default, but may be less for new stocks), oldest first;
+	// a view of the bars the model was built from, so a mapped HistoricBarStore file is read in place
+	private HistoricBars historicBars;
 
-	// stores weekly price predictions for 1 year
-	private PredictedDataPoint[] predictedData = new PredictedDataPoint[52];
+	// stores weekly price predictions for 1 year, computed when first asked for after a change
+	private PredictedDataPoint[] predictedData;
 	
+	// populate stock data from the default market data provider
 	public StockModel (String symbol) throws Exception {
-		stockSymbol = symbol;
-		try {
-			retrieveHistoricData();
-			validateAndCleanData();
-			calculateModelParameters();
-			calculatePredictions();
-		} catch (Exception e) {
-			throw e;
-		}
+		this(symbol, MarketDataProviders.await(MarketDataProviders.getDefault().getHistoricData(symbol)));
 	}
 	
-	// populate stock data from Yahoo Finance
-	private void retrieveHistoricData() throws Exception {
-		String csvDataPoint;
-		URL url = null;
-		URLConnection urlConn = null;
-		InputStreamReader inStream = null;
-		BufferedReader br = null;
-
-		/*
-		 * This returns a CSV file in the following format:
-		 *   Date, Open, High, Low, Close, Volume, Adj Close
-		 * If an invalid symbol is provided, loads the 404 page
-		 */
-		
-		try {
-			url = new URL("http://ichart.yahoo.com/table.csv?"
-					+ "s=" + stockSymbol // must be a valid symbol, otherwise gives error page
-					+ "&g=w&ignore=.csv"); // g is the interval to use (w for weeks)
-			urlConn = url.openConnection();
-			inStream = new InputStreamReader(urlConn.getInputStream());
-			br = new BufferedReader(inStream);
-			
-			// make sure CSV has a valid header
-			String headerLine = br.readLine();
-			if (headerLine.compareTo("Date,Open,High,Low,Close,Volume,Adj Close") != 0) {
-				throw new Exception("File header not as expected. Output:" + headerLine);
-			}
+	// builds the model from the newest HISTORIC_WEEKS of already retrieved bars
+	public StockModel (String symbol, HistoricBars historicBars) throws Exception {
+		this(symbol, historicBars, HISTORIC_WEEKS);
+	}
 	
-			// parse stock data into historicData collection, store up to 52 values
-			int weeksParsed = 0;
-			while ((csvDataPoint = br.readLine()) != null && weeksParsed < 52) {
-				// parse csv string
-					StringTokenizer tokenizer = new StringTokenizer(csvDataPoint,",");
-					Date date = new SimpleDateFormat("yyyy-MM-dd", Locale.ENGLISH).parse(tokenizer.nextToken());
-					double open = Double.parseDouble(tokenizer.nextToken());
-					double high = Double.parseDouble(tokenizer.nextToken());
-					double low = Double.parseDouble(tokenizer.nextToken());
-					double close = Double.parseDouble(tokenizer.nextToken());
-					
-				historicData.add(HistoricDataPoint.addByDOCHL(date, open, close, high, low));
-				weeksParsed++;
-			}
-			if (historicData.size()<10) {
+	// builds the model from the newest windowWeeks of already retrieved bars
+	public StockModel (String symbol, HistoricBars historicBars, int windowWeeks) throws Exception {
+		long started = Metrics.start();
+		stockSymbol = symbol;
+		try {
+			this.historicBars = historicBars.window(windowWeeks);
+			if (this.historicBars.size()<10) {
 				throw new Exception("Not enough data to model");
 			}
-		} catch (MalformedURLException e) {
-			throw new Exception("Problem retrieving stock data");
-		} catch (IOException e) {
-			throw new Exception("Problem retrieving stock data");
+			
+			// if earliest day is not Monday, that means it's an IPO
+			if (!HistoricBars.isMonday(this.historicBars.getEpochDay(0))) {
+				// throw out this data point because it represents less than 1 week's growth
+				this.historicBars = this.historicBars.window(this.historicBars.size()-1);
+			}
+			
+			// the calibration makes sure all bars are one week apart
+			calibration = new RollingCalibration(windowWeeks);
+			calibration.addAll(this.historicBars);
 		} catch (Exception e) {
+			Metrics.VALIDATION_REJECTS.increment();
 			throw e;
-		} finally {
-			if (inStream != null)
-				inStream.close();
-			if (br != null)
-				br.close();
 		}
+		updateModelParameters();
+		Metrics.CALIBRATION.recordSince(started);
 	}
 	
-	// makes sure all dates are one week apart
-	// also orders the collection and does minor date cleanup
-	private void validateAndCleanData() throws Exception {
-		// sort collection by date
-		Collections.sort(historicData,new Comparator<HistoricDataPoint>() {
-			public int compare(HistoricDataPoint point1, HistoricDataPoint point2) {
-				return point1.date.compareTo(point2.date);
-			}
-		});
-		
-		// Need to make sure dates are 1 week apart, otherwise missing data
-		// Loop through the collection, make sure each date is 1 week from last
-		// Otherwise throw an error
-		Calendar dateToCheck = Calendar.getInstance();
-		dateToCheck.setTime(historicData.get(0).date);
-
-		// if earliest day is not Monday (=1), that means it's an IPO
-		if (dateToCheck.get(Calendar.DAY_OF_WEEK) != Calendar.MONDAY) {
-			// throw out this data point because it represents less than 1 week's growth
-			historicData.remove(0);
-			dateToCheck.setTime(historicData.get(0).date);
+	/*
+	 * Brings the model up to date with a refreshed history of the symbol (e.g. re-read from a
+	 * HistoricBarStore after an append): bars newer than the last modelled one roll into the window,
+	 * the oldest roll out. Costs O(1) per new bar; nothing is refetched or recomputed from scratch.
+	 * Returns the number of bars added. If a bar is rejected (a gap or a bad close), the bars before
+	 * it stay in and the exception is thrown; a later update carries on from the last bar that got in.
+	 */
+	public int update(HistoricBars refreshedBars) throws Exception {
+		// new bars are those after the calibration's last week, the model's state even after a failed update
+		int lastWeekStart = calibration.getLastWeekStart();
+		int first = refreshedBars.size();
+		while (first > 0 && HistoricBars.weekStart(refreshedBars.getEpochDay(first-1)) > lastWeekStart) {
+			first--;
 		}
 		
-		for(HistoricDataPoint dataPoint : historicData) {
-			// Calendar provides methods to add and subtract days
-			Calendar cal = Calendar.getInstance();
-			cal.setTime(dataPoint.date);
-			
-			// if Monday is a holiday, the market is closed and Yahoo reports week start as the next opening day
-			// so we force our collection to store the corresponding Monday instead to make it easier to test data integrity
-			if (cal.get(Calendar.DAY_OF_WEEK) != Calendar.MONDAY) {
-				cal.add(Calendar.DATE,Calendar.MONDAY-cal.get(Calendar.DAY_OF_WEEK));
-				dataPoint.date = new Date(cal.getTimeInMillis());
+		int added = 0;
+		try {
+			for (int i=first; i<refreshedBars.size(); i++) {
+				calibration.add(refreshedBars.getEpochDay(i), refreshedBars.getClose(i));
+				added++;
 			}
-
-			if (dateToCheck.compareTo(cal) != 0) {
-				throw new Exception ("Data is missing, can't continue. Expected: " + dateToCheck.toString() + "; Actual: " + dataPoint.date.toString());
+		} finally {
+			// keep the modelled bars and parameters in step with the calibration
+			if (added > 0) {
+				int end = first + added;
+				historicBars = refreshedBars.range(Math.max(end - calibration.getBarCount(), 0), end);
+				updateModelParameters();
 			}
-
-			// Increment by 7 days to test next data point
-			cal.add(Calendar.DATE,7);
-			dateToCheck=cal;
 		}
+		return added;
 	}
 	
-	// calculate model parameters based on historic data
-	private void calculateModelParameters() {
-		//retrieveHistoricData orders by date and requires weekly sequences, so we can assume perfect chronological order
-		int sampleSize = historicData.size();
-		int df = sampleSize-1; // degrees of freedom
-		double weeklyMean = Math.log(historicData.get(sampleSize-1).close / historicData.get(0).close) / df;
-		double weeklyVolatility = 0;
-		// calculating volatility requires summing fractions of consecutive weekly closing prices, so iterator starts at 1
-		double sumOfSquares = 0;
-		for (int i=1;i<sampleSize;i++) {
-			sumOfSquares+=Math.pow(Math.log(historicData.get(i).close/historicData.get(i-1).close), 2);
-		}
-		weeklyVolatility=Math.sqrt((sumOfSquares/df - Math.pow(weeklyMean,2))*df/(df-1));
-		
-		annualMean = 52*weeklyMean;
-		annualVolatility = Math.sqrt(52)*weeklyVolatility;
+	// take model parameters from the calibration; predictions follow when needed
+	private void updateModelParameters() {
+		annualMean = calibration.getAnnualMean();
+		annualVolatility = calibration.getAnnualVolatility();
+		predictedData = null;
 	}
 	
 	// calculate predicted weekly close prices for the next year based on parameters
-	private void calculatePredictions() {
-		// retrieveHistoricData orders by date, so we can assume last element is the latest close price
+	private PredictedDataPoint[] calculatePredictions() {
 		// lognormal model basically predicts future prices as fractions of last close price 
-		HistoricDataPoint lastDataPoint = historicData.get(historicData.size()-1);
+		LocalDate lastWeek = LocalDate.ofEpochDay(calibration.getLastWeekStart());
+		double lastClose = calibration.getLastClose();
+		PredictedDataPoint[] predictedData = new PredictedDataPoint[52];
 		
 		for(int week=0;week<52;week++) {
-			// Add 7 days to the last close date for every week into the future
-			// Calendar provides methods for this
-			Calendar cal = Calendar.getInstance();
-			cal.setTime(lastDataPoint.date);
-			cal.add(Calendar.DATE,7*(week+1));
-			Date futureDate = new Date(cal.getTimeInMillis());
+			// Add 7 days to the last week start for every week into the future
+			Date futureDate = toDate(lastWeek.plusWeeks(week+1));
 
-			double expectedClose = lastDataPoint.close * Math.exp(annualMean * (week+1)/52f);
+			double expectedClose = lastClose * Math.exp(annualMean * (week+1)/52f);
 			double expectedLowerBound = expectedClose * Math.exp(-0.5 * Math.pow(annualVolatility, 2) * (week+1)/52f
 																 + ICNPF_VAL * annualVolatility * Math.sqrt((week+1) / 52f));
 			double expectedUpperBound = expectedClose * Math.exp(-0.5 * Math.pow(annualVolatility, 2) * (week+1)/52f
 					 											 - ICNPF_VAL * annualVolatility * Math.sqrt((week+1) / 52f));
 			predictedData[week] = PredictedDataPoint.addByDEUL(futureDate, expectedClose, expectedUpperBound, expectedLowerBound);
 		}
+		return predictedData;
 	}
 
 	public String getStockSymbol() { return stockSymbol; }
 	public double getAnnualMean() { return annualMean; }
 	public double getAnnualVolatility() { return annualVolatility; }
-	public ArrayList<HistoricDataPoint> getHistoricData() { return historicData; }
-	public PredictedDataPoint[] getPredictedData() { return predictedData; }
+	public HistoricBars getHistoricBars() { return historicBars; }
+	public PredictedDataPoint[] getPredictedData() {
+		if (predictedData == null) {
+			long started = Metrics.start();
+			predictedData = calculatePredictions();
+			Metrics.PREDICTION.recordSince(started);
+		}
+		return predictedData;
+	}
+	
+	// Monday of the latest modelled week
+	public int getLastWeekStart() { return calibration.getLastWeekStart(); }
+	
+	// the modelled bars as objects, dated by the Monday of their week
+	public ArrayList<HistoricDataPoint> getHistoricData() {
+		ArrayList<HistoricDataPoint> historicData = new ArrayList<HistoricDataPoint>(historicBars.size());
+		for (int i=0; i<historicBars.size(); i++) {
+			Date date = toDate(LocalDate.ofEpochDay(HistoricBars.weekStart(historicBars.getEpochDay(i))));
+			historicData.add(HistoricDataPoint.addByDOCHL(date, historicBars.getOpen(i), historicBars.getClose(i),
+					historicBars.getHigh(i), historicBars.getLow(i)));
+		}
+		return historicData;
+	}
+	
+	// local midnight of a day, as dates were parsed from the Yahoo CSV
+	static Date toDate(LocalDate day) {
+		return Date.from(day.atStartOfDay(ZoneId.systemDefault()).toInstant());
+	}
 }
@@ -0,0 +1,121 @@
+package com.alexfiliakov.blackscholescalc.OptionPriceModel;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+public class FiniteDifferencePricerTest {
+	/**
+	 * This class checks that contracts sharing a FiniteDifferencePricer solve do not spoil each other:
+	 * a run (same time, rate and volatility) holding a valid strike next to strikes of 0, -5, NaN and
+	 * Infinity must price the valid contract exactly as a run of its own does, with finite Greeks, while
+	 * the bad strikes keep their Black-Scholes values.
+	 *
+	 * Usage: FiniteDifferencePricerTest (exits with status 1 and prints the failures if any check fails)
+	 */
+
+	private static final double SPOT = 100, FORCE = 0.05, VOLATILITY = 0.2, TIME = 1;
+	private static final double[] BAD_STRIKES = {0, -5, Double.NaN, Double.POSITIVE_INFINITY};
+
+	private int checks, failures;
+
+	public static void main(String[] args) {
+		FiniteDifferencePricerTest test = new FiniteDifferencePricerTest();
+		test.badStrikesInRun();
+		System.out.printf("%d checks, %d failures%n", test.checks, test.failures);
+		System.exit(test.failures == 0 ? 0 : 1);
+	}
+
+	private void badStrikesInRun() {
+		FiniteDifferencePricer pricer = new FiniteDifferencePricer(FiniteDifferencePricer.DEFAULT_SPACE_STEPS,
+				FiniteDifferencePricer.DEFAULT_TIME_STEPS, new ForkJoinPool(1));
+		Priced alone = new Priced(new double[] {105});
+		alone.price(pricer);
+		check(alone.isFinite(0), "valid put priced alone is not finite: " + alone.describe(0));
+
+		for (double badStrike : BAD_STRIKES) {
+			// the bad strike both before and after the valid one
+			for (boolean first : new boolean[] {true, false}) {
+				Priced run = new Priced(first ? new double[] {badStrike, 105} : new double[] {105, badStrike});
+				run.price(pricer);
+				int valid = first ? 1 : 0, bad = 1 - valid;
+				check(run.isFinite(valid), "strike 105 next to strike " + badStrike + ": " + run.describe(valid));
+				check(run.sameAs(valid, alone, 0), "strike 105 next to strike " + badStrike + " differs from its own run: "
+						+ run.describe(valid) + " vs " + alone.describe(0));
+
+				Priced blackScholes = new Priced(new double[] {badStrike});
+				blackScholes.priceBlackScholes();
+				check(run.sameAs(bad, blackScholes, 0), "strike " + badStrike + " does not keep its Black-Scholes values: "
+						+ run.describe(bad) + " vs " + blackScholes.describe(0));
+			}
+		}
+	}
+
+	private void check(boolean passed, String failure) {
+		checks++;
+		if (!passed) {
+			failures++;
+			System.out.println("FAILED: " + failure);
+		}
+	}
+
+	// one run of contracts and the pricing columns they were priced into
+	private static class Priced {
+		final double[] spot, strike, force, volatility, time, call, put;
+		final ChainGreeks greeks;
+
+		Priced(double[] strikes) {
+			int size = strikes.length;
+			strike = strikes;
+			spot = filled(size, SPOT);
+			force = filled(size, FORCE);
+			volatility = filled(size, VOLATILITY);
+			time = filled(size, TIME);
+			call = new double[size];
+			put = new double[size];
+			greeks = new ChainGreeks(size);
+		}
+
+		void price(OptionPricingEngine pricer) {
+			pricer.priceChain(spot, strike, force, volatility, time, call, put, greeks);
+		}
+
+		void priceBlackScholes() {
+			BlackScholesPricer.priceChain(spot, strike, force, volatility, time, call, put, greeks);
+		}
+
+		double[] values(int i) {
+			return new double[] {call[i], put[i], greeks.callDelta[i], greeks.putDelta[i], greeks.gamma[i], greeks.putGamma[i], greeks.vega[i], greeks.putVega[i],
+					greeks.callTheta[i], greeks.putTheta[i], greeks.callRho[i], greeks.putRho[i]};
+		}
+
+		boolean isFinite(int i) {
+			for (double value : values(i)) {
+				if (Double.isNaN(value) || Double.isInfinite(value)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		// equal, counting NaN as equal to NaN
+		boolean sameAs(int i, Priced other, int j) {
+			double[] mine = values(i), theirs = other.values(j);
+			for (int v=0; v<mine.length; v++) {
+				if (Double.compare(mine[v], theirs[v]) != 0 && mine[v] != theirs[v]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		String describe(int i) {
+			return Arrays.toString(values(i));
+		}
+
+		private static double[] filled(int size, double value) {
+			double[] column = new double[size];
+			Arrays.fill(column, value);
+			return column;
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package com.alexfiliakov.blackscholescalc.OptionPriceModel;
+
+import java.util.Random;
+
+import org.apache.commons.math3.distribution.NormalDistribution;
+import org.apache.commons.math3.special.Erf;
+
+public class StandardNormalTest {
+	/**
+	 * This class checks StandardNormal against commons-math across the whole real line: the EXACT CDF
+	 * to an absolute error of 1e-15, the FAST CDF to 1e-7 and the PDF to 1e-15. The sweep covers
+	 * [-40, 40], where the tails underflow, with extra points on each side of Cody's interval boundaries,
+	 * and the special values +-0, NaN and +-Infinity.
+	 *
+	 * The reference CDF is 0.5*erfc(-x/sqrt(2)), which keeps its relative accuracy in the lower tail,
+	 * so the EXACT tier's tail is also checked for relative error. Rounding x/sqrt(2) alone moves the
+	 * reference by about x^2 ulps there, so the allowed relative error is 1e-14 + 1e-15*x^2.
+	 *
+	 * Usage: StandardNormalTest (exits with status 1 and prints the failures if any check fails)
+	 */
+
+	private static final double EXACT_LIMIT = 1e-15, FAST_LIMIT = 1e-7, PDF_LIMIT = 1e-15;
+	private static final double RANGE = 40, STEP = 1./1024;
+	private static final double[] BOUNDARIES = {0.66291, 5.656854249492380195206754896838792314, 38.5};
+
+	private static final NormalDistribution NORMAL = new NormalDistribution(0, 1);
+
+	private int checks, failures;
+	private double exactError, fastError, pdfError, tailRelativeError;
+
+	public static void main(String[] args) {
+		StandardNormalTest test = new StandardNormalTest();
+		test.sweep();
+		test.specialValues();
+		System.out.printf("%d checks, %d failures; max error: cdf %.2e, cdfFast %.2e, pdf %.2e, cdf tail (relative) %.2e%n",
+				test.checks, test.failures, test.exactError, test.fastError, test.pdfError, test.tailRelativeError);
+		System.exit(test.failures == 0 ? 0 : 1);
+	}
+
+	private void sweep() {
+		for (double x=-RANGE; x<=RANGE; x+=STEP) {
+			checkPoint(x);
+		}
+		for (double boundary : BOUNDARIES) {
+			for (double x : new double[] {boundary, -boundary}) {
+				checkPoint(x);
+				checkPoint(Math.nextUp(x));
+				checkPoint(Math.nextDown(x));
+			}
+		}
+		Random random = new Random(2);
+		for (int i=0; i<100000; i++) {
+			checkPoint((2*random.nextDouble() - 1)*RANGE);
+		}
+	}
+
+	private void checkPoint(double x) {
+		double reference = 0.5*Erf.erfc(-x/Math.sqrt(2));
+
+		double error = Math.abs(StandardNormal.cdf(x) - reference);
+		exactError = Math.max(exactError, error);
+		check(error <= EXACT_LIMIT, "cdf(" + x + ") = " + StandardNormal.cdf(x) + ", expected " + reference);
+
+		error = Math.abs(StandardNormal.cdfFast(x) - reference);
+		fastError = Math.max(fastError, error);
+		check(error <= FAST_LIMIT, "cdfFast(" + x + ") = " + StandardNormal.cdfFast(x) + ", expected " + reference);
+
+		error = Math.abs(StandardNormal.pdf(x) - NORMAL.density(x));
+		pdfError = Math.max(pdfError, error);
+		check(error <= PDF_LIMIT, "pdf(" + x + ") = " + StandardNormal.pdf(x) + ", expected " + NORMAL.density(x));
+
+		// lower tail, while the reference is still a normal double
+		if (x < -1 && reference > Double.MIN_NORMAL) {
+			error = Math.abs(StandardNormal.cdf(x)/reference - 1);
+			tailRelativeError = Math.max(tailRelativeError, error);
+			check(error <= 1e-14 + 1e-15*x*x, "cdf(" + x + ") = " + StandardNormal.cdf(x) + ", relative error " + error);
+		}
+	}
+
+	private void specialValues() {
+		check(StandardNormal.cdf(0.0) == 0.5 && StandardNormal.cdf(-0.0) == 0.5, "cdf(+-0) is not 0.5");
+		check(Math.abs(StandardNormal.cdfFast(0.0) - 0.5) <= FAST_LIMIT && Math.abs(StandardNormal.cdfFast(-0.0) - 0.5) <= FAST_LIMIT, "cdfFast(+-0) is not 0.5");
+		check(StandardNormal.pdf(0.0) == NORMAL.density(0.0) && StandardNormal.pdf(-0.0) == NORMAL.density(0.0), "pdf(+-0) is not 1/sqrt(2 pi)");
+
+		check(Double.isNaN(StandardNormal.cdf(Double.NaN)), "cdf(NaN) is not NaN");
+		check(Double.isNaN(StandardNormal.cdfFast(Double.NaN)), "cdfFast(NaN) is not NaN");
+		check(Double.isNaN(StandardNormal.pdf(Double.NaN)), "pdf(NaN) is not NaN");
+
+		for (StandardNormal.Accuracy accuracy : StandardNormal.Accuracy.values()) {
+			check(StandardNormal.cdf(Double.POSITIVE_INFINITY, accuracy) == 1, "cdf(+Infinity) is not 1 (" + accuracy + ")");
+			check(StandardNormal.cdf(Double.NEGATIVE_INFINITY, accuracy) == 0, "cdf(-Infinity) is not 0 (" + accuracy + ")");
+		}
+		check(StandardNormal.pdf(Double.POSITIVE_INFINITY) == 0 && StandardNormal.pdf(Double.NEGATIVE_INFINITY) == 0, "pdf(+-Infinity) is not 0");
+	}
+
+	private void check(boolean passed, String failure) {
+		checks++;
+		if (!passed) {
+			failures++;
+			if (failures <= 20) {
+				System.out.println("FAILED: " + failure);
+			}
+		}
+	}
+}